@@ -1,11 +1,10 @@
 package falstad;
 
 import generation.CardinalDirection;
+import generation.Cells;
+import generation.MazeConfiguration;
 import falstad.Constants.*;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class BasicRobot implements Robot {
 
     // Battery cost constants
@@ -215,29 +214,32 @@ public class BasicRobot implements Robot {
         this.currentPosition = this.mazeController.getCurrentPosition();
         this.facingDirection = this.mazeController.getCurrentDirection();
 
-        Map<Direction, CardinalDirection> directionMap = this.mapDirections();
-
         // find desired cardinal direction for sensing
-        CardinalDirection sensorDirection = directionMap.get(direction);
+        CardinalDirection sensorDirection = this.mapDirection(direction);
+        final int dx = sensorDirection.dx();
+        final int dy = sensorDirection.dy();
 
-        // sensor direction == south
+        MazeConfiguration mazeConfiguration = this.mazeController.getMazeConfiguration();
+        Cells cells = mazeConfiguration.getMazecells();
+        final int width = mazeConfiguration.getWidth();
+        final int height = mazeConfiguration.getHeight();
 
         int distance = 0;
+        int x = currentPosition[0];
+        int y = currentPosition[1];
 
         // loop through cells in direction of sensor until hitting a wall, increment distance each time
-        while (!this.mazeController.getMazeConfiguration().getMazecells().hasWall(currentPosition[0] + (sensorDirection.getDirection()[0] * distance), currentPosition[1] + (sensorDirection.getDirection()[1] * distance), sensorDirection)) {
+        while (!cells.hasWall(x, y, sensorDirection)) {
             // checks if tile is exit position and direction leads out of maze
-            boolean isExitTile = this.mazeController.getMazeConfiguration().getMazecells().isExitPosition(currentPosition[0] + (sensorDirection.getDirection()[0] * distance), currentPosition[1] + (sensorDirection.getDirection()[1] * distance));
-            boolean leadsToExit =
-                    currentPosition[0] + (sensorDirection.getDirection()[0] * (distance + 1)) < 0 ||
-                    currentPosition[0] + (sensorDirection.getDirection()[0] * (distance + 1)) >= this.mazeController.getMazeConfiguration().getWidth() ||
-                    currentPosition[1] + (sensorDirection.getDirection()[1] * (distance + 1)) < 0 ||
-                    currentPosition[1] + (sensorDirection.getDirection()[1] * (distance + 1)) >= this.mazeController.getMazeConfiguration().getHeight();
+            boolean isExitTile = cells.isExitPosition(x, y);
+            boolean leadsToExit = x + dx < 0 || x + dx >= width || y + dy < 0 || y + dy >= height;
             if (isExitTile && leadsToExit) {
                 distance = Integer.MAX_VALUE;
                 break;
             }
             distance++;
+            x += dx;
+            y += dy;
         }
 
         this.batteryLevel = Math.max(0, this.batteryLevel - 1);
@@ -251,19 +253,23 @@ public class BasicRobot implements Robot {
     }
 
     /**
-     * Helper method to create a map from the robots directions to its current
-     * Cardinal Directions.
-     * @return a Map of Directions synced with robot's currently facing Cardinal Direction
+     * Helper method to map a direction relative to the robot to a
+     * Cardinal Direction, without creating a map on each call.
+     * @return the Cardinal Direction synced with robot's currently facing Cardinal Direction
      */
-    private Map<Direction, CardinalDirection> mapDirections() {
-        Map<Direction, CardinalDirection> directions = new HashMap<>();
-
-        directions.put(Direction.FORWARD, this.facingDirection);
-        directions.put(Direction.RIGHT, this.facingDirection.rotateCounterclockwise());
-        directions.put(Direction.LEFT, this.facingDirection.rotateClockwise());
-        directions.put(Direction.BACKWARD, this.facingDirection.oppositeDirection());
-
-        return directions;
+    private CardinalDirection mapDirection(Direction direction) {
+        switch (direction) {
+            case FORWARD:
+                return this.facingDirection;
+            case RIGHT:
+                return this.facingDirection.rotateCounterclockwise();
+            case LEFT:
+                return this.facingDirection.rotateClockwise();
+            case BACKWARD:
+                return this.facingDirection.oppositeDirection();
+            default:
+                throw new RuntimeException("Unexpected direction value: " + direction);
+        }
     }
 
     /**
@@ -16,12 +16,17 @@ public class Constants {
 
 	// Skill-level 
 	// The user picks a skill level between 0 - 9, a-f 
-	// The following arrays transform this into corresponding dimensions (x,y) for the resulting maze as well as the number of rooms and parts
+	// The following arrays transform this into corresponding dimensions (x,y) for the resulting maze as well as the number of rooms
 	public static int[] SKILL_X =     { 4, 12, 15, 20, 25, 25, 35, 35, 40, 60, 70, 80, 90, 110, 150, 300 }; // width
 	public static int[] SKILL_Y =     { 4, 12, 15, 15, 20, 25, 25, 35, 40, 60, 70, 75, 75,  90, 120, 240 }; // height
 	public static int[] SKILL_ROOMS = { 0,  2,  2,  3,  4,  5, 10, 10, 20, 45, 45, 50, 50,  60,  80, 160 };
-	public static int[] SKILL_PARTCT = { 60, 600, 900, 1200, 2100, 2700, 3300,
-	5000, 6000, 13500, 19800, 25000, 29000, 45000, 85000, 85000*4 };
+	
+	// Pool of pre-generated mazes such that a new game can start without waiting for the generation
+	public static final int MAZE_POOL_DEPTH = 2; // number of mazes kept for each combination of skill level, builder and perfect flag
+	public static final long MAZE_POOL_MAX_BYTES = 64L * 1024 * 1024; // upper limit for the estimated memory held by the pool
+	
+	// During maze generation the progress bar is redrawn at a fixed rate, unit is millisecond
+	public static final int PROGRESS_SAMPLE_INTERVAL = 50;
 	
 	// Possible states of the GUI
 	// these are states of an automaton that the graphical user interface implements
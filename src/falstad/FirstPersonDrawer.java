@@ -1,16 +1,12 @@
 package falstad;
 
 import falstad.Constants.*;
-import generation.BSPBranch;
-import generation.BSPLeaf;
-import generation.BSPNode;
 import generation.CardinalDirection;
 import generation.Cells;
+import generation.FlatBSPTree;
 import generation.MazeBuilder;
-import generation.Seg;
-import generation.Wall;
+import generation.SegmentTable;
 
-import java.util.ArrayList;
 
 
 /**
@@ -31,8 +27,10 @@ public class FirstPersonDrawer extends DefaultViewer {
 	private int step_size = map_unit/4;
 	// map scale may be adjusted by user input, controlled in MazeController
 	private Cells seencells ; // cells whose walls are currently visible
-	// node is determined in MazeBuilder when creating the maze, helps to decide visibility
-	private BSPNode bsp_root ;
+	// tree is determined in MazeBuilder when creating the maze, helps to decide visibility
+	private FlatBSPTree bsp_tree ;
+	// nodes of the tree that are still to be visited in the current frame
+	private int[] stack ;
 
 	// angle, used in rotations
 	private int angle = 0 ;  // set in redraw_play
@@ -62,7 +60,6 @@ public class FirstPersonDrawer extends DefaultViewer {
 	private int drawrect_ct ;
 	private int drawrect_late_ct ;
 	private int drawrect_segment_ct ;
-	private int nesting = 0;
 
 	/**
 	 * Constructor
@@ -71,16 +68,18 @@ public class FirstPersonDrawer extends DefaultViewer {
 	 * @param map_unit
 	 * @param step_size
 	 * @param seencells
-	 * @param bsp_root
+	 * @param bsp_tree
 	 */
-	public FirstPersonDrawer(int width, int height, int map_unit, int step_size, Cells seencells, BSPNode bsp_root) {
+	public FirstPersonDrawer(int width, int height, int map_unit, int step_size, Cells seencells, FlatBSPTree bsp_tree) {
 		// store given parameter values
 		view_width = width ;
 		view_height = height ;
 		this.map_unit = map_unit ;
 		this.step_size = step_size ;
 		this.seencells = seencells ;
-		this.bsp_root = bsp_root ;
+		this.bsp_tree = bsp_tree ;
+		// a node is replaced by its two branches, so the stack never holds more than one node per level plus one
+		stack = new int[bsp_tree.getDepth() + 1] ;
 		// constants and derived values
 		angle = 0 ; // angle for initial setting of direction is 0 == East, hidden constraint across classes
 		zscale = view_height/2;
@@ -137,7 +136,7 @@ public class FirstPersonDrawer extends DefaultViewer {
 		traverse_node_ct = traverse_ssector_ct =
 			drawrect_ct = drawrect_late_ct = drawrect_segment_ct = 0;
 		//
-		drawAllVisibleSectors(bsp_root);
+		drawAllVisibleSectors();
 	}
 
 
@@ -153,56 +152,53 @@ public class FirstPersonDrawer extends DefaultViewer {
 		panel.fillRect(0, view_height/2, view_width, view_height/2);
 	}
 	/**
-	 * Recursive method to explore tree of BSP nodes and draw all segments in leaf nodes
-	 * where the bounding box is visible
-	 * @param nn is the current node of interest
+	 * Explores the tree of BSP nodes and draws all segments in leaf nodes
+	 * where the bounding box is visible.
+	 * Nodes are visited depth first with an explicit stack: the branch on the side of the viewer
+	 * goes first, the visibility of a node is checked when it is visited such that segments drawn
+	 * for the nodes before are taken into account.
 	 */
-	private void drawAllVisibleSectors(BSPNode nn) {
-		traverse_node_ct++; // debug
-
-		// Anchor, stop recursion at leaf nodes
-		if (nn.isIsleaf()) {
-			drawAllSegmentsOfASector((BSPLeaf) nn);
-			return;
-		}
-
-		// for intermediate nodes proceed recursively through all visible branches
-		BSPBranch n = (BSPBranch) nn;
-
-		// debug code
-		if (deepdebug) {
-			dbg("                               ".substring(0, nesting) +
-					"traverse_node "+n.getX()+" "+n.getY()+" "+n.getDx()+" "+n.getDy()+" "+
-					n.getLowerBoundX()+" "+n.getLowerBoundY()+" "+n.getUpperBoundX()+" "+n.getUpperBoundY());
-		}
-		nesting++; // debug
-
-		int dot = (viewx-n.getX())*n.getDy()-(viewy-n.getY())*n.getDx();
-		BSPNode lch = n.getLeftBranch();
-		BSPNode rch = n.getRightBranch();
-		// The type of tree traversal depends on the value of dot
-		// if dot >= 0 consider right node before left node
-		if ((dot >= 0) && (boundingBoxIsVisible(rch))) {
-			drawAllVisibleSectors(rch);
-		}
-		// consider left node
-		if (boundingBoxIsVisible(lch))
-			drawAllVisibleSectors(lch);
-		// if dot < 0 consider right node now (after left node)
-		if ((dot < 0) && (boundingBoxIsVisible(rch))) {
-			drawAllVisibleSectors(rch);
+	private void drawAllVisibleSectors() {
+		int top = 0 ;
+		stack[top++] = FlatBSPTree.ROOT ;
+		while (top > 0) {
+			final int n = stack[--top] ;
+			if (n != FlatBSPTree.ROOT && !boundingBoxIsVisible(n))
+				continue ;
+			traverse_node_ct++; // debug
+			// leaf nodes carry the segments to draw
+			if (bsp_tree.isLeaf(n)) {
+				drawAllSegmentsOfASector(n);
+				continue;
+			}
+			// debug code
+			if (deepdebug) {
+				dbg("traverse_node "+bsp_tree.getX(n)+" "+bsp_tree.getY(n)+" "+bsp_tree.getDx(n)+" "+bsp_tree.getDy(n)+" "+
+						bsp_tree.getLowerBoundX(n)+" "+bsp_tree.getLowerBoundY(n)+" "+bsp_tree.getUpperBoundX(n)+" "+bsp_tree.getUpperBoundY(n));
+			}
+			int dot = (viewx-bsp_tree.getX(n))*bsp_tree.getDy(n)-(viewy-bsp_tree.getY(n))*bsp_tree.getDx(n);
+			// The type of tree traversal depends on the value of dot
+			// if dot >= 0 consider right node before left node, the node on top of the stack goes first
+			if (dot >= 0) {
+				stack[top++] = bsp_tree.getLeftBranch(n) ;
+				stack[top++] = bsp_tree.getRightBranch(n) ;
+			}
+			else {
+				stack[top++] = bsp_tree.getRightBranch(n) ;
+				stack[top++] = bsp_tree.getLeftBranch(n) ;
+			}
 		}
-		nesting--; // debug
 	}
 	/**
 	 * Decide if the bounding box is visible
+	 * @param n is a node of the tree
 	 * @return
 	 */
-	private boolean boundingBoxIsVisible(BSPNode b) {
-		int ymax = b.getUpperBoundY();
-		int ymin = b.getLowerBoundY();
-		int xmin = b.getLowerBoundX();
-		int xmax = b.getUpperBoundX();
+	private boolean boundingBoxIsVisible(int n) {
+		int ymax = bsp_tree.getUpperBoundY(n);
+		int ymin = bsp_tree.getLowerBoundY(n);
+		int xmin = bsp_tree.getLowerBoundX(n);
+		int xmax = bsp_tree.getUpperBoundX(n);
 
 
 		if (all_visible) // unused feature, presumably for debugging
@@ -270,26 +266,23 @@ public class FirstPersonDrawer extends DefaultViewer {
 	 * Traverses all segments of this leaf and draws corresponding rectangles on screen
 	 * @param n is the leaf node
 	 */
-	private void drawAllSegmentsOfASector(BSPLeaf n) {
-		ArrayList<Seg> sl = n.getSlist();
+	private void drawAllSegmentsOfASector(int n) {
+		final SegmentTable segments = bsp_tree.getSegments();
 		// debug
 		traverse_ssector_ct++;
 		if (deepdebug) {
-			dbg("                               ".substring(0, nesting) +
-					"traverse_ssector "+n.getLowerBoundX()+" "+n.getLowerBoundY()+" "+n.getUpperBoundX()+" "+n.getUpperBoundY());
+			dbg("traverse_ssector "+bsp_tree.getLowerBoundX(n)+" "+bsp_tree.getLowerBoundY(n)+" "+bsp_tree.getUpperBoundX(n)+" "+bsp_tree.getUpperBoundY(n));
 		}
 		// for all segments of this node
-		for (int i = 0; i != sl.size(); i++) {
-			Seg seg = (Seg) sl.get(i);
+		final int to = bsp_tree.getTo(n);
+		for (int i = bsp_tree.getFrom(n); i != to; i++) {
 			// draw rectangle
-			// before: drawSegment(seg, seg.getStartPositionX(), seg.getStartPositionY(), seg.getEndPositionX(), seg.getEndPositionY());
-			drawSegment(seg);
+			drawSegment(segments, i);
 			// debug
 			if (deepdebug) {
-				dbg("                               ".substring(0, nesting) +
-						" traverse_ssector(" + i +") "+
-						seg.getStartPositionX()+" "+seg.getStartPositionY()+" "+
-						seg.getExtensionX()+" "+seg.getExtensionY());
+				dbg(" traverse_ssector(" + i +") "+
+						segments.getStartPositionX(i)+" "+segments.getStartPositionY(i)+" "+
+						segments.getExtensionX(i)+" "+segments.getExtensionY(i));
 			}
 
 		}
@@ -299,13 +292,14 @@ public class FirstPersonDrawer extends DefaultViewer {
 	/**
 	 * Draws segment on screen via graphics attribute gc
 	 * Helper method for traverse_ssector
-	 * @param seg whose seen attribute may be set to true
+	 * @param segments table that holds the segment
+	 * @param seg row of the segment whose seen attribute may be set to true
 	 */
-	private void drawSegment(Seg seg) {
-		int ox1 = seg.getStartPositionX();
-		int y1 = seg.getStartPositionY() ;
-		int ox2 = seg.getEndPositionX();
-		int y2 = seg.getEndPositionY();
+	private void drawSegment(SegmentTable segments, int seg) {
+		int ox1 = segments.getStartPositionX(seg);
+		int y1 = segments.getStartPositionY(seg) ;
+		int ox2 = segments.getEndPositionX(seg);
+		int y2 = segments.getEndPositionY(seg);
 		int z1 = 0;
 		int z2 = 100;
 
@@ -342,7 +336,7 @@ public class FirstPersonDrawer extends DefaultViewer {
 			return;
 		int x1i = x1;
 		int xd = x2-x1;
-		panel.setColor(seg.getColor(), true);
+		panel.setColor(segments.getColor(seg), true);
 		boolean drawn = false;
 		drawrect_late_ct++; // debug, counter
 		// loop variable is x1i, upper limit x2 is fixed
@@ -378,28 +372,29 @@ public class FirstPersonDrawer extends DefaultViewer {
 			x1i = x2i+1;
 			drawrect_segment_ct++; // debug, counter
 		}
-		if (drawn && !seg.isSeen()) {
-			seg.setSeen(true); // updates the segment
-			udpateSeenCellsForSegment(seg); // updates seencells
+		if (drawn && !segments.isSeen(seg)) {
+			segments.setSeen(seg, true); // updates the segment
+			udpateSeenCellsForSegment(segments, seg); // updates seencells
 		}
 	}
 	/**
 	 * Set the seencells bit for all cells of a segment
-	 * @param seg segment (only read access)
+	 * @param segments table that holds the segment (only read access)
+	 * @param seg row of the segment
 	 */
-	private void udpateSeenCellsForSegment(Seg seg) {
+	private void udpateSeenCellsForSegment(SegmentTable segments, int seg) {
 
 		// we need to obtain the starting position (sx,sy) of the segment
 		// and the direction (sdsx,sdsy) in which the segment proceeds
 		// Step 1: get the direction of the segment
-		final int sdx = seg.getExtensionX() / map_unit; // constant, only set once here
-		final int sdy = seg.getExtensionY() / map_unit; // constant, only set once here
+		final int sdx = segments.getExtensionX(seg) / map_unit; // constant, only set once here
+		final int sdy = segments.getExtensionY(seg) / map_unit; // constant, only set once here
 
 		// Step 2: get initial position (sx,sy) right
-		int sx = seg.getStartPositionX() / map_unit;
+		int sx = segments.getStartPositionX(seg) / map_unit;
 		if (sdx < 0)
 			sx--;
-		int sy = seg.getStartPositionY() / map_unit; 
+		int sy = segments.getStartPositionY(seg) / map_unit; 
 		if (sdy < 0)
 			sy--;
 		
@@ -408,14 +403,12 @@ public class FirstPersonDrawer extends DefaultViewer {
 		final int sdsy = MazeBuilder.getSign(sdy); 
 		CardinalDirection cd = (sdx != 0) ? CardinalDirection.North : CardinalDirection.West ;
 		final int len = Math.abs(sdx + sdy);  
-		Wall wall = new Wall(0,0,CardinalDirection.East) ; // values don't matter
 		// true loop variables are (sx,sy), a position in the maze	
 		for (int i = 0; i != len; i++) {
 			// cd is either NORTH or WEST
 			// so we basically add a wall NORTH or WEST
 			// but only from one side for the given cell (not its neighbor)
-			wall.setWall(sx, sy, cd);
-			seencells.addWall(wall, false) ;
+			seencells.addWall(sx, sy, cd, false) ;
 			// move to neighbor cell in the direction of the segment
 			sx += sdsx;
 			sy += sdsy;
@@ -61,7 +61,15 @@ public class MazeApplication extends JFrame {
 			return;
 		}
 		
-		// Case 3: a file
+		// Case 3: Kruskal
+		if (parameter.equalsIgnoreCase("Kruskal")) {
+			System.out.println("MazeApplication: generating random maze with Kruskal's algorithm");
+			controller = new MazeController(Order.Builder.Kruskal) ;
+			init();
+			return;
+		}
+		
+		// Case 4: a file
 		File f = new File(parameter) ;
 		if (f.exists() && f.canRead())
 		{
@@ -6,12 +6,15 @@ import generation.Cells;
 import generation.Factory;
 import generation.MazeConfiguration;
 import generation.MazeContainer;
-import generation.MazeFactory;
+import generation.MazePool;
 import generation.Order;
+import generation.ProgressChannel;
 import sun.java2d.pipe.SpanShapeRenderer;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.SplittableRandom;
+import javax.swing.Timer;
 import falstad.Constants.*;
 
 /**
@@ -55,6 +58,9 @@ public class MazeController implements Order {
 	// STATE_PLAY is the main state where the user can navigate through the maze in a first person view
 
 	protected int percentdone = 0; 		// describes progress during generation phase
+	// the builder publishes its progress here, the timer samples it at a fixed rate to redraw the progress bar
+	private final ProgressChannel progress = new ProgressChannel();
+	private Timer progressTimer;
 	private boolean showMaze;		 	// toggle switch to show overall maze on screen
 	private boolean showSolution;		// toggle switch to show solution in overall maze on screen
 	private boolean mapMode; // true: display map of maze, false: do not display map of maze
@@ -80,8 +86,10 @@ public class MazeController implements Order {
 	private boolean perfect; // selected type of maze, i.e. 
 	// perfect == true: no loops, i.e. no rooms
 	// perfect == false: maze can support rooms
+	private long seed; // seed for the random number generator of the maze builder, a new one for each order
 	
-	// The factory is used to calculate a new maze configuration
+	// The factory is used to calculate a new maze configuration,
+	// it is a pool that serves a new game with a maze that has been generated in the background if it can
 	// The maze is computed in a separate thread which makes 
 	// communication with the factory slightly more complicated.
 	// Check the factory interface for details.
@@ -108,7 +116,7 @@ public class MazeController implements Order {
 		setBuilder(Order.Builder.DFS); 
 		panel = new MazePanel();
 		mazeConfig = new MazeContainer();
-		factory = new MazeFactory() ;
+		factory = new MazePool(Constants.MAZE_POOL_DEPTH, Constants.MAZE_POOL_MAX_BYTES) ;
 		filename = null;
 	}
 	/**
@@ -120,7 +128,7 @@ public class MazeController implements Order {
 		setBuilder(builder);
 		panel = new MazePanel();
 		mazeConfig = new MazeContainer();
-		factory = new MazeFactory();
+		factory = new MazePool(Constants.MAZE_POOL_DEPTH, Constants.MAZE_POOL_MAX_BYTES);
 		filename = null;
 	}
 	/**
@@ -132,7 +140,7 @@ public class MazeController implements Order {
 		setBuilder(Order.Builder.DFS); 
 		panel = new MazePanel() ;
 		mazeConfig = new MazeContainer() ;
-		factory = new MazeFactory(); // no factory needed but to allow user to play another round 
+		factory = new MazePool(Constants.MAZE_POOL_DEPTH, Constants.MAZE_POOL_MAX_BYTES); // no factory needed but to allow user to play another round 
 		this.filename = filename;
 	}
 	/**
@@ -197,9 +205,11 @@ public class MazeController implements Order {
 
 		percentdone = 0;
 		notifyViewerRedraw();
+		startProgressTimer();
 
 		// generation method already set in constructor method
 		setPerfect(false); // allow for rooms
+		seed = new SplittableRandom().nextLong(); // each game gets a different maze
 		// make maze factory produce a maze 
 		// operates with background thread
 		// method returns immediately, 
@@ -207,19 +217,49 @@ public class MazeController implements Order {
 		factory.order(this);
 	}
 	
+	/**
+	 * Starts to sample the progress of the maze generation at a fixed rate.
+	 * The progress bar is redrawn by the timer on the event dispatch thread 
+	 * whenever the progress has changed, never by the builder thread.
+	 */
+	private void startProgressTimer() {
+		stopProgressTimer();
+		progress.reset();
+		progressTimer = new Timer(Constants.PROGRESS_SAMPLE_INTERVAL, new java.awt.event.ActionListener() {
+			@Override
+			public void actionPerformed(java.awt.event.ActionEvent e) {
+				final int percentage = progress.sampleIfChanged();
+				if (percentage > percentdone && state == StateGUI.STATE_GENERATING) {
+					percentdone = percentage;
+					notifyViewerRedraw();
+				}
+			}
+		});
+		progressTimer.start();
+	}
+	/**
+	 * Stops sampling the progress of the maze generation.
+	 */
+	private void stopProgressTimer() {
+		if (null != progressTimer) {
+			progressTimer.stop();
+			progressTimer = null;
+		}
+	}
 	/**
 	 * Switches to playing state, registers appropriate views, updates screen.
 	 * This transition is only possible from the generating screen. 
 	 */
 	private void switchToPlayingScreen() {
 		assert state == StateGUI.STATE_GENERATING : "MazeController.switchToPlayingScreen: unexpected current state " + state ;
+		stopProgressTimer();
 		// set the current state for the state-dependent behavior
 		setState(StateGUI.STATE_PLAY);
 		cleanViews() ;
 		// register views for the new maze
 		// reset map_scale in mapdrawer to a value of 10
 		addView(new FirstPersonDrawer(Constants.VIEW_WIDTH,Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
-				Constants.STEP_SIZE, seencells, mazeConfig.getRootnode())) ;
+				Constants.STEP_SIZE, seencells, mazeConfig.getBSPTree())) ;
 		
 		// order of registration matters, code executed in order of appearance!
 		addView(new MapDrawer(Constants.VIEW_WIDTH,Constants.VIEW_HEIGHT,Constants.MAP_UNIT,
@@ -237,6 +277,7 @@ public class MazeController implements Order {
 		if (cancelOrder) {
 			factory.cancel();
 		}
+		stopProgressTimer();
 		setState(StateGUI.STATE_TITLE);
 
         notifyViewerRedraw();
@@ -703,6 +744,10 @@ public class MazeController implements Order {
 		return perfect;
 	}
 	@Override
+	public long getSeed() {
+		return seed;
+	}
+	@Override
 	public void deliver(MazeConfiguration mazeConfig) {
         this.mazeConfig = mazeConfig;
 
@@ -761,20 +806,14 @@ public class MazeController implements Order {
 
 	/**
 	 * Allows external increase to percentage in generating mode.
-	 * Internal value is only update if it exceeds the last value and is less or equal 100
+	 * The value is only published, the progress timer picks it up and redraws the screen,
+	 * so the builder thread never waits for drawing.
+	 * Values that do not exceed the last value or are larger than 100 are ignored.
 	 * @param percentage gives the new percentage on a range [0,100]
-	 * @return true if percentage was updated, false otherwise
 	 */
 	@Override
 	public void updateProgress(int percentage) {
-		if (percentdone < percentage && percentage <= 100) {
-			percentdone = percentage;
-			if (state == StateGUI.STATE_GENERATING)
-			{
-				notifyViewerRedraw() ;
-			}
-			else
-				dbg("Warning: Receiving update request for increasePercentage while not in generating state, skip redraw.") ;
-		}
+		if (percentage <= 100)
+			progress.publish(percentage) ;
 	}
 }
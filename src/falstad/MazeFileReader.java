@@ -10,10 +10,9 @@ import generation.Cells;
 import generation.Distance;
 import generation.MazeConfiguration;
 import generation.MazeContainer;
-import generation.Seg;
+import generation.SegmentTable;
 
 import java.io.File;
-import java.util.ArrayList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -134,6 +133,7 @@ public class MazeFileReader {
 					starty = getElementIntValue("startY", eElement);
 					// read tree of BSPNodes
 					number = 0 ; // field used as an index, that is shared an updated across recursive readBSPNode calls
+					segments = new SegmentTable(width*height) ;
 					root = readBSPNode(eElement);
 				}
 			}
@@ -148,6 +148,8 @@ public class MazeFileReader {
 	// the sequence of values is increasing, when switching from a left branch to a right branch in a preorder treetraversal 
 	// we need to keep track of the node number 
 	int number ;
+	// table that takes the segments of all leaves, leaves are read in the same order as the BSPBuilder creates them
+	private SegmentTable segments ;
 	/**
 	 * Reads data for a BSPNode from file for the given element
 	 * 
@@ -171,14 +173,14 @@ public class MazeFileReader {
 			// BSBLeaf, load segments
 			// note xl, yl, xu and yu are computed from the segments within the leaf constructor
 			// so there is no need to store those
-			ArrayList<Seg> slist = new ArrayList<Seg>() ;
 			int n = getElementIntValue("numSeg_" + mynumber, eElement); // get the total number of segments to load
 			//System.out.println("Trace: read Leaf " + mynumber + ", segments: " + n) ;
+			final int from = segments.size() ;
 			for (int i = 0 ; i < n ; i++)
 			{
-				slist.add(readSegment(eElement, number, i)) ;
+				readSegment(eElement, number, i, segments) ;
 			}
-			return new BSPLeaf(slist) ;
+			return new BSPLeaf(segments, from, segments.size()) ;
 		}
 		else
 		{
@@ -201,23 +203,19 @@ public class MazeFileReader {
 	 * @param eElement element to read from 
 	 * @param number suffix with index number of BSPNode
 	 * @param i suffix with index of segment
-	 * @return new segment, fully initialized with all necessary data
+	 * @param segments table that takes the segment, fully initialized with all necessary data
 	 */
-	private static Seg readSegment(Element eElement, int number, int i) {
+	private static void readSegment(Element eElement, int number, int i, SegmentTable segments) {
 		// load segment attributes		
 		int dist = getElementIntValue("distSeg_" + number+ "_" + i, eElement);
 		int dx = getElementIntValue("dxSeg_" + number+ "_" + i, eElement);
 		int dy = getElementIntValue("dySeg_" + number+ "_" + i, eElement);
 		int x = getElementIntValue("xSeg_" + number+ "_" + i, eElement);
 		int y = getElementIntValue("ySeg_" + number+ "_" + i, eElement);	
-		int cc = 0 ; // use this as a dummy for the constructor, the correct color is explicitly set below
-		Seg result = new Seg(x,y,dx,dy,dist,cc) ;
-		// get a few more attributes and set those explicitly
 		int col = getElementIntValue("colSeg_" + number+ "_" + i, eElement);
-		result.setColor(col);
-		result.setSeen(getElementBooleanValue("seenSeg_" + number+ "_" + i, eElement));
-		result.setPartition(getElementBooleanValue("partitionSeg_" + number+ "_" + i, eElement));
-		return result;
+		boolean seen = getElementBooleanValue("seenSeg_" + number+ "_" + i, eElement);
+		boolean partition = getElementBooleanValue("partitionSeg_" + number+ "_" + i, eElement);
+		segments.add(x, y, dx, dy, dist, col, partition, seen) ;
 	}
 
 	/**
@@ -352,7 +350,7 @@ public class MazeFileReader {
 		{
 			if (BSPLeaf.class != root2.getClass()) 
 				System.out.println("MazeFileReader.compareBSPNodes: type of nodes mismatch, root node has leaf, other node as branch");
-			compareSegments(((BSPLeaf)root).getSlist(),((BSPLeaf)root2).getSlist()) ;
+			compareSegments((BSPLeaf)root, (BSPLeaf)root2) ;
 		}
 		// if Branch nodes compare attributes and branches
 		if (BSPBranch.class == root.getClass())
@@ -377,16 +375,14 @@ public class MazeFileReader {
 
 	}
 
-	private static void compareSegments(ArrayList<Seg> slist, ArrayList<Seg> slist2) {
-		int n = slist.size() ;
-		if (n != slist2.size()) 
-			System.out.println("MazeFileReader.compare segments: length mismatch, " + n + " vs " + slist2.size());
-		Seg s ;
-		//Seg s2 ;
+	private static void compareSegments(BSPLeaf leaf, BSPLeaf leaf2) {
+		int n = leaf.getTo() - leaf.getFrom() ;
+		if (n != leaf2.getTo() - leaf2.getFrom()) 
+			System.out.println("MazeFileReader.compare segments: length mismatch, " + n + " vs " + (leaf2.getTo() - leaf2.getFrom()));
+		n = Math.min(n, leaf2.getTo() - leaf2.getFrom()) ;
 		for (int i = 0 ; i < n ; i++)
 		{
-			s = slist.get(i) ;
-			if (!s.equals(slist2.get(i))) {
+			if (!leaf.getSegments().sameSegment(leaf.getFrom() + i, leaf2.getSegments(), leaf2.getFrom() + i)) {
 				assert false : "MazeFileReader.compare segments do not mismatch" ;
 				// if assert not enabled during execution, at least print a waring
 				System.out.println("MazeFileReader.compare segments do not match"); 
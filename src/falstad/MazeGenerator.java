@@ -0,0 +1,141 @@
+package falstad;
+
+import generation.GenerationService;
+import generation.MazeBuilder;
+import generation.MazeConfiguration;
+import generation.Order;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is the command line counterpart of MazeApplication.
+ * It generates mazes in bulk without a user interface and reports the throughput
+ * in mazes per second for each builder algorithm and skill level.
+ * Mazes are written to XML files that can be loaded with MazeApplication,
+ * or, if no output directory is given, they are only counted.
+ *
+ * Usage: MazeGenerator [-builder DFS,Prim,Kruskal,Eller,Tiled] [-skill 0-15] [-count n] [-seed s] [-threads n] [-perfect] [-out directory]
+ *
+ */
+public class MazeGenerator {
+
+	/**
+	 * Writes each maze to a file in the given directory. The file name tells builder, skill level and seed,
+	 * e.g. Prim-5-42.xml, such that a maze can be generated again.
+	 */
+	static class FileSink implements GenerationService.Sink {
+		private final File directory ;
+
+		FileSink(File directory) {
+			this.directory = directory ;
+		}
+		@Override
+		public void accept(Order order, MazeConfiguration maze) throws IOException {
+			final String filename = new File(directory, order.getBuilder() + "-" + order.getSkillLevel() + "-" + order.getSeed() + ".xml").getPath() ;
+			final int[] start = maze.getStartingPosition() ;
+			MazeFileWriter.store(filename, maze.getWidth(), maze.getHeight(), MazeBuilder.getRoomCount(order), 0,
+					maze.getRootnode(), maze.getMazecells(), maze.getMazedists().getDists(), start[0], start[1]) ;
+		}
+	}
+
+	/**
+	 * Counts the mazes and drops them right away.
+	 */
+	static class CountingSink implements GenerationService.Sink {
+		private int count ;
+
+		@Override
+		public void accept(Order order, MazeConfiguration maze) {
+			count++ ;
+		}
+		int getCount() {
+			return count ;
+		}
+	}
+
+	/**
+	 * Main method to generate mazes from the command line.
+	 * @param args see the usage in the class comment, by default 10 mazes are generated
+	 * with each builder algorithm for skill levels 0 to 5
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		List<Order.Builder> builders = new ArrayList<Order.Builder>() ;
+		int minSkill = 0 ;
+		int maxSkill = 5 ;
+		int count = 10 ;
+		long seed = System.nanoTime() ;
+		int threads = Runtime.getRuntime().availableProcessors() ;
+		boolean perfect = false ;
+		File directory = null ;
+		for (int i = 0; i < args.length; i++) {
+			final String arg = args[i] ;
+			if (arg.equals("-perfect")) {
+				perfect = true ;
+				continue ;
+			}
+			if (i+1 == args.length)
+				usage("missing value for " + arg) ;
+			final String value = args[++i] ;
+			if (arg.equals("-builder")) {
+				for (String name : value.split(","))
+					builders.add(parseBuilder(name)) ;
+			}
+			else if (arg.equals("-skill")) {
+				final String[] range = value.split("-") ;
+				minSkill = Integer.parseInt(range[0]) ;
+				maxSkill = Integer.parseInt(range[range.length-1]) ;
+				if (minSkill < 0 || maxSkill >= Constants.SKILL_X.length || minSkill > maxSkill)
+					usage("skill level out of range: " + value) ;
+			}
+			else if (arg.equals("-count"))
+				count = Integer.parseInt(value) ;
+			else if (arg.equals("-seed"))
+				seed = Long.parseLong(value) ;
+			else if (arg.equals("-threads"))
+				threads = Integer.parseInt(value) ;
+			else if (arg.equals("-out")) {
+				directory = new File(value) ;
+				if (!directory.isDirectory() && !directory.mkdirs())
+					usage("cannot create directory " + value) ;
+			}
+			else
+				usage("unknown parameter " + arg) ;
+		}
+		if (builders.isEmpty()) {
+			for (Order.Builder builder : Order.Builder.values())
+				builders.add(builder) ;
+		}
+
+		final GenerationService service = new GenerationService(threads) ;
+		// both sinks are done with a maze when accept returns
+		service.setRecycling(true) ;
+		try {
+			System.out.println("MazeGenerator: " + count + " mazes per builder and skill level, " + threads + " threads, first seed " + seed);
+			for (Order.Builder builder : builders) {
+				for (int skill = minSkill; skill <= maxSkill; skill++) {
+					final GenerationService.Sink sink = (null == directory) ? new CountingSink() : new FileSink(directory) ;
+					System.out.println(service.generate(builder, skill, perfect, count, seed, sink)) ;
+				}
+			}
+		}
+		finally {
+			service.shutdown() ;
+		}
+	}
+	private static Order.Builder parseBuilder(String name) {
+		for (Order.Builder builder : Order.Builder.values()) {
+			if (builder.name().equalsIgnoreCase(name))
+				return builder ;
+		}
+		usage("unknown builder " + name) ;
+		return null ;
+	}
+	private static void usage(String message) {
+		System.out.println("MazeGenerator: " + message) ;
+		System.out.println("Usage: MazeGenerator [-builder DFS,Prim,Kruskal,Eller,Tiled] [-skill 0-15] [-count n] [-seed s] [-threads n] [-perfect] [-out directory]") ;
+		System.exit(1) ;
+	}
+}
@@ -30,7 +30,7 @@ public class MazeView extends DefaultViewer {
     // arrays used to populate dropdown input boxes on title screen
     private final String[] skillList = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15"};
     private final String[] driverList = {"Manual", "WallFollower", "Pledge", "Wizard", "Explorer"};
-    private final String[] generatorList = {"DFS", "Prim", "Eller"};
+    private final String[] generatorList = {"DFS", "Prim", "Eller", "Kruskal"};
 
 	public MazeView(MazeController c) {
 		super() ;
@@ -2,6 +2,7 @@ package falstad;
 
 import generation.Cells;
 import generation.MazeConfiguration;
+import generation.MazeFactory;
 import falstad.Constants.*;
 
 import java.awt.*;
@@ -14,6 +15,15 @@ import java.awt.*;
 public class TestController extends MazeController {
     private Robot robot;
 
+    /**
+     * Constructor, uses a plain factory instead of a pool of mazes
+     * such that tests do not generate mazes in the background
+     */
+    public TestController() {
+        super();
+        factory = new MazeFactory();
+    }
+
     @Override
     public void setDriver(String driver) {
         this.selectDriver(driver);
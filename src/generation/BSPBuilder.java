@@ -2,11 +2,38 @@ package generation;
 
 import falstad.Constants;
 import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * This class has the responsibility to obtain the tree of BSP nodes for a given maze.
  * 
+ * Segments are rows of a SegmentTable and a node refers to its segments by their row numbers.
+ * A segment that is split keeps its row for one piece, the other piece is added as a new row.
+ * Each leaf copies its segments to consecutive rows of a second table, which all leaves share
+ * once the tree is complete, so the table that is built up while the tree is split is dropped afterwards.
+ *
+ * Walls are identified as runs that end wherever a perpendicular wall meets them, each run takes 
+ * its color from the distance of the cell where it starts. On request, see setCoalescing, adjacent runs 
+ * on the same line that face the same way are joined into a single segment before the tree is built, 
+ * which leaves fewer segments to partition. Once the tree is complete and distances are known,
+ * the segments of the leaves are cut again where the color of their runs changes, so each wall keeps 
+ * the color it has with one segment per run. Pieces of a segment that is split by a partition 
+ * always go to different subtrees, so no leaf holds two pieces that could be joined again.
+ * 
+ * Once a node is split, its two subtrees share nothing: each segment goes to exactly one side
+ * or is split in two pieces, so the rows that change while a subtree is built 
+ * belong to that subtree only. Large trees are therefore built on the workers 
+ * of the fork/join common pool, one subtree is handed to another worker while the current 
+ * worker goes on with the other one. The other worker gets a copy of the rows of its subtree 
+ * as each worker adds rows to its own tables only. Progress is counted in atomic counters that each node 
+ * updates once. The tree is the same as if it was built on a single thread.
+ * 
  * This code is refactored code from MazeBuilder.java by Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
  * Paul Falstad granted permission to modify and use code for teaching purposes.
  * Refactored by Peter Kemper
@@ -19,10 +46,33 @@ public class BSPBuilder {
 	private final Cells cells ;				// cells in maze
 	private final int colchange ;			// comes from a random number, purpose unclear, 
 	// colchange: reason for randomization unclear, used to determine color of segment 
-	private final int expectedPartiters ; 	// comes from Constants partct array, entry chosen according to skill level
-	// only usage is in updateProgressBar to estimate progress made in the BSP tree construction
-	int partiters = 0 ; // relocated from MazeBuilder attribute partiters here. 
+	// progress is estimated by counting segments, each segment needs to be turned into a partition exactly once
+	private final AtomicInteger partitioned = new AtomicInteger() ; 	// number of segments that have been marked as partition
+	private final AtomicInteger segments = new AtomicInteger() ; 		// number of segments to mark, including pieces of split segments
+	private volatile int lastPercentage ; 	// last percentage sent to the order
 	private final Order order ; 		// current order
+	private final AtomicInteger splits = new AtomicInteger() ; 		// number of segments that have been split in two
+	/**
+	 * Minimum number of segments in a node for its subtrees to be built by different workers.
+	 * The default applies only if the fork/join common pool has more than one worker.
+	 */
+	public static final int PARALLEL_THRESHOLD = 4096 ;
+	// without a second worker thread a parallel build is only overhead
+	private int parallelThreshold = (ForkJoinPool.getCommonPoolParallelism() > 1) ? PARALLEL_THRESHOLD : Integer.MAX_VALUE ;
+	private volatile boolean cancelled ; 	// true if workers should stop as the order has been cancelled
+	// true if distances are computed at the same time as the tree, runs then carry the cell 
+	// their distance is taken from, encoded as x*height+y, until backfillDistances replaces it
+	private boolean distancesPending ;
+	private boolean coalescing ; 		// true if adjacent runs are joined before the tree is built
+	private SegmentTable runs ; 		// walls as identified in the maze, one row per run, until the leaves get their colors
+	private int coalesced ; 		// number of runs that have been joined with the run before them
+	private int cuts ; 				// number of times a segment of a leaf has been cut where the color changes
+	// sides of a segment with respect to the partition of a node, see genNodes
+	private static final byte NONE = 0 ;
+	private static final byte LEFT = 1 ;
+	private static final byte RIGHT = 2 ;
+	private static final byte SPLIT_START_LEFT = 3 ; 	// split, the piece with the starting position is on the left
+	private static final byte SPLIT_START_RIGHT = 4 ; 	// split, the piece with the starting position is on the right
 	/**
 	 * Constructor
 	 * @param order
@@ -31,9 +81,8 @@ public class BSPBuilder {
 	 * @param width
 	 * @param height
 	 * @param colchange
-	 * @param expectedPartiters
 	 */
-	public BSPBuilder(Order order, Distance dists, Cells cells, int width, int height, int colchange, int expectedPartiters) {
+	public BSPBuilder(Order order, Distance dists, Cells cells, int width, int height, int colchange) {
 		super() ;
 		this.order = order ;
 		this.dists = dists ;
@@ -41,166 +90,315 @@ public class BSPBuilder {
 		this.width = width ;
 		this.height = height ;
 		this.colchange = colchange ;
-		this.expectedPartiters = expectedPartiters ;
-
-		partiters = 0 ; // counter for keeping track of progress made in BSP calculation, starts at 0
+	}
+	/**
+	 * Constructor for a builder that works while the distances are still computed by another thread.
+	 * The tree only depends on the walls, distances only matter for the color of segments.
+	 * Segments are therefore created with a placeholder and get their distance and color
+	 * from backfillDistances once the distances are available.
+	 * Cells must not change while the tree is built, in particular the exit must already be set.
+	 * @param order
+	 * @param dists distance matrix, values are not read before backfillDistances is called
+	 * @param cells
+	 * @param width
+	 * @param height
+	 * @param colchange
+	 * @param distancesPending true if distances are not computed yet
+	 */
+	public BSPBuilder(Order order, Distance dists, Cells cells, int width, int height, int colchange, boolean distancesPending) {
+		this(order, dists, cells, width, height, colchange) ;
+		this.distancesPending = distancesPending ;
 	}
 
 	/**
 	 * Method generates the nodes. In every node, it has two section, left and right. It chooses the segment
 	 * which has the minimum grade value and then split this node into two nodes through this segment.
 	 * If all the segments in one node are partitioned, it will stop to split.
-	 * @param sl
+	 * A partition that has all segments on one side does not split the node, the next candidate is tried.
+	 * If the node is large enough, the left subtree is built by another worker of the fork/join pool.
+	 * @param sl rows of the segments of the node in the table of the workspace
+	 * @param count number of rows in sl
+	 * @param ws workspace of the current thread
 	 * @return root node for BSP tree
 	 * @throws InterruptedException 
 	 */
-	private BSPNode genNodes(ArrayList<Seg> sl) throws InterruptedException {
-		// if there is no segment with a partition bit set to false, there is nothing else to do and we are at a leaf node
-		if (countNonPartitions(sl) == 0)
-			return new BSPLeaf(sl);
-		// from the ones that have a partition bit set to false, pick a candidate with a low grade
-		Seg pe = findPartitionCandidate(sl);
-		// work on segment pe
-		// mark pe as partitioned
-		pe.setPartition(true);
-		final int x  = pe.getStartPositionX();
-		final int y  = pe.getStartPositionY();
-		final int dx = pe.getExtensionX();
-		final int dy = pe.getExtensionY();
-		final ArrayList<Seg> lsl = new ArrayList<Seg>();
-		final ArrayList<Seg> rsl = new ArrayList<Seg>();
-		for (int i = 0; i != sl.size(); i++) {
-			Seg se = (Seg) sl.get(i);
-			int df1x = se.getStartPositionX() - x;
-			int df1y = se.getStartPositionY() - y;
-			int sendx = se.getEndPositionX();
-			int sendy = se.getEndPositionY();
-			int df2x = sendx - x; 
-			int df2y = sendy - y; 
-			int nx = dy;
-			int ny = -dx;
-			int dot1 = df1x * nx + df1y * ny;
-			int dot2 = df2x * nx + df2y * ny;
-			if (getSign(dot1) != getSign(dot2)) {
-				if (dot1 == 0)
-					dot1 = dot2;
-				else if (dot2 != 0) {
-					// we need to split this
-					int spx = se.getStartPositionX();
-					int spy = se.getStartPositionY();
+	private BSPNode genNodes(int[] sl, int count, Workspace ws) throws InterruptedException {
+		final SegmentTable segs = ws.segments ;
+		while (true) {
+			// if there is no segment with a partition bit set to false, there is nothing else to do and we are at a leaf node
+			if (countNonPartitions(segs, sl, count) == 0)
+				return ws.createLeaf(sl, count);
+			// from the ones that have a partition bit set to false, pick a candidate with a low grade
+			int pe = findPartitionCandidate(sl, count, ws);
+			// work on segment pe
+			// mark pe as partitioned, progress is counted locally and published once for the node
+			int marked = markPartitioned(segs, pe) ? 1 : 0 ;
+			int added = 0 ;
+			int split = 0 ;
+			final int x  = segs.getStartPositionX(pe);
+			final int y  = segs.getStartPositionY(pe);
+			final int dx = segs.getExtensionX(pe);
+			final int dy = segs.getExtensionY(pe);
+			final int dir = segs.getDir(pe);
+			// first pass: decide on the side of each segment such that both lists can be allocated with their exact size
+			final byte[] sides = ws.getSides(count);
+			int lcount = 0;
+			int rcount = 0;
+			for (int i = 0; i != count; i++) {
+				final int se = sl[i];
+				int df1x = segs.getStartPositionX(se) - x;
+				int df1y = segs.getStartPositionY(se) - y;
+				int df2x = segs.getEndPositionX(se) - x; 
+				int df2y = segs.getEndPositionY(se) - y; 
+				int nx = dy;
+				int ny = -dx;
+				int dot1 = df1x * nx + df1y * ny;
+				int dot2 = df2x * nx + df2y * ny;
+				if (getSign(dot1) != getSign(dot2)) {
+					if (dot1 == 0)
+						dot1 = dot2;
+					else if (dot2 != 0) {
+						// we need to split this, one piece goes to each side
+						sides[i] = (dot1 > 0) ? SPLIT_START_RIGHT : SPLIT_START_LEFT;
+						lcount++;
+						rcount++;
+						continue;
+					}
+				}
+				// decide where to add current segment
+				if (dot1 > 0 || (dot1 == 0 && segs.getDir(se) == dir)) {
+					sides[i] = RIGHT;
+					rcount++;
+					if (dot1 == 0 && markPartitioned(segs, se))
+						marked++ ;
+				} else if (dot1 < 0 || (dot1 == 0 && segs.getDir(se) == -dir)) { 
+					sides[i] = LEFT;
+					lcount++;
+					if (dot1 == 0 && markPartitioned(segs, se))
+						marked++ ;
+				} else {
+					sides[i] = NONE;
+					dbg("error xx 1 "+dot1);
+				}
+			}
+			// second pass: fill both lists in the order of the node, split segments on the way
+			final int[] lsl = new int[lcount];
+			final int[] rsl = new int[rcount];
+			int l = 0;
+			int r = 0;
+			for (int i = 0; i != count; i++) {
+				final int se = sl[i];
+				switch (sides[i]) {
+				case LEFT:
+					lsl[l++] = se;
+					break;
+				case RIGHT:
+					rsl[r++] = se;
+					break;
+				case SPLIT_START_LEFT:
+				case SPLIT_START_RIGHT:
+					int spx = segs.getStartPositionX(se);
+					int spy = segs.getStartPositionY(se);
 					if (dx == 0)
 						spx = x;
 					else
 						spy = y;
-					//Seg sps1 = new Seg(se.x, se.y, spx-se.x, spy-se.y, se.dist, colchange);
-					//Seg sps2 = new Seg(spx, spy, sendx-spx, sendy-spy, se.dist, colchange);
-					Seg sps1 = new Seg(se.getStartPositionX(), se.getStartPositionY(), spx-se.getStartPositionX(), spy-se.getStartPositionY(), se.getDistance(), colchange);
-					Seg sps2 = new Seg(spx, spy, sendx-spx, sendy-spy, se.getDistance(), colchange);
-					if (dot1 > 0) {
-						rsl.add(sps1);
-						lsl.add(sps2);
+					// the row of the segment keeps the piece from its start to the split position, 
+					// the piece from there to its end is a new row with the same distance, color and partition bit
+					final int sendx = segs.getEndPositionX(se);
+					final int sendy = segs.getEndPositionY(se);
+					final int piece = segs.add(spx, spy, sendx-spx, sendy-spy, segs.getDistance(se), segs.getColor(se), segs.isPartition(se), false);
+					segs.setExtension(se, spx-segs.getStartPositionX(se), spy-segs.getStartPositionY(se));
+					if (sides[i] == SPLIT_START_RIGHT) {
+						rsl[r++] = se;
+						lsl[l++] = piece;
 					} else {
-						rsl.add(sps2);
-						lsl.add(sps1);
+						rsl[r++] = piece;
+						lsl[l++] = se;
 					}
-					sps1.setPartition(se.isPartition());
-					sps2.setPartition(se.isPartition());
-					continue;
+					if (!segs.isPartition(se))
+						added++ ; // one segment left to do became two
+					split++ ;
+					break;
+				default:
+					break;
 				}
 			}
-			// decide where to add current segment
-			if (dot1 > 0 || (dot1 == 0 && se.getDir() == pe.getDir())) {
-				rsl.add(se);
-				if (dot1 == 0)
-					se.setPartition(true);
-			} else if (dot1 < 0 || (dot1 == 0 && se.getDir() == -pe.getDir())) { 
-				lsl.add(se);
-				if (dot1 == 0)
-					se.setPartition(true);
-			} else {
-				dbg("error xx 1 "+dot1);
+			countProgress(marked, added, split) ;
+			// the node is only a leaf once all of its segments are partitions, a leaf with segments 
+			// that are not could hold walls that hide each other, and walls of a leaf are drawn in any order,
+			// so a partition with all segments on one side does not end the node, go on with the next candidate
+			if (lcount == 0 || rcount == 0) {
+				sl = (lcount == 0) ? rsl : lsl ;
+				count = lcount + rcount ;
+				continue ;
+			}
+			if (lcount + rcount >= parallelThreshold && ForkJoinTask.inForkJoinPool()) {
+				// same as below but the left subtree is built by another worker that gets a copy of its segments
+				final SegmentTable left = new SegmentTable(lcount) ;
+				for (int i = 0; i != lcount; i++)
+					left.append(segs, lsl[i]) ;
+				final NodeTask task = new NodeTask(left) ;
+				task.fork() ;
+				final BSPNode right ;
+				try {
+					right = genNodes(rsl, rcount, ws) ;
+				}
+				catch (RuntimeException | Error e) {
+					task.quietlyJoin() ; // the left subtree must not outlive the failed build
+					throw e ;
+				}
+				return new BSPBranch(x, y, dx, dy, task.join(), right);
 			}
+			return new BSPBranch(x, y, dx, dy, genNodes(lsl, lcount, ws), genNodes(rsl, rcount, ws)); // recursion on both branches
 		}
-		if (lsl.size() == 0)
-			return new BSPLeaf(rsl);
-		if (rsl.size() == 0)
-			return new BSPLeaf(lsl);
-		return new BSPBranch(x, y, dx, dy, genNodes(lsl), genNodes(rsl)); // recursion on both branches
 	}
+	/**
+	 * Builds the subtree for a table of segments on a worker of the fork/join pool.
+	 */
+	private class NodeTask extends RecursiveTask<BSPNode> {
+		private static final long serialVersionUID = 1L;
+		private final SegmentTable segs ;
 
+		NodeTask(SegmentTable segs) {
+			this.segs = segs ;
+		}
+		@Override
+		protected BSPNode compute() {
+			try {
+				return genNodes(getAllRows(segs), segs.size(), new Workspace(segs)) ;
+			} catch (InterruptedException e) {
+				throw new CancellationException("BSPBuilder: order cancelled") ;
+			}
+		}
+	}
 	/**
-	 * Counts how many elements in the segment vector have their partition bit set to false
-	 * @param sl all segments
+	 * Holds what a thread needs to build a subtree: the table of segments that it splits
+	 * and the table that takes the segments of the leaves it creates, both are used by this thread only.
+	 */
+	private static final class Workspace {
+		final SegmentTable segments ; 	// segments of the subtree, pieces of split segments are added
+		final SegmentTable leaves ; 	// segments of the leaves, each leaf takes consecutive rows
+		final PartitionSelector selector = new PartitionSelector() ;
+		private byte[] sides = new byte[0] ; // side of each segment of the current node
+
+		Workspace(SegmentTable segments) {
+			this.segments = segments ;
+			this.leaves = new SegmentTable(segments.size()) ;
+		}
+		/**
+		 * Copies the given segments to the end of the leaves table and creates a leaf for them.
+		 */
+		BSPLeaf createLeaf(int[] sl, int count) {
+			final int from = leaves.size() ;
+			for (int i = 0; i != count; i++)
+				leaves.append(segments, sl[i]) ;
+			return new BSPLeaf(leaves, from, leaves.size()) ;
+		}
+		byte[] getSides(int count) {
+			if (sides.length < count)
+				sides = new byte[Math.max(count, 2*sides.length)] ;
+			return sides ;
+		}
+	}
+
+	/**
+	 * Sets the partition bit of the given segment.
+	 * @return true if the bit was not set before, which is progress made
+	 */
+	private static boolean markPartitioned(SegmentTable segs, int se) {
+		if (segs.isPartition(se))
+			return false ;
+		segs.setPartition(se, true);
+		return true ;
+	}
+	/**
+	 * Adds the progress made for a node to the counters and tells the order about it.
+	 * @param marked number of segments that have been marked as partition
+	 * @param added number of segments still to be marked that have been split in two
+	 * @param split number of segments that have been split in two
+	 */
+	private void countProgress(int marked, int added, int split) {
+		// the total goes first such that the share of marked segments is never overestimated
+		if (added > 0)
+			segments.addAndGet(added) ;
+		if (split > 0)
+			splits.addAndGet(split) ;
+		partitioned.addAndGet(marked) ;
+		updateProgressBar() ;
+	}
+	/**
+	 * Counts how many of the given segments have their partition bit set to false
+	 * @param segs table of segments
+	 * @param sl rows of the segments
+	 * @param count number of rows in sl
 	 * @return number of segments where the partition flag is not set
 	 */
-	private static int countNonPartitions(ArrayList<Seg> sl) {
+	private static int countNonPartitions(SegmentTable segs, int[] sl, int count) {
 		int result = 0 ;
-		for (int i = 0; i != sl.size(); i++)
+		for (int i = 0; i != count; i++)
 		{
-			if (!(sl.get(i)).isPartition())
+			if (!segs.isPartition(sl[i]))
 				result++;
 		}
 		return result;
 	}
+	/**
+	 * @return rows 0, 1, ..., size-1 of the given table
+	 */
+	private static int[] getAllRows(SegmentTable segs) {
+		final int[] result = new int[segs.size()] ;
+		for (int i = 0; i != result.length; i++)
+			result[i] = i ;
+		return result ;
+	}
 
 	/**
 	 * It finds the segment which has the minimum grade value.
-	 * @param sl vector of segment
-	 * @return Segment that is best candidate according to grade partition (smallest grade)
+	 * All segments that have not been used as a partition yet are graded against all segments, see PartitionSelector.
+	 * @param sl rows of the segments
+	 * @param count number of rows in sl
+	 * @param ws workspace with the segments and the selector of the current thread
+	 * @return row of the segment that is best candidate according to grade partition (smallest grade)
 	 * @throws InterruptedException 
 	 */
-	private Seg findPartitionCandidate(ArrayList<Seg> sl) throws InterruptedException {
-		Seg pe = null ;
-		int bestgrade = 5000; // used to compute the minimum of all observed grade values, set to some high initial value
-		final int maxtries = 50; // constant, only used to determine skip
-		// consider a subset of segments proportional to the number of tries, here 50, seems to randomize the access a bit
-		int skip = (sl.size() / maxtries);
-		if (skip == 0)
-			skip = 1;
-		for (int i = 0; i < sl.size(); i += skip) {
-			Seg pk = (Seg) sl.get(i);
-			// skip segments where the partition flag was set
-			if (pk.isPartition())
-				continue;
-			// provide feedback for progress bar every 32 iterations
-			partiters++;
-			if ((partiters & 31) == 0) {
-				updateProgressBar(partiters); // side effect: update progress bar
-			}
-			// check grade and keep track of minimum
-			int grade = grade_partition(sl, pk);
-			if (grade < bestgrade) {
-				bestgrade = grade;
-				pe = pk; // determine segment with smallest grade
-			}
-		}
-		return pe;
+	private int findPartitionCandidate(int[] sl, int count, Workspace ws) throws InterruptedException {
+		// grading takes time proportional to the number of segments, so check for a cancelled order for each node
+		if (cancelled)
+			throw new InterruptedException() ;
+		MazeBuilder.stopIfInterrupted() ;
+		return ws.selector.select(ws.segments, sl, count) ;
 	}
 
 	/**
-	 * Push information on progress into maze such that UI can update progress bar
-	 * @param partiters
+	 * Push information on progress into maze such that UI can update progress bar.
+	 * Progress is the share of segments that have been marked as partition so far,
+	 * the order is only told if the percentage has changed.
+	 * 100 percent is left for the delivery of the maze.
+	 * Workers call the order one at a time and with increasing percentages only.
 	 */
-	private void updateProgressBar(int partiters) throws InterruptedException {
+	private void updateProgressBar() {
 		// During maze generation, the most time consuming part needs to occasionally update the current screen
 		// 
-		int percentage = partiters*100/expectedPartiters ;
-		if (null != order) {
-			order.updateProgress(percentage) ;
-			if (percentage < 100) {
-				// give main thread a chance to process keyboard events
-				Thread.currentThread().sleep(10);
+		final int percentage = (int)Math.min(99, 100L*partitioned.get()/Math.max(1, segments.get())) ;
+		if (null == order || percentage <= lastPercentage)
+			return ;
+		synchronized (this) {
+			if (percentage > lastPercentage) {
+				// the order is not supposed to do any drawing here, see Order.updateProgress
+				lastPercentage = percentage ;
+				order.updateProgress(percentage) ;
 			}
 		}
 	}
 
 	/**
 	 * Set the partition bit to true for segments on the border and where the direction is 0
-	 * @param sl
+	 * @param segs
 	 */
-	private void setPartitionBitForCertainSegments(ArrayList<Seg> sl) {
-		for (Seg se : sl) {
-			se.updatePartitionIfBorderCase(width, height);
+	private void setPartitionBitForCertainSegments(SegmentTable segs) {
+		for (int i = 0; i != segs.size(); i++) {
+			segs.updatePartitionIfBorderCase(i, width, height);
 		}
 	}
 
@@ -208,10 +406,10 @@ public class BSPBuilder {
 
 	/**
 	 * Identifies segments of continuous walls on the maze and fills the segment list 
-	 * @return vector of segments
+	 * @return table of segments
 	 */
-	private ArrayList<Seg> generateSegments() {
-		ArrayList<Seg> sl = new ArrayList<Seg>();
+	private SegmentTable generateSegments() {
+		SegmentTable sl = new SegmentTable(width + height);
 
 		generateSegmentForHorizontalWalls(sl); 
 
@@ -224,7 +422,7 @@ public class BSPBuilder {
 	 * Identify segments of continuous walls in a vertical direction
 	 * @param sl
 	 */
-	private void generateSegmentsForVerticalWalls(ArrayList<Seg> sl) {
+	private void generateSegmentsForVerticalWalls(SegmentTable sl) {
 		int x;
 		int y;
 		// we search for vertical walls, so for each row
@@ -232,36 +430,60 @@ public class BSPBuilder {
 			y = 0;
 			while (y < height) {
 				// find the beginning of a segment
-				if (cells.hasNoWall(x,y, CardinalDirection.West)) {
-					y++;
-					continue;
-				} 
+				y = cells.nextWallInColumn(x, y, CardinalDirection.West);
+				if (y == height)
+					break;
 				int starty = y;
 				// find the end of a segment
 				y = findEndOfVerticalSegment(x, y, CardinalDirection.West);
 				// create segment with (x,starty) being being the actual start position of the segment, y-starty being the positive length
-				sl.add(new Seg(x*Constants.MAP_UNIT, starty*Constants.MAP_UNIT,
-						0, (y-starty)*Constants.MAP_UNIT, dists.getDistance(x, starty), colchange));
+				sl.add(x*Constants.MAP_UNIT, starty*Constants.MAP_UNIT,
+						0, (y-starty)*Constants.MAP_UNIT, getDistance(x, starty), colchange);
 			}
 			y = 0;
 			while (y < height) {
 				// find the beginning of a segment
-				if (cells.hasNoWall(x,y, CardinalDirection.East)) {
-					y++;
-					continue;
-				} 
+				y = cells.nextWallInColumn(x, y, CardinalDirection.East);
+				if (y == height)
+					break;
 				int starty = y;
 				// find the end of a segment
 				y = findEndOfVerticalSegment(x, y, CardinalDirection.East);
 				// create segment with (x+1,y) being being one off in both directions from the last cell in this segment, starty-y being the negative length
 				// since we are looking at right walls, one off in the right direction (x+1) are then cells that have this segment on its left hand side
 				// for some reason the end position is used as a starting position and therefore the length & direction is inverse 
-				sl.add(new Seg((x+1)*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
-						0, (starty-y)*Constants.MAP_UNIT, dists.getDistance(x, starty), colchange));
+				sl.add((x+1)*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
+						0, (starty-y)*Constants.MAP_UNIT, getDistance(x, starty), colchange);
 			}
 		}
 	}
 
+	/**
+	 * Gives the distance for a segment that starts at cell (x,y), 
+	 * a placeholder if distances are pending.
+	 */
+	private int getDistance(int x, int y) {
+		return distancesPending ? x*height+y : dists.getDistance(x, y) ;
+	}
+	/**
+	 * Sets the distance and color of all segments in the given tree 
+	 * that have been created while distances were pending.
+	 * Runs get their distances first, then the segments of the leaves are cut where colors change, 
+	 * see colorSegments, so the result is the same as if distances had been known from the start.
+	 * @param root of the tree built by generateBSPNodes
+	 * @precondition distances have been computed
+	 */
+	public void backfillDistances(BSPNode root) {
+		if (!distancesPending)
+			return ;
+		distancesPending = false ;
+		for (int i = 0; i != runs.size(); i++) {
+			final int cell = runs.getDistance(i) ;
+			runs.setDistance(i, dists.getDistance(cell / height, cell % height), colchange) ;
+		}
+		colorSegments(root) ;
+	}
+
 	private int findEndOfVerticalSegment(int x, int y, CardinalDirection segmentOnThisSide) {
 		while (cells.hasWall(x, y, segmentOnThisSide)) {
 			y++;
@@ -286,7 +508,7 @@ public class BSPBuilder {
 	 * Identify segments of continuous walls in a horizontal direction
 	 * @param sl
 	 */
-	private void generateSegmentForHorizontalWalls(ArrayList<Seg> sl) {
+	private void generateSegmentForHorizontalWalls(SegmentTable sl) {
 		int x;
 		int y;
 		// we search for horizontal walls, so for each column
@@ -295,10 +517,9 @@ public class BSPBuilder {
 			x = 0;
 			while (x < width) {
 				// find the beginning of a segment
-				if (cells.hasNoWall(x,y, CardinalDirection.North)) {
-					x++;
-					continue;
-				} 
+				x = cells.nextWallInRow(x, y, CardinalDirection.North);
+				if (x == width)
+					break;
 				// found one
 				int startx = x;
 				// find the end of a segment
@@ -309,98 +530,264 @@ public class BSPBuilder {
 				x = findEndOfHorizontalSegment(x, y, CardinalDirection.North);
 				// create segment with (x,y) being the end positions, startx-x being the negative length
 				// note the (x,y) is not part of the segment
-				sl.add(new Seg(x*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
-						(startx-x)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y), colchange));
+				sl.add(x*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
+						(startx-x)*Constants.MAP_UNIT, 0, getDistance(startx, y), colchange);
 			}
 			// second round through rows, same for bottom walls
 			x = 0;
 			while (x < width) {
 				// find the beginning of a segment
-				if (cells.hasNoWall(x,y, CardinalDirection.South)) {
-					x++;
-					continue;
-				} 
+				x = cells.nextWallInRow(x, y, CardinalDirection.South);
+				if (x == width)
+					break;
 				int startx = x;
 				// find the end of a segment
 				x = findEndOfHorizontalSegment(x, y, CardinalDirection.South);
 				// create segment with (startx,y+1) being one below the start position, x-startx being the positive length
 				// so this may represent a bottom wall segment as a top wall segment one below
-				sl.add(new Seg(startx*Constants.MAP_UNIT, (y+1)*Constants.MAP_UNIT,
-						(x-startx)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y), colchange));
+				sl.add(startx*Constants.MAP_UNIT, (y+1)*Constants.MAP_UNIT,
+						(x-startx)*Constants.MAP_UNIT, 0, getDistance(startx, y), colchange);
 			}
 		}
 	}
 
 
 
-	/**
-	 * Method called in genNodes to determine the minimum of all such grades. 
-	 * The method is static, i.e. it does not update internal attributes and just calculates the returned value.
-	 * @param sl vector of segments
-	 * @param pe particular segment
-	 * @return undocumented
-	 */
-	private int grade_partition(ArrayList<Seg> sl, Seg pe) {
-		// copy attributes of parameter pe
-		final int x  = pe.getStartPositionX();
-		final int y  = pe.getStartPositionY();
-		final int dx = pe.getExtensionX();
-		final int dy = pe.getExtensionY();
-		final int inc = (sl.size() >= 100) ? sl.size() / 50 : 1 ; // increment for iteration below
-		// define some local counter
-		int lcount = 0, rcount = 0, splits = 0;
-		// check all segments, loop calculates lcount, rcount and splits
-		for (int i = 0; i < sl.size(); i += inc) {
-			Seg se = (Seg) sl.get(i);
-			// extract information from segment
-			int df1x = se.getStartPositionX()-x; // difference between beginning of segment and x
-			int df1y = se.getStartPositionY()-y; // difference between beginning of segment and y
-			int sendx = se.getEndPositionX(); // end of segment
-			int sendy = se.getEndPositionY(); // end of segment
-			int df2x = sendx - x; // difference between end of segment and x
-			int df2y = sendy - y; // difference between end of segment and y
-			int nx = dy;
-			int ny = -dx;
-			int dot1 = df1x * nx + df1y * ny;
-			int dot2 = df2x * nx + df2y * ny;
-			// update splits if necessary
-			if (getSign(dot1) != getSign(dot2)) {
-				if (dot1 == 0)
-					dot1 = dot2;
-				else if (dot2 != 0) {
-					splits++;
-					continue;
-				}
-			}
-			// update lcount, rcount values
-			if (dot1 > 0 ||
-					(dot1 == 0 && se.getDir() ==  pe.getDir())) {
-				rcount++;
-			} else if (dot1 < 0 ||
-					(dot1 == 0 && se.getDir() == -pe.getDir())) {
-				lcount++;
-			} else {
-				dbg("grade_partition problem: dot1 = "+dot1+", dot2 = "+dot2);
-			}
-		}
-		return Math.abs(lcount-rcount) + splits * 3;
-	}
 	/**
 	 * Generate tree of BSP nodes for a given maze
-	 * @return
+	 * @return root of the tree, if distances are pending its leaves get their segments 
+	 * in a single table with backfillDistances
 	 * @throws InterruptedException 
 	 */
 	public BSPNode generateBSPNodes() throws InterruptedException {
 		// determine segments, i.e. walls over multiple cells in a vertical or horizontal direction
-		ArrayList<Seg> seglist = generateSegments();
+		runs = generateSegments();
+		SegmentTable seglist = coalesce(runs);
 
 		setPartitionBitForCertainSegments(seglist); // partition bit true means that those are not considered any further for node generation
+		final int[] rows = getAllRows(seglist) ;
+		segments.set(countNonPartitions(seglist, rows, rows.length)) ;
 
-		// TODO: check why this is done. It creates a top wall on position (0,0). This may even corrupt a maze and block its exit!
-		Wall wall = new Wall(0, 0, CardinalDirection.North) ;
-		cells.addWall(wall, false);
-
-		return genNodes(seglist); // creates a data structure to quickly search for segments
+		// creates a data structure to quickly search for segments
+		final BSPNode result ;
+		if (seglist.size() < parallelThreshold)
+			result = genNodes(rows, rows.length, new Workspace(seglist));
+		else
+			result = generateInParallel(seglist) ;
+		if (!distancesPending)
+			colorSegments(result) ;
+		return result ;
+	}
+	/**
+	 * Builds the tree for the given segments on the fork/join common pool.
+	 * @return the root, its leaves refer to the tables of the workers that created them
+	 */
+	private BSPNode generateInParallel(SegmentTable seglist) throws InterruptedException {
+		final ForkJoinTask<BSPNode> root = ForkJoinPool.commonPool().submit(new NodeTask(seglist)) ;
+		try {
+			return root.get() ;
+		}
+		catch (InterruptedException e) {
+			// workers stop at the next node, the tree is not needed anymore
+			cancelled = true ;
+			root.quietlyJoin() ; // but no worker may be left behind once the build is over
+			throw e ;
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause() ;
+			if (e.getCause() instanceof Error)
+				throw (Error)e.getCause() ;
+			throw new RuntimeException("BSPBuilder: construction of tree failed", e.getCause()) ;
+		}
+	}
+	/**
+	 * Joins runs that continue each other into a single segment: runs on the same line 
+	 * that face the same way where one ends at the starting position of the other. 
+	 * Runs of a line are generated one after the other in the order of their coordinates, 
+	 * so a run can only continue the last segment. A joined segment keeps the distance of its first run.
+	 * @param runs as identified by generateSegments, the table is not modified
+	 * @return a new table with the segments to build the tree from
+	 */
+	private SegmentTable coalesce(SegmentTable runs) {
+		final SegmentTable result = new SegmentTable(runs.size()) ;
+		for (int i = 0; i != runs.size(); i++) {
+			final int last = result.size() - 1 ;
+			if (!coalescing || last < 0 || !continues(runs, i, result, last)) {
+				result.append(runs, i) ;
+				continue ;
+			}
+			final int dx = result.getExtensionX(last) + runs.getExtensionX(i) ;
+			final int dy = result.getExtensionY(last) + runs.getExtensionY(i) ;
+			// a segment that points backwards starts where its last run starts
+			if (dx < 0 || dy < 0)
+				result.setStartPosition(last, runs.getStartPositionX(i), runs.getStartPositionY(i)) ;
+			result.setExtension(last, dx, dy) ;
+			coalesced++ ;
+		}
+		return result ;
+	}
+	/**
+	 * Tells if run i points into the same direction as segment j and continues it at its end,
+	 * for a segment that points backwards the run continues it at its start.
+	 */
+	private static boolean continues(SegmentTable runs, int i, SegmentTable segs, int j) {
+		if (getSign(runs.getExtensionX(i)) != getSign(segs.getExtensionX(j)) || 
+				getSign(runs.getExtensionY(i)) != getSign(segs.getExtensionY(j)))
+			return false ;
+		if (segs.getExtensionX(j) > 0 || segs.getExtensionY(j) > 0)
+			return runs.getStartPositionX(i) == segs.getEndPositionX(j) && runs.getStartPositionY(i) == segs.getEndPositionY(j) ;
+		return runs.getEndPositionX(i) == segs.getStartPositionX(j) && runs.getEndPositionY(i) == segs.getStartPositionY(j) ;
+	}
+	/**
+	 * Moves the segments of all leaves into a single table and cuts each segment where 
+	 * the color of its runs changes, so each piece has the distance and color of its first run.
+	 * Leaves are visited depth first with the left branch first, which is the order in which a
+	 * single thread creates them, so the table is the same for a tree built on several workers.
+	 * @param root of the tree
+	 * @precondition runs have their distances
+	 */
+	private void colorSegments(BSPNode root) {
+		final SegmentTable segs = new SegmentTable(runs.size()) ;
+		final ArrayList<BSPNode> stack = new ArrayList<BSPNode>() ;
+		stack.add(root) ;
+		while (!stack.isEmpty()) {
+			final BSPNode node = stack.remove(stack.size()-1) ;
+			if (node.isIsleaf()) {
+				final BSPLeaf leaf = (BSPLeaf)node ;
+				final int from = segs.size() ;
+				for (int i = leaf.getFrom(); i != leaf.getTo(); i++)
+					cutAtColorChanges(leaf.getSegments(), i, segs) ;
+				leaf.setSegments(segs, from, segs.size()) ;
+			}
+			else {
+				stack.add(((BSPBranch)node).getRightBranch()) ;
+				stack.add(((BSPBranch)node).getLeftBranch()) ;
+			}
+		}
+		segs.trimToSize() ;
+		// the tree does not need the runs anymore
+		runs = null ;
+	}
+	/**
+	 * Adds the segment in row i of the source table to the target table, 
+	 * in pieces where the color of its runs changes.
+	 * The segment may be a piece of a split segment, so it may start and end within a run.
+	 */
+	private void cutAtColorChanges(SegmentTable source, int i, SegmentTable target) {
+		final int x = source.getStartPositionX(i) ;
+		final int y = source.getStartPositionY(i) ;
+		final int dx = source.getExtensionX(i) ;
+		final int dy = source.getExtensionY(i) ;
+		final boolean horizontal = (0 == dy) ;
+		final boolean forward = (dx > 0 || dy > 0) ;
+		// coordinates along the line of the segment
+		final int low = horizontal ? Math.min(x, x+dx) : Math.min(y, y+dy) ;
+		final int high = horizontal ? Math.max(x, x+dx) : Math.max(y, y+dy) ;
+		int run = findRun(source, i) ;
+		int from = low ;
+		while (true) {
+			final int distance = runs.getDistance(run) ;
+			final int color = runs.getColor(run) ;
+			int to = Math.min(high, getHighEnd(runs, run)) ;
+			// runs of the same color stay together
+			while (to < high && runs.getColor(run+1) == color)
+				to = Math.min(high, getHighEnd(runs, ++run)) ;
+			final int start = forward ? from : to ;
+			final int length = forward ? to-from : from-to ;
+			if (horizontal)
+				target.add(start, y, length, 0, distance, color, source.isPartition(i), source.isSeen(i)) ;
+			else
+				target.add(x, start, 0, length, distance, color, source.isPartition(i), source.isSeen(i)) ;
+			if (to == high)
+				return ;
+			cuts++ ;
+			run++ ;
+			from = to ;
+		}
+	}
+	/**
+	 * Finds the run that holds the lower end of the segment in row i of the given table.
+	 * Runs are sorted by getRunKey, which is how generateSegments creates them.
+	 * @return row in the table of runs
+	 */
+	private int findRun(SegmentTable segs, int i) {
+		final long key = getRunKey(segs, i) ;
+		int low = 0 ;
+		int high = runs.size() ;
+		while (low < high) {
+			final int middle = (low + high) >>> 1 ;
+			if (getRunKey(runs, middle) <= key)
+				low = middle + 1 ;
+			else
+				high = middle ;
+		}
+		return low - 1 ;
+	}
+	/**
+	 * Gives a key that orders segments the same way as generateSegments creates runs:
+	 * horizontal before vertical walls, then by the row or column of cells that they belong to,
+	 * top or left walls before bottom or right walls, and by their lower end along the line.
+	 */
+	private long getRunKey(SegmentTable segs, int i) {
+		final long size = Math.max(width, height) + 1 ;
+		final int x = segs.getStartPositionX(i) ;
+		final int y = segs.getStartPositionY(i) ;
+		final int dx = segs.getExtensionX(i) ;
+		final int dy = segs.getExtensionY(i) ;
+		if (0 == dy) {
+			// top walls point to the left and belong to the row below them, bottom walls to the row above
+			final long row = (dx < 0) ? y/Constants.MAP_UNIT : y/Constants.MAP_UNIT - 1 ;
+			return (2*row + ((dx < 0) ? 0 : 1)) * size + Math.min(x, x+dx)/Constants.MAP_UNIT ;
+		}
+		// left walls point down and belong to the column right of them, right walls to the column left of them
+		final long column = (dy > 0) ? x/Constants.MAP_UNIT : x/Constants.MAP_UNIT - 1 ;
+		return (2*(size + column) + ((dy > 0) ? 0 : 1)) * size + Math.min(y, y+dy)/Constants.MAP_UNIT ;
+	}
+	/**
+	 * @return the higher one of both coordinates along the line of the segment in row i
+	 */
+	private static int getHighEnd(SegmentTable segs, int i) {
+		if (0 == segs.getExtensionY(i))
+			return Math.max(segs.getStartPositionX(i), segs.getEndPositionX(i)) ;
+		return Math.max(segs.getStartPositionY(i), segs.getEndPositionY(i)) ;
+	}
+	/**
+	 * Sets if adjacent runs are joined into a single segment before the tree is built, by default they are not
+	 * and the tree is built from one segment per run. Both trees give each wall the same color, but frames
+	 * are not pixel identical: the drawer clips a long segment with rounding errors of its own, which shows
+	 * along the edges of walls. The tree of joined runs needs more splits and holds about as many 
+	 * segments in its leaves, so there is little to gain for the drawer.
+	 */
+	public void setCoalescing(boolean coalescing) {
+		this.coalescing = coalescing ;
+	}
+	/**
+	 * Gives the number of runs that have been joined with the run before them, 
+	 * i.e. how many segments less the tree has been built from.
+	 */
+	int getCoalescedCount() {
+		return coalesced ;
+	}
+	/**
+	 * Gives the number of times a segment of a leaf has been cut where the color of its runs changes, 
+	 * i.e. how many segments more the leaves hold than the tree has been built from, apart from splits.
+	 */
+	int getCutCount() {
+		return cuts ;
+	}
+	/**
+	 * Sets the minimum number of segments in a node for its subtrees to be built by different workers.
+	 * @param threshold is the number of segments, Integer.MAX_VALUE to build the tree on the calling thread only
+	 */
+	public void setParallelThreshold(int threshold) {
+		parallelThreshold = threshold ;
+	}
+	/**
+	 * Gives the number of segments that have been split by a partition, a measure for the quality of the tree.
+	 */
+	int getSplitCount() {
+		return splits.get() ;
 	}
 	/**
 	 * Provides the sign of a given integer number
@@ -5,13 +5,13 @@ package generation;
 
 import falstad.MazeFileWriter;
 
-import java.util.ArrayList;
-
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 /**
- * A leaf node for a tree of BSPNodes. It carries a list of segments. 
+ * A leaf node for a tree of BSPNodes. It carries a range of segments, 
+ * the rows from, from+1, ..., to-1 of a segment table.
+ * All leaves of a tree refer to the same table.
  * 
  * This code is refactored code from Maze.java by Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
  * Paul Falstad granted permission to modify and use code for teaching purposes.
@@ -19,22 +19,27 @@ import org.w3c.dom.Element;
  */
 public class BSPLeaf extends BSPNode {
 	
-	private ArrayList<Seg> slist; // list of segments
+	private SegmentTable segments; // table that holds the segments
+	private int from; // row of the first segment
+	private int to; // row after the last segment
 
 	/**
 	 * Constructor
-	 * @param sl is a list of segments
+	 * @param segments is the table that holds the segments of this leaf
+	 * @param from is the row of the first segment
+	 * @param to is the row after the last segment
 	 */
-	public BSPLeaf(ArrayList<Seg> sl) {
-		slist = sl;
+	public BSPLeaf(SegmentTable segments, int from, int to) {
+		this.segments = segments;
+		this.from = from;
+		this.to = to;
 		setLowerBoundX(1000000); // TODO: poor programming, supposed to be largest possible integer
 		setUpperBoundX(-1000000); // TODO: poor programming, supposed to be smallest possible integer
 		setLowerBoundY(1000000); // TODO: poor programming, supposed to be largest possible integer
 		setUpperBoundY(-1000000); // TODO: poor programming, supposed to be smallest possible integer
-		for (int i = 0; i != sl.size(); i++) {
-			Seg se = (Seg)slist.get(i);
-			fix_bounds(se.getStartPositionX(), se.getStartPositionY());
-			fix_bounds(se.getEndPositionX(), se.getEndPositionY());
+		for (int i = from; i != to; i++) {
+			fix_bounds(segments.getStartPositionX(i), segments.getStartPositionY(i));
+			fix_bounds(segments.getEndPositionX(i), segments.getEndPositionY(i));
 		}
 	}
 	/**
@@ -57,22 +62,41 @@ public class BSPLeaf extends BSPNode {
 		if (isIsleaf() == false)
 			System.out.println("WARNING: isleaf flag and class are inconsistent!");
 		// store list of segments, store total number of elements first
-		MazeFileWriter.appendChild(doc, mazeXML, "numSeg_" + number, slist.size()) ;
-		int i = 0 ;
-		for (Seg s : slist)
+		MazeFileWriter.appendChild(doc, mazeXML, "numSeg_" + number, to - from) ;
+		for (int i = from; i != to; i++)
 		{
-			s.storeSeg(doc, mazeXML, number, i);
-			i++ ;
+			segments.store(doc, mazeXML, number, i - from, i);
 		}
 		return number ;
 	}
 
 	/**
-	 * @return the slist
+	 * @return the table that holds the segments
+	 */
+	public SegmentTable getSegments() {
+		return segments;
+	}
+	/**
+	 * @return the row of the first segment
 	 */
-	public ArrayList<Seg> getSlist() {
-		return slist;
+	public int getFrom() {
+		return from;
+	}
+	/**
+	 * @return the row after the last segment
+	 */
+	public int getTo() {
+		return to;
+	}
+	/**
+	 * Moves the leaf to another table where its segments have been copied to, 
+	 * possibly cut into pieces that cover the same walls, so bounds stay the same.
+	 */
+	void setSegments(SegmentTable segments, int from, int to) {
+		assert to - from >= this.to - this.from : "Leaf needs to keep all of its segments" ;
+		this.segments = segments;
+		this.from = from;
+		this.to = to;
 	}
 
 }
-
@@ -0,0 +1,142 @@
+package generation;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the buffers of maze builders between consecutive orders such that a stream
+ * of mazes of equal or similar size does not allocate the same arrays over and over again.
+ *
+ * Buffers change owner: take methods hand a buffer over to the caller and remove it from the arena,
+ * give methods hand it back once the caller is done with it. A buffer that is never given back
+ * is simply left to the garbage collector, e.g. if an order is cancelled while a buffer is in use.
+ * So a buffer is never used by two parties at the same time.
+ *
+ * Scratch buffers, i.e. primitive arrays and disjoint sets, are reused for any size up to their capacity.
+ * The grid of a maze, its cells and distance matrix, is part of the delivered maze and only
+ * comes back to the arena if the owner of the maze explicitly recycles it, see MazeFactory.recycle.
+ * Grids are reused for mazes of the very same dimensions only as their arrays are exposed with their length.
+ *
+ * An arena is not thread safe, it is used by one builder at a time.
+ */
+final class BufferArena {
+	// number of scratch arrays of each kind that are kept, a builder needs no more than that at the same time
+	static final int MAX_BUFFERS = 4 ;
+
+	private final int[][] ints = new int[MAX_BUFFERS][] ;
+	private final byte[][] bytes = new byte[MAX_BUFFERS][] ;
+	private DisjointSets sets ;
+	private Cells cells ;
+	private int[][] dists ;
+
+	/**
+	 * Gives an array with at least the given length, its content is undefined.
+	 */
+	int[] takeInts(int length) {
+		final int i = findFit(ints, length) ;
+		if (i < 0)
+			return new int[length] ;
+		final int[] result = ints[i] ;
+		ints[i] = null ;
+		return result ;
+	}
+	/**
+	 * Gives an array with at least the given length where the first length entries are 0.
+	 */
+	byte[] takeZeroedBytes(int length) {
+		final int i = findFit(bytes, length) ;
+		if (i < 0)
+			return new byte[length] ;
+		final byte[] result = bytes[i] ;
+		bytes[i] = null ;
+		Arrays.fill(result, 0, length, (byte)0) ;
+		return result ;
+	}
+	/**
+	 * Gives disjoint sets for elements 0,1,...,size-1, each element is in a set of its own.
+	 */
+	DisjointSets takeDisjointSets(int size) {
+		if (null == sets || sets.getCapacity() < size)
+			return new DisjointSets(size) ;
+		final DisjointSets result = sets ;
+		sets = null ;
+		result.reset(size) ;
+		return result ;
+	}
+	/**
+	 * Gives cells of the given dimensions, the content is undefined until Cells.initialize is called.
+	 */
+	Cells takeCells(int width, int height) {
+		if (null == cells || cells.getWidth() != width || cells.getHeight() != height)
+			return new Cells(width, height) ;
+		final Cells result = cells ;
+		cells = null ;
+		return result ;
+	}
+	/**
+	 * Gives a distance object of the given dimensions, distances are undefined until they are computed.
+	 */
+	Distance takeDistance(int width, int height) {
+		if (null == dists || dists.length != width || dists[0].length != height)
+			return new Distance(width, height) ;
+		final Distance result = new Distance(dists) ;
+		dists = null ;
+		return result ;
+	}
+
+	/**
+	 * Takes an array back, the largest arrays are kept.
+	 */
+	void give(int[] buffer) {
+		final int i = findSlot(ints, buffer.length) ;
+		if (i >= 0)
+			ints[i] = buffer ;
+	}
+	void give(byte[] buffer) {
+		final int i = findSlot(bytes, buffer.length) ;
+		if (i >= 0)
+			bytes[i] = buffer ;
+	}
+	void give(DisjointSets buffer) {
+		if (null == sets || sets.getCapacity() < buffer.getCapacity())
+			sets = buffer ;
+	}
+	void give(Cells buffer) {
+		cells = buffer ;
+	}
+	void give(Distance buffer) {
+		dists = buffer.getDists() ;
+	}
+
+	/**
+	 * Finds the smallest array with at least the given length.
+	 * @return its index, -1 if there is none
+	 */
+	private static int findFit(Object[] buffers, int length) {
+		int result = -1 ;
+		for (int i = 0; i < buffers.length; i++) {
+			final int capacity = lengthOf(buffers[i]) ;
+			if (capacity >= length && (result < 0 || capacity < lengthOf(buffers[result])))
+				result = i ;
+		}
+		return result ;
+	}
+	/**
+	 * Finds an empty slot or else the slot of the smallest array if it is smaller than the given length.
+	 * @return its index, -1 if all arrays are at least as large
+	 */
+	private static int findSlot(Object[] buffers, int length) {
+		int result = -1 ;
+		for (int i = 0; i < buffers.length; i++) {
+			if (null == buffers[i])
+				return i ;
+			if (lengthOf(buffers[i]) < length && (result < 0 || lengthOf(buffers[i]) < lengthOf(buffers[result])))
+				result = i ;
+		}
+		return result ;
+	}
+	private static int lengthOf(Object buffer) {
+		if (null == buffer)
+			return -1 ;
+		return (buffer instanceof int[]) ? ((int[])buffer).length : ((byte[])buffer).length ;
+	}
+}
@@ -23,7 +23,46 @@ package generation;
  *
  */
 public enum CardinalDirection {
-	North, East, South, West ;
+	North(0, -1), East(1, 0), South(0, 1), West(-1, 0) ;
+	
+	// (dx,dy) pair as in Cells.java, see getDirection()
+	private final int dx ;
+	private final int dy ;
+	// all directions indexed by ordinal, values() returns a new copy on each call
+	private static final CardinalDirection[] VALUES = values() ;
+	
+	private CardinalDirection(int dx, int dy) {
+		this.dx = dx ;
+		this.dy = dy ;
+	}
+	
+	/**
+	 * Gives the x component of the (dx,dy) pair for the current direction.
+	 * Unlike getDirection() this does not allocate an array
+	 * which makes it the method of choice in loops.
+	 * @return dx in {-1,0,1}
+	 */
+	public int dx() {
+		return dx ;
+	}
+	/**
+	 * Gives the y component of the (dx,dy) pair for the current direction.
+	 * Unlike getDirection() this does not allocate an array
+	 * which makes it the method of choice in loops.
+	 * @return dy in {-1,0,1}
+	 */
+	public int dy() {
+		return dy ;
+	}
+	/**
+	 * Gives the direction for the given ordinal value without copying 
+	 * the array of all values as values() does.
+	 * @param ordinal in 0,1,2,3 for North, East, South, West
+	 * @return matching cardinal direction
+	 */
+	static public CardinalDirection fromOrdinal(int ordinal) {
+		return VALUES[ordinal] ;
+	}
 	/** 
 	 * Gives the direction that results from a 90 degree clockwise rotation
 	 * applied to the current direction. 
@@ -86,10 +125,11 @@ public enum CardinalDirection {
 
 	/**
 	 * Gives a random direction. Values are picked with equal probabilities.
+	 * @param random provides the random number
 	 * @return a random direction, distribution is uniform
 	 */
-	public CardinalDirection randomDirection() {
-		int i = SingleRandom.getRandom().nextIntWithinInterval(0, 3) ;
+	public CardinalDirection randomDirection(RandomStream random) {
+		int i = random.nextIntWithinInterval(0, 3) ;
 		switch(i) {
 		case 0 : 
 			return CardinalDirection.North ;
@@ -134,7 +174,8 @@ public enum CardinalDirection {
 		}
 	}
 	/**
-	 * Gives the (dx,dy) pair as in Cells.java for the current direction
+	 * Gives the (dx,dy) pair as in Cells.java for the current direction.
+	 * Each call allocates a new array, use dx() and dy() in loops.
 	 * @return (dx,dy) pair, dx,dy in {-1,0,1}
 	 */
 	public int[] getDirection() {
@@ -143,27 +184,6 @@ public enum CardinalDirection {
 		public static int[] DIRS_X = { 1, 0, -1, 0 };
 		public static int[] DIRS_Y = { 0, 1, 0, -1 };
 		 */
-		int[] result = new int[2] ;
-		switch(this) {
-		case North: // flipped North : 
-			result[0] = 0 ;
-			result[1] = -1 ;
-			break ;
-		case East : 
-			result[0] = 1 ;
-			result[1] = 0 ;
-			break ;
-		case South: // flipped South : 
-			result[0] = 0 ;
-			result[1] = 1 ;
-			break ;
-		case West : 
-			result[0] = -1 ;
-			result[1] = 0 ;
-			break ;
-		default:
-			throw new RuntimeException("Inconsistent enum type") ;
-		}
-		return result ;
+		return new int[] { dx, dy } ;
 	}
 }
@@ -2,6 +2,7 @@ package generation;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.util.Arrays;
 
 /**
  * This class encapsulates all access to a grid of cells. 
@@ -31,6 +32,11 @@ import java.io.FileWriter;
  * is performed with bit operations (&,|) and thus error prone. 
  * An encapsulation within this class localizes all bit operations for this encoding.
  * 
+ * The grid is stored in a single flat array, one column after the other, 
+ * such that cell (x,y) is located at index x*height+y. 
+ * This keeps the (x,y) view of the original two-dimensional array, 
+ * avoids one indirection per access and keeps the whole maze in a contiguous block of memory.
+ * 
  * This code is refactored code from Maze.java by Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
  * Paul Falstad granted permission to modify and use code for teaching purposes.
  * The class resulted from refactoring the int[][] cells area in the original Maze and Mazebuilder classes into a class of its own.
@@ -72,15 +78,15 @@ public class Cells {
 	
 	private int width;
 	private int height ;
-	private int[][] cells; // width x height array of cells, cells[width][height]
+	private int[] cells; // width x height cells stored column by column, cell (x,y) is at cells[x*height+y]
 	// each cell contains an integer which encodes presence/absence of walls
-	// cells[i][j] can be read as (i,j) coordinates much like (x,y) coordinates
-	// where the first dimension x grows towards the right and 
+	// (x,y) coordinates are such that
+	// the first dimension x grows towards the right and 
 	// the second dimension y grows towards the bottom
 	// as if the (0,0) position is in the top-left corner.
-	// cells[i][j] is not intuitive in terms of rows and column indices in matrix notation 
-	// as position (i,j) would be column i and row j which is opposite to the normal  
-	// use of rows and columns indices for matrices.
+	// A column x occupies the contiguous index range [x*height, (x+1)*height) 
+	// which matches the order in which most loops in this package visit cells,
+	// i.e. x in the outer loop, y in the inner loop.
 	
 	/**
 	 * Constructor
@@ -91,7 +97,7 @@ public class Cells {
 	public Cells(int w, int h) {
 		width = w ;
 		height = h ;
-		cells = new int[w][h];
+		cells = new int[w*h];
 	}
 
 	/**
@@ -100,20 +106,21 @@ public class Cells {
 	 * @precondition input != null
 	 */
 	public Cells(int[][] input){
-		// Alternative, 2d array is a 1d array with arrays as elements
-		width = input.length ;
-		height = input[0].length ;
-		cells = new int[width][];
-		for(int i = 0; i < width; i++)
-		    cells[i] = input[i].clone();
-		/* Basic version
 		this(input.length, input[0].length);
-		for (int i = 0; i < width; i++) {
-			for (int j = 0; j < height; j++) {
-				cells[i][j] = input[i][j];
-			}
-		}
-		*/
+		// each column of the input is a contiguous block in the flat array
+		for (int i = 0; i < width; i++)
+			System.arraycopy(input[i], 0, cells, i*height, height);
+	}
+	
+	/**
+	 * Copy constructor that dimensions and initializes cells with the values of the given cells object.
+	 * @param input provides cells to copy content from
+	 * @precondition input != null
+	 */
+	public Cells(Cells input) {
+		width = input.width ;
+		height = input.height ;
+		cells = input.cells.clone();
 	}
 	
 	/**
@@ -122,22 +129,22 @@ public class Cells {
 	 */
 	public void initialize() {
 		int x, y;
-	
-		for (x = 0; x < width; x++) {
-			for (y = 0; y < height; y++) {
-				setBitToOne(x, y, (CW_VISITED | CW_ALL));
-			}
-		} 
+		// set all walls and the visited flag with a single pass over the flat array,
+		// anything else is cleared such that cells can be reused for another maze
+		final int mask = CW_VISITED | CW_ALL ;
+		for (int i = 0; i < cells.length; i++)
+			cells[i] = mask ;
 		// Assumption: (0,0) at top-left corner
 		// mark exterior walls to top and bottom
 		for (x = 0; x < width; x++) {
 			setBitToOne(x, 0, getBoundForBit(CW_TOP));
 			setBitToOne(x, height-1, getBoundForBit(CW_BOT));
 		} 
-		// mark exterior walls to left and right 
+		// mark exterior walls to left and right, each is a contiguous column
+		final int rightColumn = (width-1)*height ;
 		for (y = 0; y < height; y++) {
-			setBitToOne(0, y, getBoundForBit(CW_LEFT));
-			setBitToOne(width-1, y, getBoundForBit(CW_RIGHT));
+			cells[y] |= getBoundForBit(CW_LEFT);
+			cells[rightColumn+y] |= getBoundForBit(CW_RIGHT);
 		}
 	}
 	
@@ -158,13 +165,7 @@ public class Cells {
 		final Cells o = (Cells)other ; // type cast safe after checking class objects
 		if ((width != o.width)||(height != o.height))
 			return false ;
-		for (int i = 0; i < width; i++) {
-			for (int j = 0; j < height; j++) {
-				if (cells[i][j] != o.cells[i][j])
-					return false ;
-			}
-		}
-		return true ;
+		return Arrays.equals(cells, o.cells) ;
 	}
 	/**
 	 * Hashcode method is not implemented as it is not needed here.
@@ -185,7 +186,21 @@ public class Cells {
 	 */
 	public int getValueOfCell( int x, int y )
 	{
-		return cells[x][y] ;
+		return cells[x*height+y] ;
+	}
+	/**
+	 * Gives the width of the grid of cells.
+	 * @return the width
+	 */
+	public int getWidth() {
+		return width ;
+	}
+	/**
+	 * Gives the height of the grid of cells.
+	 * @return the height
+	 */
+	public int getHeight() {
+		return height ;
 	}
 	
 	/**
@@ -197,17 +212,25 @@ public class Cells {
 	 * @return true if neighbor in the given direction is new and wall can be taken down, false otherwise
 	 */
 	public boolean canGo(Wall wall) {
-		int x = wall.getX();
-		int y = wall.getY();
-		int[] d = wall.getDirection().getDirection() ;
-		int dx = d[0];
-		int dy = d[1];
+		return canGo(wall.getX(), wall.getY(), wall.getDirection()) ;
+	}
+	/**
+	 * Same as canGo(Wall) but for a direction given directly, 
+	 * which avoids the allocation of a Wall object.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir gives the cardinal direction
+	 * @precondition borders limit the outside of the maze area
+	 * @precondition 0 <= x < width, 0 <= y < height
+	 * @return true if neighbor in the given direction is new and wall can be taken down, false otherwise
+	 */
+	public boolean canGo(int x, int y, CardinalDirection dir) {
 		// borders limit rooms (but for potential doors) and the outside limit of the maze
-		if (hasBorder(x, y, dx, dy))
+		if ((cells[x*height+y] & getBoundForBit(WALL_BITS[dir.ordinal()])) != 0)
 			return false;
 		// if there is no border, neighbor should be in legal range of values
 		// return true if neighbor has not been visited before
-		return isFirstVisit(x+dx, y+dy);
+		return (cells[(x+dir.dx())*height+y+dir.dy()] & CW_VISITED) != 0;
 	}
 	/**
 	 * checks if cell (x,y) has a border in the given direction (dx,dy)
@@ -388,6 +411,14 @@ public class Cells {
 	 * @param ryl 2nd corner, y coordinate
 	 */
 	public void markAreaAsRoom(int rw, int rh, int rx, int ry, int rxl, int ryl) {
+		markAreaAsRoom(rw, rh, rx, ry, rxl, ryl, new RandomStream()) ;
+	}
+	/**
+	 * Same as markAreaAsRoom(int, int, int, int, int, int) but doors are positioned 
+	 * with the given random number stream, which makes the result reproducible.
+	 * @param random provides the random numbers to position doors
+	 */
+	public void markAreaAsRoom(int rw, int rh, int rx, int ry, int rxl, int ryl, RandomStream random) {
 		// clear all cells in area of room from all walls and borders
 		// mark all cells in area as being inside the room
 		int x;
@@ -401,7 +432,6 @@ public class Cells {
 		encloseArea(rx, ry, rxl, ryl);
 		// knock down some walls for doors
 		int wallct = (rw+rh)*2; // counter for the total number of walls
-		SingleRandom random = SingleRandom.getRandom() ;
 		// check at most 5 walls
 		for (int ct = 0; ct != 5; ct++) { 
 			int door = random.nextIntWithinInterval(0, wallct-1); // pick a random wall
@@ -532,14 +562,23 @@ public class Cells {
 	 * @param internalWall denotes if wall is added on both cells (true) or just for the given cell (false)
 	 */
 	public void addWall(Wall wall, boolean internalWall) {
-		int x = wall.getX();
-		int y = wall.getY();
-		int[] d = wall.getDirection().getDirection() ;
+		addWall(wall.getX(), wall.getY(), wall.getDirection(), internalWall) ;
+	}
+	/**
+	 * Same as addWall(Wall, boolean) but for a direction given directly, 
+	 * which avoids the allocation of a Wall object.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir gives the cardinal direction
+	 * @param internalWall denotes if wall is added on both cells (true) or just for the given cell (false)
+	 */
+	public void addWall(int x, int y, CardinalDirection dir, boolean internalWall) {
+		final int d = dir.ordinal() ;
 		// add wall on (x,y)
-		setWallToOne(x, y, d[0], d[1]);
+		cells[x*height+y] |= WALL_BITS[d] ;
 		// add same wall but for adjacent cell
 		if (internalWall)
-			setWallToOne(x+d[0], y+d[1], -d[0], -d[1]);
+			cells[(x+dir.dx())*height+y+dir.dy()] |= WALL_BITS[d^2] ;
 	}
 
 	/**
@@ -551,9 +590,8 @@ public class Cells {
 	public void deleteWall(Wall wall) {
 		int x = wall.getX();
 		int y = wall.getY();
-		int[] d = wall.getDirection().getDirection() ;
-		int dx = d[0];
-		int dy = d[1];
+		int dx = wall.getDirection().dx();
+		int dy = wall.getDirection().dy();
 		// delete wall on (x,y)
 		setWallToZero(x, y, dx, dy);
 		// delete same wall but for adjacent cell
@@ -563,6 +601,21 @@ public class Cells {
 			logWall( x,  y,  dx,  dy);
 		/////////////////// END OF SPECIAL CODE FOR GRADING //////////////////////////////////////////////////////////////
 	}
+	/**
+	 * Same as deleteWall(Wall) but for a direction given directly, 
+	 * which avoids the allocation of a Wall object.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir gives the cardinal direction
+	 * @precondition 0 <= x < width, 0 <= y < height and the neighbor in the given direction is on the maze
+	 */
+	public void deleteWall(int x, int y, CardinalDirection dir) {
+		final int d = dir.ordinal() ;
+		cells[x*height+y] &= ~WALL_BITS[d] ;
+		cells[(x+dir.dx())*height+y+dir.dy()] &= ~WALL_BITS[d^2] ;
+		if (deepdebugWall) // for debugging: track sequence of walls that are deleted
+			logWall(x, y, dir.dx(), dir.dy());
+	}
 
 	//////////////////// get methods (is..., has...) for various attributes ///////////////////////
 	/**
@@ -591,6 +644,39 @@ public class Cells {
 	public boolean hasNoWall(int x, int y, CardinalDirection dir) {
 		return !hasMaskedBitsTrue(x, y, getCWConstantForDirection(dir));
 	}
+	/**
+	 * Scans row y from position x towards the right (increasing x) 
+	 * for the first cell that has a wall in the given direction.
+	 * @param x coordinate of the first cell to check
+	 * @param y coordinate of the row
+	 * @param dir gives the cardinal direction
+	 * @precondition 0 <= x <= width, 0 <= y < height
+	 * @return smallest x' >= x such that (x',y) has a wall in the given direction, width if there is none
+	 */
+	public int nextWallInRow(int x, int y, CardinalDirection dir) {
+		final int bit = getCWConstantForDirection(dir) ;
+		for (int i = x*height+y; x < width; x++, i += height) {
+			if ((cells[i] & bit) != 0)
+				break ;
+		}
+		return x ;
+	}
+	/**
+	 * Scans column x from position y downwards (increasing y) 
+	 * for the first cell that has a wall in the given direction.
+	 * @param x coordinate of the column
+	 * @param y coordinate of the first cell to check
+	 * @param dir gives the cardinal direction
+	 * @precondition 0 <= x < width, 0 <= y <= height
+	 * @return smallest y' >= y such that (x,y') has a wall in the given direction, height if there is none
+	 */
+	public int nextWallInColumn(int x, int y, CardinalDirection dir) {
+		final int bit = getCWConstantForDirection(dir) ;
+		final int base = x*height ;
+		while (y < height && (cells[base+y] & bit) == 0)
+			y++ ;
+		return y ;
+	}
 	/**
 	 * Gives the matching bit encoded value, i.e.,
 	 * the matching CW_TOP, BOT, LEFT, RIGHT constants in Constants.java
@@ -599,25 +685,11 @@ public class Cells {
 	 * @return the matching integer value (CW_ constant)
 	 */ 
 	protected int getCWConstantForDirection(CardinalDirection dir) {
-		/* compare with definition for consistency
-		static final int CW_TOP = 1;  // 2^0
-		static final int CW_BOT = 2;  // 2^1
-		static final int CW_LEFT = 4; // 2^2
-		static final int CW_RIGHT = 8;// 2^3
-		 */
-		switch(dir) {
-		case North : 
-			return CW_TOP; // flipped: CW_TOP ;
-		case East : 
-			return CW_RIGHT ;
-		case South : 
-			return CW_BOT; // flipped CW_BOT ;
-		case West : 
-			return CW_LEFT ;
-		default:
-			throw new RuntimeException("Unsupported value in enum type") ;
-		}
+		return WALL_BITS[dir.ordinal()] ;
 	}
+	// CW_ constants indexed by the ordinal of the matching direction: North, East, South, West,
+	// note that the opposite of the direction with ordinal d has ordinal d^2
+	private static final int[] WALL_BITS = { CW_TOP, CW_RIGHT, CW_BOT, CW_LEFT } ;
 
 	////////////////// low level methods operating on bits and bitmasks //////////////////////////////////////////
 	//  long term goal is to make all of these methods private to encapsulate the encoding ///////////////////////
@@ -629,7 +701,7 @@ public class Cells {
 	 * @precondition 0 <= x < width, 0 <= y < height
 	 */
 	private void setBitToZero(int x, int y, int cw_bit) {
-		cells[x][y] &= ~cw_bit;
+		cells[x*height+y] &= ~cw_bit;
 	}
 	/**
 	 * Sets all wall bits to zero for a given cell
@@ -647,10 +719,10 @@ public class Cells {
 	// better to directly change client classes
 	//
 	protected boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) != 0;
+		return (cells[x*height+y] & bitmask) != 0;
 	}
 	protected boolean hasMaskedBitsFalse(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) == 0;
+		return (cells[x*height+y] & bitmask) == 0;
 	}
 
 	/**
@@ -683,7 +755,7 @@ public class Cells {
 	 * @precondition 0 <= x < width, 0 <= y < height
 	 */
 	private void setBitToOne(int x, int y, int bitmask) {
-		cells[x][y] |= bitmask ;
+		cells[x*height+y] |= bitmask ;
 	}
 
 	///////////////// code for debugging ///////////////////////////////////////
@@ -701,7 +773,7 @@ public class Cells {
 		{
 			prefix = " i:" + i + " j:";
 			for (int j = 0 ; j < height ; j++)
-				s += prefix + j + "=" + cells[i][j] ;
+				s += prefix + j + "=" + cells[i*height+j] ;
 			s += "\n" ;
 		}
 		return s ;
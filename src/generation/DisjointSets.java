@@ -0,0 +1,76 @@
+package generation;
+
+/**
+ * Disjoint sets (union-find) over the integers 0,1,...,size-1
+ * with path compression and union by rank.
+ * The data structure consists of two primitive arrays, no objects are allocated per element.
+ * It is used by maze builders to keep track of which cells are connected.
+ */
+public class DisjointSets {
+	private final int[] parent ; 	// parent[i] == i if i is the representative of its set
+	private final int[] rank ; 		// upper bound on the height of the tree below a representative
+
+	/**
+	 * Constructor, each element starts in a set of its own
+	 * @param size is the number of elements
+	 */
+	public DisjointSets(int size) {
+		parent = new int[size] ;
+		rank = new int[size] ;
+		reset(size) ;
+	}
+	/**
+	 * Gives the number of elements the data structure has been created for.
+	 */
+	public int getCapacity() {
+		return parent.length ;
+	}
+	/**
+	 * Puts the first n elements back into sets of their own
+	 * such that the data structure can be reused.
+	 * @param n is the number of elements to reset, n <= size
+	 */
+	public void reset(int n) {
+		for (int i = 0; i < n; i++) {
+			parent[i] = i ;
+			rank[i] = 0 ;
+		}
+	}
+	/**
+	 * Finds the representative of the set that contains the given element.
+	 * All elements on the path to the representative are linked directly to it afterwards.
+	 * @param element
+	 * @return representative of the set
+	 */
+	public int find(int element) {
+		int root = element ;
+		while (parent[root] != root)
+			root = parent[root] ;
+		// path compression
+		while (parent[element] != root) {
+			final int next = parent[element] ;
+			parent[element] = root ;
+			element = next ;
+		}
+		return root ;
+	}
+	/**
+	 * Joins the sets that contain the given elements, the lower tree is put below the higher one.
+	 * @return true if the elements were in different sets, false if they were in the same set already
+	 */
+	public boolean union(int element1, int element2) {
+		final int root1 = find(element1) ;
+		final int root2 = find(element2) ;
+		if (root1 == root2)
+			return false ;
+		if (rank[root1] < rank[root2])
+			parent[root1] = root2 ;
+		else if (rank[root1] > rank[root2])
+			parent[root2] = root1 ;
+		else {
+			parent[root2] = root1 ;
+			rank[root1]++ ;
+		}
+		return true ;
+	}
+}
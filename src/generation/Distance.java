@@ -1,5 +1,11 @@
 package generation;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 /**
  * This class has the responsibility to provide the distance for each cell to the exit of a maze.
  * It encapsulates the distance matrix.  
@@ -163,69 +169,265 @@ public class Distance {
 
 	/**
 	 * Computes distances to the given position (ax,ay) for all cells in array dists.
+	 * The computation is a breadth first search that starts at (ax,ay) and 
+	 * visits each reachable cell exactly once, so the resulting values are 
+	 * minimal after a single pass over the maze. 
+	 * Cells that are not reachable from (ax,ay) keep the value INFINITY.
+	 * Very large mazes are searched in parallel, see isParallel().
 	 * @param cells provide information on walls between positions
 	 * @param ax, position, x coordinate
 	 * @param ay, position, y coordinate
 	 */
 	private void computeDists(Cells cells, int ax, int ay) {
-		int x, y;
 		// initialize the distance array with a value for infinity 
 		setAllDistanceValues(INFINITY) ;
 		// set the final distance at the exit position
 		dists[ax][ay] = 1;
-		// distribute values from this position to get started
-		pushDistanceValuesDFS2(cells, ax, ay);
-		int toDoCounter = countInfinity();
-		int progress; // used to recognize fixpoint, no progress, then stop
-		// go over this array as long as we can find something to do
-		// MEMO: there are likely to be much smarter ways to distribute distances in a breadth first manner...
-		// why not push identified cells with infinite distance on a "work to do" heap
-		// TODO: limit iterations to upperbound which is #cells == width * height
-		// in each iteration at least one cell should benefit from neighbor
-		// in each iteration at least one cell should receive its final value
-		// TODO: do a final checkup for enclosed areas left over with Max Int
-		do {
-			// check all entries in the distance array
-			for (x = 0; x != width; x++) {
-				for (y = 0; y != height; y++) 
-				{
-					if (dists[x][y] == INFINITY) {
-						continue;
-					}
-					// if the distance is not infinite, 
-					// let's see if the cell has a neighbor that we can update and 
-					// perform a depth first search on.
-					pushDistanceValuesDFS2(cells, x, y);
-				}
-			}
-			progress = toDoCounter - countInfinity();
-			toDoCounter -= progress; // update to current value
-		} while (0 < progress);
+		if (isParallel()) {
+			pushDistanceValuesParallelBFS(cells, ax, ay) ;
+		}
+		else {
+			clearQueue() ;
+			enqueue(ax, ay) ;
+			pushDistanceValuesBFS(cells) ;
+		}
 		assert (0 == countInfinity()) : 
 			"All positions should have a finite distance to the exit";
-		// the computation is not good enough to have truly minimum values
-		saturateDistances(cells);
 	}
 	/**
-	 * Follows a path as far as possible to push small distance values
-	 * into the maze
+	 * Processes the queue of positions in breadth first order.
+	 * Each position taken from the queue pushes its distance plus 1 to 
+	 * all reachable neighbors that have a larger distance value. 
+	 * Updated neighbors are appended to the queue.
+	 * @param cells needed for checking walls, read only
+	 */
+	private void pushDistanceValuesBFS(Cells cells) {
+		int pos, x, y, nextX, nextY, nextDistance ;
+		while (!isQueueEmpty()) {
+			pos = dequeue() ;
+			x = pos / height ;
+			y = pos % height ;
+			nextDistance = dists[x][y] + 1 ;
+			// check all four directions, update distance as needed
+			for (CardinalDirection cd: DIRECTIONS) {
+				// check for reachable neighbors
+				if (cells.hasWall(x, y, cd))
+					continue ;
+				nextX = x + cd.dx() ;
+				nextY = y + cd.dy() ;
+				// check if cell at (nextX,nextY) is within bounds and if its distance needs an update
+				if ((0 <= nextX && nextX < width) && (0 <= nextY && nextY < height) && 
+						dists[nextX][nextY] > nextDistance) {
+					dists[nextX][nextY] = nextDistance;
+					enqueue(nextX, nextY) ;
+				}
+			}
+		}
+	}
+	// all directions, cached to avoid the array copy that comes with each call to values()
+	private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values() ;
+
+	///////////////// parallel breadth first search for very large mazes /////////////////////////
+	// The search proceeds level by level. All positions of the current frontier have the same 
+	// distance, the frontier is split into chunks that are processed by the fork/join common pool.
+	// A position is claimed by setting its bit in a visited bitmap with compare and set, 
+	// only the thread that claims a position writes its distance value, so no locks are needed.
+	// Joining all tasks of a level makes the writes visible before the next level starts.
+	
+	/**
+	 * Default minimum number of cells for which distances are computed in parallel, 
+	 * mazes with fewer cells are not worth the overhead. 
+	 * The default applies only if the fork/join common pool has more than one worker.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1024*1024 ;
+	// frontier chunks up to this size are processed by a single task
+	private static final int FRONTIER_CHUNK = 256 ;
+	
+	// without a second worker thread the parallel search is only overhead
+	private int parallelThreshold = (ForkJoinPool.getCommonPoolParallelism() > 1) ? PARALLEL_THRESHOLD : Integer.MAX_VALUE ;
+	
+	/**
+	 * Sets the minimum number of cells for which computeDistances() uses the parallel search.
+	 * A value of 0 always selects the parallel search, Integer.MAX_VALUE never does.
+	 * @param threshold is the minimum number of cells, width*height
+	 */
+	public void setParallelThreshold(int threshold) {
+		parallelThreshold = threshold ;
+	}
+	/**
+	 * Tells if computeDistances() uses the parallel search for this maze
+	 */
+	public boolean isParallel() {
+		return (long)width*height >= parallelThreshold ;
+	}
+	
+	/**
+	 * Computes distances for all cells reachable from (ax,ay) with a level synchronous 
+	 * breadth first search where each level is processed in parallel. 
 	 * @param cells needed for checking walls, read only
-	 * @param sx starting position
-	 * @param sy starting position
-	 */
-	private void pushDistanceValuesDFS2(Cells cells, int sx, int sy) {
-		while (true) {
-			CardinalDirection nextn = updateNeighborDistancesAndDirection(cells, sx, sy);
-			if (nextn == null)
-				break; // exit the loop if we cannot find another cell to proceed with
-			// update coordinates for next cell
-			int[] dir = nextn.getDirection();
-			sx += dir[0];
-			sy += dir[1];
-			// follow the nextn node on a depth-first-search path
+	 * @param ax, position, x coordinate, dists[ax][ay] is already set
+	 * @param ay, position, y coordinate
+	 */
+	private void pushDistanceValuesParallelBFS(Cells cells, int ax, int ay) {
+		final AtomicIntegerArray visited = new AtomicIntegerArray((width*height+31)/32) ;
+		final AtomicInteger nextCount = new AtomicInteger() ;
+		final ForkJoinPool pool = ForkJoinPool.commonPool() ;
+		int[] frontier = new int[] { ax*height+ay } ;
+		int count = 1 ;
+		int[] next = new int[4] ;
+		claim(visited, ax*height+ay) ;
+		for (int level = dists[ax][ay] + 1; count > 0; level++) {
+			// each position in the frontier has at most 4 new neighbors
+			if (next.length < 4*count)
+				next = new int[4*count] ;
+			nextCount.set(0);
+			FrontierTask task = new FrontierTask(cells, visited, frontier, 0, count, level, next, nextCount) ;
+			if (count <= FRONTIER_CHUNK)
+				task.compute(); // not worth the hand over to the pool
+			else
+				pool.invoke(task) ;
+			// next frontier becomes the current one, reuse the old array 
+			int[] tmp = frontier ;
+			frontier = next ;
+			next = tmp ;
+			count = nextCount.get() ;
+		}
+	}
+	/**
+	 * Marks the position as visited unless some other thread did so before.
+	 * @return true if the calling thread claimed the position, false if it was visited already
+	 */
+	private static boolean claim(AtomicIntegerArray visited, int pos) {
+		final int index = pos >>> 5 ;
+		final int bit = 1 << (pos & 31) ;
+		int old ;
+		do {
+			old = visited.get(index) ;
+			if ((old & bit) != 0)
+				return false ;
+		} while (!visited.compareAndSet(index, old, old | bit)) ;
+		return true ;
+	}
+	
+	/**
+	 * Expands the frontier positions [from,to) by one level. 
+	 * Large ranges are split in halves, small ranges collect newly claimed neighbors 
+	 * locally and then append them in one piece to the next frontier.
+	 */
+	private class FrontierTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Cells cells ;
+		private final AtomicIntegerArray visited ;
+		private final int[] frontier ;
+		private final int from ;
+		private final int to ;
+		private final int level ;
+		private final int[] next ;
+		private final AtomicInteger nextCount ;
+		
+		FrontierTask(Cells cells, AtomicIntegerArray visited, int[] frontier, int from, int to, 
+				int level, int[] next, AtomicInteger nextCount) {
+			this.cells = cells ;
+			this.visited = visited ;
+			this.frontier = frontier ;
+			this.from = from ;
+			this.to = to ;
+			this.level = level ;
+			this.next = next ;
+			this.nextCount = nextCount ;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > FRONTIER_CHUNK) {
+				final int middle = (from + to) >>> 1 ;
+				invokeAll(new FrontierTask(cells, visited, frontier, from, middle, level, next, nextCount), 
+						new FrontierTask(cells, visited, frontier, middle, to, level, next, nextCount)) ;
+				return ;
+			}
+			final int[] found = new int[4*(to - from)] ;
+			int n = 0 ;
+			for (int i = from; i < to; i++) {
+				final int x = frontier[i] / height ;
+				final int y = frontier[i] % height ;
+				for (CardinalDirection cd: DIRECTIONS) {
+					if (cells.hasWall(x, y, cd))
+						continue ;
+					final int nx = x + cd.dx() ;
+					final int ny = y + cd.dy() ;
+					if (isOnBoard(nx, ny) && claim(visited, nx*height+ny)) {
+						dists[nx][ny] = level ;
+						found[n++] = nx*height+ny ;
+					}
+				}
+			}
+			if (n > 0)
+				System.arraycopy(found, 0, next, nextCount.getAndAdd(n), n) ;
 		}
 	}
 
+	///////////////// queue of positions for the breadth first search /////////////////////////////
+	// The queue is a ring buffer over a primitive array such that 
+	// no objects are allocated while distances are computed.
+	// A position (x,y) is encoded as a single integer x*height+y.
+	// The capacity width*height is sufficient as long as no position 
+	// is in the queue more than once at the same time.
+	private int[] queue ; 	// ring buffer, allocated on first use and reused afterwards
+	private int head ;		// index of the next position to dequeue
+	private int tail ;		// index of the next free slot
+	private int queued ;	// number of positions currently in the queue
+	
+	/**
+	 * Lends a buffer for the queue such that the breadth first search does not allocate one.
+	 * @param buffer with a length of at least width*height
+	 */
+	void lendQueue(int[] buffer) {
+		assert buffer.length >= width*height : "Distance: buffer too small for queue" ;
+		queue = buffer ;
+	}
+	/**
+	 * Gives the buffer of the queue back to its owner, later searches allocate a new one if needed.
+	 * @return the buffer, null if there is none
+	 */
+	int[] returnQueue() {
+		final int[] result = queue ;
+		queue = null ;
+		return result ;
+	}
+	/**
+	 * Empties the queue, allocates the ring buffer if necessary.
+	 */
+	private void clearQueue() {
+		if (null == queue)
+			queue = new int[width*height] ;
+		head = 0 ;
+		tail = 0 ;
+		queued = 0 ;
+	}
+	/**
+	 * Appends position (x,y) to the end of the queue.
+	 */
+	private void enqueue(int x, int y) {
+		assert queued < queue.length : "Distance: queue overflow" ;
+		queue[tail] = x*height+y ;
+		if (++tail == queue.length)
+			tail = 0 ;
+		queued++ ;
+	}
+	/**
+	 * Removes the first position from the queue.
+	 * @return encoded position x*height+y
+	 */
+	private int dequeue() {
+		int pos = queue[head] ;
+		if (++head == queue.length)
+			head = 0 ;
+		queued-- ;
+		return pos ;
+	}
+	private boolean isQueueEmpty() {
+		return 0 == queued ;
+	}
 	
 	/**
 	 * Sets all values in dists to given value
@@ -233,9 +435,7 @@ public class Distance {
 	 */
 	private void setAllDistanceValues(int value) {
 		for (int x = 0; x != width; x++) {
-			for (int y = 0; y != height; y++) {
-				dists[x][y] = value ;
-			}
+			Arrays.fill(dists[x], value) ;
 		}
 	}
 	/**
@@ -252,86 +452,41 @@ public class Distance {
 		}
 		return result;
 	}
-	/**
-	 * Updates distance values for adjacent cells that are reachable
-	 * if value can be reduced to current distance plus 1. 
-	 * @param cells
-	 * @param currentX x coordinate of current position
-	 * @param currentY y coordinate of current position
-	 * @return direction for a neighbor that has been updated or null if there is none
-	 */
-	private CardinalDirection updateNeighborDistancesAndDirection(Cells cells, int currentX, int currentY) {
-		CardinalDirection result = null; // returns null by default
-		int nextDistance = dists[currentX][currentY] + 1; // distance of a neighbor
-		int[] dir;
-		int nextX;
-		int nextY;
-		// check all four directions, update distance as needed
-		for (CardinalDirection cd: CardinalDirection.values()) {
-			// check for reachable neighbors
-			if (cells.hasNoWall(currentX, currentY, cd)) {
-				// check if neighbor is on board
-				dir = cd.getDirection();
-				nextX = currentX+dir[0];
-				nextY = currentY+dir[1];
-				// check if cell at (nextX,nextY) is within bounds
-				if ((0 <= nextX && nextX < width) && (0 <= nextY && nextY < height)) {
-					// check if neigbor's distance needs update
-					if (dists[nextX][nextY] > nextDistance) {
-						// update the neighbor's distance value
-						// mark that cell as the next one
-						dists[nextX][nextY] = nextDistance;
-						result = cd;
-					}
-				}
-			}
-		}
-		return result;
-	}
 	
 	/**
-	 * Fixpoint iteration on distance matrix.
+	 * Compute distances for given cells object of a maze
+	 * @param cells with maze
+	 * @return exit position somewhere on the  border
 	 */
-	private void saturateDistances(Cells cells) {
-		boolean progress = false; 
-		int count = 0;
-		int[] dir = null;
-		CardinalDirection nextn;
-		do {
-			progress = false; // reset termination criterion
-			// go through all positions
-			// check if we can update a neighbor to 
-			// a shorter distance, if so we made progress
-			for (int x = 0; x < width; x++) {
-				for (int y = 0; y < height; y++) {
-					nextn = 	updateNeighborDistancesAndDirection(cells, x, y);
-					if (null != nextn) {
-						progress = true; // something changed
-						// follow neighbor on a depth-first-search path
-						dir = nextn.getDirection();
-						pushDistanceValuesDFS2(cells, x+dir[0], y+dir[1]);		
-					}
-				}
-			}
-			count++;
-		} while (progress);
-		//System.out.println("Distance.saturate: #iterations needed " + count);
+	public int[] computeDistances(Cells cells) {
+		computeExitPosition(cells);
+		computeDistancesToExit(cells);
+		return exitposition ;
 	}
 	/**
-	 * Compute distances for given cells object of a maze
+	 * First step of computeDistances: determines the exit position 
+	 * without computing the final distances. 
+	 * The distance values are temporary until computeDistancesToExit is called.
 	 * @param cells with maze
 	 * @return exit position somewhere on the  border
 	 */
-	public int[] computeDistances(Cells cells) {
+	public int[] computeExitPosition(Cells cells) {
 		// compute temporary distances for a starting point (x,y) = (width/2,height/2) 
 		// which is located in the center of the maze
 		computeDists(cells, width/2, height/2);
 		// figure out which position is the furthest on the border to find an exit position
 		exitposition = getPositionWithMaxDistanceOnBorder();
+		return exitposition ;
+	}
+	/**
+	 * Second step of computeDistances: computes the distances to the exit position. 
+	 * Cells are only read, so this can run in parallel to other readers of the cells.
+	 * @param cells with maze
+	 * @precondition computeExitPosition() was called before
+	 */
+	public void computeDistancesToExit(Cells cells) {
 		// recompute distances for an exit point (x,y) = (remotex,remotey)
 		computeDists(cells, exitposition[0], exitposition[1]);
-
-		return exitposition ;
 	}
 
 	/**
@@ -368,4 +523,214 @@ public class Distance {
 	public boolean isExitPosition(int x, int y){
 		return ((x == exitposition[0]) && (y == exitposition[1])) ;
 	}
+	
+	///////////////// incremental updates after a single wall changed /////////////////////////////
+	// The following methods keep distance values correct if a single wall between
+	// two adjacent cells is added or deleted after computeDistances() was called.
+	// Only cells whose distance actually changes are visited.
+	// The exit position remains as it is, start position and maximum distance
+	// keep describing the maze as it was generated.
+	
+	/**
+	 * Updates distance values after the wall between (x,y) and its neighbor 
+	 * in the given direction has been deleted. 
+	 * Distances can only decrease, changes spread from the end of the wall 
+	 * that is closer to the exit.
+	 * @param cells with the wall already deleted
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir direction of the wall at (x,y)
+	 * @precondition computeDistances() was called before
+	 */
+	public void updateAfterWallDeleted(Cells cells, int x, int y, CardinalDirection dir) {
+		final int nx = x + dir.dx() ;
+		final int ny = y + dir.dy() ;
+		if (!isOnBoard(nx, ny))
+			return ; // wall to the outside, no path inside the maze changes
+		// let (x,y) be the end with the smaller distance
+		if (dists[nx][ny] < dists[x][y]) {
+			updateAfterWallDeleted(cells, nx, ny, dir.oppositeDirection()) ;
+			return ;
+		}
+		if (dists[x][y] == INFINITY || dists[nx][ny] <= dists[x][y] + 1)
+			return ; // no shorter path through the new opening
+		dists[nx][ny] = dists[x][y] + 1 ;
+		clearQueue() ;
+		enqueue(nx, ny) ;
+		pushDistanceValuesBFS(cells) ;
+	}
+	
+	/**
+	 * Updates distance values after a wall between (x,y) and its neighbor 
+	 * in the given direction has been added. 
+	 * Distances can only increase and only for cells whose shortest paths 
+	 * all went through the now closed opening. 
+	 * Those cells are identified first and then receive new values from their unaffected neighbors.
+	 * Cells that are cut off from the exit end up with distance INFINITY.
+	 * @param cells with the wall already added
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir direction of the wall at (x,y)
+	 * @precondition computeDistances() was called before
+	 */
+	public void updateAfterWallAdded(Cells cells, int x, int y, CardinalDirection dir) {
+		final int nx = x + dir.dx() ;
+		final int ny = y + dir.dy() ;
+		if (!isOnBoard(nx, ny))
+			return ; // wall to the outside, no path inside the maze changes
+		// the opening mattered only if one end was the predecessor of the other on a shortest path
+		// let (nx,ny) be the end that is further away from the exit
+		if (dists[x][y] > dists[nx][ny]) {
+			updateAfterWallAdded(cells, nx, ny, dir.oppositeDirection()) ;
+			return ;
+		}
+		if (dists[x][y] == INFINITY || dists[nx][ny] != dists[x][y] + 1)
+			return ; 
+		int affected = collectAffectedCells(cells, nx, ny) ;
+		if (affected > 0)
+			recomputeAffectedCells(cells, affected) ;
+	}
+	
+	// scratch space for incremental updates, allocated on first use and reused afterwards
+	private int[] affectedCells ; 	// positions x*height+y of cells that lost their shortest paths
+	private int[] marks ;			// marks[pos] == markStamp if pos has been put into the queue in the current update
+	private int markStamp ;			// incremented for each update such that marks never need to be cleared
+	private long[] seeds ;			// new tentative distance and position of affected cells, packed as distance<<32 | position
+	
+	/**
+	 * Identifies all cells that have no shortest path to the exit anymore 
+	 * after the opening towards its predecessor (cx,cy) has been closed.
+	 * Cells are checked in breadth first order starting at (cx,cy) such that all 
+	 * possible predecessors of a cell are decided before the cell itself.
+	 * A cell keeps its distance if it has a reachable, unaffected neighbor 
+	 * with a distance that is one less. 
+	 * Affected cells are recorded in affectedCells and their distance is set to INFINITY.
+	 * @return number of affected cells
+	 */
+	private int collectAffectedCells(Cells cells, int cx, int cy) {
+		if (null == affectedCells) {
+			affectedCells = new int[width*height] ;
+			marks = new int[width*height] ;
+		}
+		markStamp++ ;
+		int count = 0 ;
+		clearQueue() ;
+		enqueue(cx, cy) ;
+		marks[cx*height+cy] = markStamp ;
+		while (!isQueueEmpty()) {
+			final int pos = dequeue() ;
+			final int x = pos / height ;
+			final int y = pos % height ;
+			final int d = dists[x][y] ;
+			if (hasNeighborWithDistance(cells, x, y, d-1))
+				continue ; // still has a shortest path of the same length
+			dists[x][y] = INFINITY ;
+			affectedCells[count++] = pos ;
+			// successors on shortest paths may have lost their path as well
+			for (CardinalDirection cd: DIRECTIONS) {
+				if (cells.hasWall(x, y, cd))
+					continue ;
+				final int nx = x + cd.dx() ;
+				final int ny = y + cd.dy() ;
+				if (isOnBoard(nx, ny) && dists[nx][ny] == d+1 && marks[nx*height+ny] != markStamp) {
+					marks[nx*height+ny] = markStamp ;
+					enqueue(nx, ny) ;
+				}
+			}
+		}
+		return count ;
+	}
+	
+	/**
+	 * Assigns new distance values to the affected cells.
+	 * Each affected cell first gets a tentative value from its unaffected neighbors.
+	 * Cells are then finalized in order of increasing distance by merging the sorted 
+	 * tentative values with a breadth first queue of improved cells, 
+	 * which amounts to Dijkstra's algorithm for edges of length 1.
+	 * @param count number of entries in affectedCells
+	 */
+	private void recomputeAffectedCells(Cells cells, int count) {
+		if (null == seeds)
+			seeds = new long[width*height] ;
+		int seedCount = 0 ;
+		for (int i = 0; i < count; i++) {
+			final int pos = affectedCells[i] ;
+			final int best = getMinNeighborDistance(cells, pos / height, pos % height) ;
+			if (best != INFINITY)
+				seeds[seedCount++] = ((long)(best+1) << 32) | pos ;
+		}
+		Arrays.sort(seeds, 0, seedCount) ;
+		clearQueue() ;
+		int next = 0 ; // index of next seed to consider
+		while (next < seedCount || !isQueueEmpty()) {
+			int pos ;
+			if (!isQueueEmpty() && (next == seedCount || getDistance(queue[head]) <= (int)(seeds[next] >>> 32))) {
+				pos = dequeue() ;
+			}
+			else {
+				final int d = (int)(seeds[next] >>> 32) ;
+				pos = (int)seeds[next++] ;
+				if (getDistance(pos) <= d)
+					continue ; // already reached on a path that is at least as short
+				dists[pos / height][pos % height] = d ;
+			}
+			// relax neighbors, only affected cells can improve
+			final int x = pos / height ;
+			final int y = pos % height ;
+			final int nextDistance = dists[x][y] + 1 ;
+			for (CardinalDirection cd: DIRECTIONS) {
+				if (cells.hasWall(x, y, cd))
+					continue ;
+				final int nx = x + cd.dx() ;
+				final int ny = y + cd.dy() ;
+				if (isOnBoard(nx, ny) && dists[nx][ny] > nextDistance) {
+					dists[nx][ny] = nextDistance ;
+					enqueue(nx, ny) ;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Tells if (x,y) has a reachable neighbor with the given distance value
+	 */
+	private boolean hasNeighborWithDistance(Cells cells, int x, int y, int d) {
+		for (CardinalDirection cd: DIRECTIONS) {
+			if (cells.hasWall(x, y, cd))
+				continue ;
+			final int nx = x + cd.dx() ;
+			final int ny = y + cd.dy() ;
+			if (isOnBoard(nx, ny) && dists[nx][ny] == d)
+				return true ;
+		}
+		return false ;
+	}
+	/**
+	 * Gives the smallest distance value of all reachable neighbors of (x,y)
+	 * @return minimum distance or INFINITY if there is no reachable neighbor with a finite distance
+	 */
+	private int getMinNeighborDistance(Cells cells, int x, int y) {
+		int result = INFINITY ;
+		for (CardinalDirection cd: DIRECTIONS) {
+			if (cells.hasWall(x, y, cd))
+				continue ;
+			final int nx = x + cd.dx() ;
+			final int ny = y + cd.dy() ;
+			if (isOnBoard(nx, ny) && dists[nx][ny] < result)
+				result = dists[nx][ny] ;
+		}
+		return result ;
+	}
+	/**
+	 * Gives the distance for a position encoded as x*height+y
+	 */
+	private int getDistance(int pos) {
+		return dists[pos / height][pos % height] ;
+	}
+	/**
+	 * Tells if (x,y) is a position on the board
+	 */
+	private boolean isOnBoard(int x, int y) {
+		return (0 <= x && x < width) && (0 <= y && y < height) ;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+package generation;
+
+/**
+ * A BSP tree in a flat, immutable form for drawing: all nodes are stored in a single array
+ * in depth-first order, the left branch before the right branch, such that walking
+ * the tree reads memory mostly front to back and needs neither objects nor virtual calls.
+ *
+ * A node is an index into the tree, the root is node 0.
+ * Each node takes NODE_SIZE entries of the array: the bounds of its segments and
+ * either the partition line of a branch or the range of segments of a leaf.
+ * The left branch of a branch node n is node n+1, its right branch is stored separately.
+ * All leaves refer to rows of the same SegmentTable as the leaves of the original tree.
+ *
+ * The tree is compiled once from a tree of BSPNodes, which can be created again with toNodes,
+ * e.g. to store the maze in a file.
+ */
+public final class FlatBSPTree {
+	/**
+	 * The node at the root of the tree.
+	 */
+	public static final int ROOT = 0 ;
+	// layout of a node in the nodes array
+	private static final int NODE_SIZE = 8 ;
+	private static final int XL = 0, YL = 1, XU = 2, YU = 3 ; // bounds of the segments of the node
+	private static final int X = 4, Y = 5, DX = 6, DY = 7 ; 	// partition line of a branch node
+	private static final int FROM = 4, TO = 5 ; 				// range of segments of a leaf node
+	// value in the right array for a leaf node
+	private static final int LEAF = -1 ;
+
+	private final int[] nodes ; 	// NODE_SIZE entries per node
+	private final int[] right ; 	// right branch of each branch node, LEAF for leaf nodes
+	private final SegmentTable segments ; 	// table that holds the segments of all leaves
+	private final int depth ; 		// number of nodes on the longest path from the root to a leaf
+
+	/**
+	 * Constructor, compiles the given tree.
+	 * @param root of a tree created by the BSPBuilder or read from a file, all leaves need to share a segment table
+	 */
+	public FlatBSPTree(BSPNode root) {
+		final int count = countNodes(root) ;
+		nodes = new int[count * NODE_SIZE] ;
+		right = new int[count] ;
+		BSPNode node = root ;
+		while (!node.isIsleaf())
+			node = ((BSPBranch)node).getLeftBranch() ;
+		segments = ((BSPLeaf)node).getSegments() ;
+		depth = getDepth(root) ;
+		compile(root, ROOT) ;
+	}
+	/**
+	 * Stores the given subtree with its root at node n.
+	 * @return the node after the subtree
+	 */
+	private int compile(BSPNode node, int n) {
+		final int i = n * NODE_SIZE ;
+		nodes[i + XL] = node.getLowerBoundX() ;
+		nodes[i + YL] = node.getLowerBoundY() ;
+		nodes[i + XU] = node.getUpperBoundX() ;
+		nodes[i + YU] = node.getUpperBoundY() ;
+		if (node.isIsleaf()) {
+			final BSPLeaf leaf = (BSPLeaf)node ;
+			assert segments == leaf.getSegments() : "All leaves need to share a segment table" ;
+			nodes[i + FROM] = leaf.getFrom() ;
+			nodes[i + TO] = leaf.getTo() ;
+			right[n] = LEAF ;
+			return n + 1 ;
+		}
+		final BSPBranch branch = (BSPBranch)node ;
+		nodes[i + X] = branch.getX() ;
+		nodes[i + Y] = branch.getY() ;
+		nodes[i + DX] = branch.getDx() ;
+		nodes[i + DY] = branch.getDy() ;
+		right[n] = compile(branch.getLeftBranch(), n + 1) ;
+		return compile(branch.getRightBranch(), right[n]) ;
+	}
+	private static int countNodes(BSPNode node) {
+		if (node.isIsleaf())
+			return 1 ;
+		return 1 + countNodes(((BSPBranch)node).getLeftBranch()) + countNodes(((BSPBranch)node).getRightBranch()) ;
+	}
+	private static int getDepth(BSPNode node) {
+		if (node.isIsleaf())
+			return 1 ;
+		return 1 + Math.max(getDepth(((BSPBranch)node).getLeftBranch()), getDepth(((BSPBranch)node).getRightBranch())) ;
+	}
+
+	/**
+	 * Creates a tree of BSPNodes with the same nodes as this tree,
+	 * its leaves refer to the same segment table.
+	 * @return the root node
+	 */
+	public BSPNode toNodes() {
+		return toNodes(ROOT) ;
+	}
+	private BSPNode toNodes(int n) {
+		if (isLeaf(n))
+			return new BSPLeaf(segments, getFrom(n), getTo(n)) ;
+		return new BSPBranch(getX(n), getY(n), getDx(n), getDy(n), toNodes(getLeftBranch(n)), toNodes(getRightBranch(n))) ;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int getNodeCount() {
+		return right.length ;
+	}
+	/**
+	 * @return the number of nodes on the longest path from the root to a leaf, 
+	 * which is how many nodes a depth first traversal needs to keep on its stack at most
+	 */
+	public int getDepth() {
+		return depth ;
+	}
+	/**
+	 * @return the table that holds the segments of all leaves
+	 */
+	public SegmentTable getSegments() {
+		return segments ;
+	}
+	/**
+	 * @return tells if node n is a leaf node
+	 */
+	public boolean isLeaf(int n) {
+		return LEAF == right[n] ;
+	}
+	/**
+	 * @return the left branch of branch node n
+	 */
+	public int getLeftBranch(int n) {
+		return n + 1 ;
+	}
+	/**
+	 * @return the right branch of branch node n
+	 */
+	public int getRightBranch(int n) {
+		return right[n] ;
+	}
+	// partition line of branch node n
+	public int getX(int n) {
+		return nodes[n * NODE_SIZE + X] ;
+	}
+	public int getY(int n) {
+		return nodes[n * NODE_SIZE + Y] ;
+	}
+	public int getDx(int n) {
+		return nodes[n * NODE_SIZE + DX] ;
+	}
+	public int getDy(int n) {
+		return nodes[n * NODE_SIZE + DY] ;
+	}
+	// bounds of the segments of node n
+	public int getLowerBoundX(int n) {
+		return nodes[n * NODE_SIZE + XL] ;
+	}
+	public int getLowerBoundY(int n) {
+		return nodes[n * NODE_SIZE + YL] ;
+	}
+	public int getUpperBoundX(int n) {
+		return nodes[n * NODE_SIZE + XU] ;
+	}
+	public int getUpperBoundY(int n) {
+		return nodes[n * NODE_SIZE + YU] ;
+	}
+	/**
+	 * @return the row of the first segment of leaf node n
+	 */
+	public int getFrom(int n) {
+		return nodes[n * NODE_SIZE + FROM] ;
+	}
+	/**
+	 * @return the row after the last segment of leaf node n
+	 */
+	public int getTo(int n) {
+		return nodes[n * NODE_SIZE + TO] ;
+	}
+}
@@ -0,0 +1,323 @@
+package generation;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A headless service that generates mazes in bulk, e.g. to produce a corpus of mazes
+ * for the evaluation of robot drivers. There is no user interface involved.
+ *
+ * A call of generate produces a batch of mazes for one builder algorithm and skill level.
+ * Generation is CPU bound, so the mazes are built by a fixed number of worker threads,
+ * by default one per processor. Only a small window of orders is in production at any time,
+ * such that the memory needed does not grow with the size of the batch.
+ * Finished mazes are handed to a sink in the order of their completion, always on the
+ * thread that called generate, so a sink does not need to be thread safe.
+ *
+ * Each batch is a closed scope: when generate returns, normally or with an exception,
+ * none of its orders is still in production. If a maze fails, the sink fails, or the
+ * calling thread is interrupted, all other orders of the batch are cancelled and generate
+ * waits until the builders of those orders that have started already are done,
+ * so no builder goes on with buffers that may be recycled for the next batch.
+ *
+ * Each maze i of a batch is generated with seed + i, so a batch is reproducible
+ * and a single maze of it can be generated again from its seed.
+ *
+ * With recycling, builders reuse their buffers and the cells and distances of each maze
+ * once the sink is done with it, so a long batch of same size mazes hardly allocates
+ * anything but the BSP tree. The sink must then not keep any reference to a maze.
+ */
+public class GenerationService {
+	/**
+	 * Receives the mazes of a batch as they are completed.
+	 */
+	public interface Sink {
+		/**
+		 * Takes a finished maze. The sink may keep the maze unless the service recycles mazes.
+		 * @param order describes the maze, in particular its seed
+		 * @param maze is the generated maze
+		 * @throws IOException if the maze cannot be stored, this stops the batch
+		 */
+		void accept(Order order, MazeConfiguration maze) throws IOException ;
+	}
+
+	// number of orders in production per worker thread, keeps all workers busy while results are consumed
+	static final int ORDERS_PER_THREAD = 2 ;
+
+	private final ExecutorService executor ; 	// worker threads that run the builders
+	private final MazeFactory factory ; 		// creates builders for orders
+	private final int parallelism ; 			// number of worker threads
+	private boolean recycling ; 				// true if mazes are reused once the sink is done with them
+
+	/**
+	 * Constructor for a service with one worker thread per processor.
+	 */
+	public GenerationService() {
+		this(Runtime.getRuntime().availableProcessors()) ;
+	}
+	/**
+	 * Constructor for a service with the given number of worker threads.
+	 * @param parallelism is the number of mazes that are generated at the same time, at least 1
+	 */
+	public GenerationService(int parallelism) {
+		this(parallelism, createThreadFactory()) ;
+	}
+	/**
+	 * Constructor for a service whose worker threads come from the given factory, e.g. for tests
+	 * that need to know the threads of the service.
+	 */
+	GenerationService(int parallelism, ThreadFactory threadFactory) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("GenerationService: parallelism must be at least 1 but is " + parallelism) ;
+		this.parallelism = parallelism ;
+		executor = Executors.newFixedThreadPool(parallelism, threadFactory) ;
+		factory = new MazeFactory(false, executor) ;
+	}
+	/**
+	 * Creates daemon threads named after the service.
+	 */
+	private static ThreadFactory createThreadFactory() {
+		final AtomicInteger count = new AtomicInteger() ;
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "GenerationService-worker-" + count.incrementAndGet()) ;
+				thread.setDaemon(true) ;
+				return thread ;
+			}
+		} ;
+	}
+
+	/**
+	 * Tells if mazes are reused once the sink is done with them.
+	 */
+	public boolean isRecycling() {
+		return recycling ;
+	}
+	/**
+	 * Sets if builders reuse their buffers and the cells and distances of mazes that have been
+	 * handed to the sink, see MazeFactory.setArenaMode. This is only safe for sinks that do
+	 * not keep a maze after accept returns, e.g. sinks that store mazes to files.
+	 * By default, mazes are not recycled.
+	 */
+	public void setRecycling(boolean recycling) {
+		this.recycling = recycling ;
+		factory.setArenaMode(recycling) ;
+	}
+	/**
+	 * Generates a batch of mazes and hands each of them to the given sink as soon as it is finished.
+	 * @param builder is the maze generation algorithm
+	 * @param skill is the skill level in 0,1,...,15
+	 * @param perfect is true for mazes without rooms and loops
+	 * @param count is the number of mazes to generate
+	 * @param seed is the seed of the first maze, maze i gets seed + i
+	 * @param sink receives the mazes
+	 * @return throughput of the batch
+	 * @throws IOException if the sink fails
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for mazes
+	 */
+	public Report generate(Order.Builder builder, int skill, boolean perfect, int count, long seed, Sink sink)
+			throws IOException, InterruptedException {
+		final CompletionService<BulkOrder> completion = new ExecutorCompletionService<BulkOrder>(executor) ;
+		final Map<Future<BulkOrder>, Production> running = new HashMap<Future<BulkOrder>, Production>() ;
+		final long start = System.nanoTime() ;
+		int submitted = 0 ;
+		try {
+			for (int delivered = 0; delivered < count; delivered++) {
+				// keep the window of orders in production filled
+				while (submitted < count && submitted - delivered < ORDERS_PER_THREAD * parallelism) {
+					final Production production = produce(new BulkOrder(builder, skill, perfect, seed + submitted)) ;
+					running.put(completion.submit(production), production) ;
+					submitted++ ;
+				}
+				final Future<BulkOrder> done = completion.take() ;
+				running.remove(done) ;
+				final BulkOrder order ;
+				try {
+					order = done.get() ;
+				} catch (ExecutionException e) {
+					throw new RuntimeException("GenerationService: maze generation failed", e.getCause()) ;
+				}
+				sink.accept(order, order.getMaze()) ;
+				if (recycling)
+					factory.recycle(order.getMaze()) ;
+			}
+		}
+		finally {
+			// no order of this batch outlives the call
+			for (Future<BulkOrder> future : running.keySet())
+				future.cancel(true) ;
+			boolean interrupted = false ;
+			for (Production production : running.values())
+				interrupted |= production.awaitStop() ;
+			if (interrupted)
+				Thread.currentThread().interrupt() ;
+		}
+		return new Report(builder, skill, count, System.nanoTime() - start) ;
+	}
+	/**
+	 * Stops the worker threads. Mazes that are in production are cancelled.
+	 */
+	public void shutdown() {
+		executor.shutdownNow() ;
+	}
+
+	/**
+	 * Creates the task that builds the maze for the given order.
+	 */
+	private Production produce(BulkOrder order) {
+		final MazeBuilder builder = factory.prepareBuilder(order) ;
+		if (null == builder)
+			throw new IllegalArgumentException("GenerationService: cannot produce " + order.getBuilder() + " maze of skill level " + order.getSkillLevel()) ;
+		return new Production(order, builder) ;
+	}
+	/**
+	 * The task that builds the maze for an order. A cancelled future does not tell 
+	 * when the builder is done, so the task tells it itself.
+	 */
+	private final class Production implements Callable<BulkOrder> {
+		private final BulkOrder order ;
+		private final MazeBuilder builder ;
+		private final AtomicBoolean started = new AtomicBoolean() ; 		// true once the task runs or must not run anymore
+		private final CountDownLatch stopped = new CountDownLatch(1) ; 	// released when a task that runs is done
+
+		Production(BulkOrder order, MazeBuilder builder) {
+			this.order = order ;
+			this.builder = builder ;
+		}
+		@Override
+		public BulkOrder call() throws InterruptedException {
+			if (!started.compareAndSet(false, true))
+				return order ; // withdrawn by awaitStop, the result is not used
+			try {
+				factory.build(builder) ;
+				return order ;
+			}
+			finally {
+				stopped.countDown() ;
+			}
+		}
+		/**
+		 * Keeps the task from starting if it has not started yet, otherwise waits until it is done.
+		 * Waiting goes on if the calling thread is interrupted.
+		 * @return true if the calling thread has been interrupted while waiting
+		 */
+		boolean awaitStop() {
+			if (started.compareAndSet(false, true))
+				return false ;
+			boolean interrupted = false ;
+			while (true) {
+				try {
+					stopped.await() ;
+					return interrupted ;
+				} catch (InterruptedException e) {
+					interrupted = true ;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Throughput of a batch of mazes for one builder algorithm and skill level.
+	 */
+	public static final class Report {
+		private final Order.Builder builder ;
+		private final int skill ;
+		private final int count ;
+		private final long nanos ;
+
+		Report(Order.Builder builder, int skill, int count, long nanos) {
+			this.builder = builder ;
+			this.skill = skill ;
+			this.count = count ;
+			this.nanos = nanos ;
+		}
+		public Order.Builder getBuilder() {
+			return builder ;
+		}
+		public int getSkillLevel() {
+			return skill ;
+		}
+		/**
+		 * Gives the number of mazes in the batch.
+		 */
+		public int getCount() {
+			return count ;
+		}
+		/**
+		 * Gives the time from the start of the batch until the last maze was handed to the sink.
+		 */
+		public long getMillis() {
+			return nanos / 1000000 ;
+		}
+		/**
+		 * Gives the number of mazes generated per second.
+		 */
+		public double getMazesPerSecond() {
+			return 0 == nanos ? 0 : count * 1e9 / nanos ;
+		}
+		@Override
+		public String toString() {
+			return String.format("%s skill %d: %d mazes in %d ms, %.2f mazes/s",
+					builder, skill, count, getMillis(), getMazesPerSecond()) ;
+		}
+	}
+
+	/**
+	 * An order of a batch. It keeps the delivered maze until it is handed to the sink.
+	 * Progress is of no interest without a user interface.
+	 */
+	static final class BulkOrder implements Order {
+		private final Builder builder ;
+		private final int skill ;
+		private final boolean perfect ;
+		private final long seed ;
+		private MazeConfiguration maze ;
+
+		BulkOrder(Builder builder, int skill, boolean perfect, long seed) {
+			this.builder = builder ;
+			this.skill = skill ;
+			this.perfect = perfect ;
+			this.seed = seed ;
+		}
+		@Override
+		public int getSkillLevel() {
+			return skill ;
+		}
+		@Override
+		public Builder getBuilder() {
+			return builder ;
+		}
+		@Override
+		public boolean isPerfect() {
+			return perfect ;
+		}
+		@Override
+		public long getSeed() {
+			return seed ;
+		}
+		@Override
+		public void deliver(MazeConfiguration mazeConfig) {
+			maze = mazeConfig ;
+		}
+		@Override
+		public void updateProgress(int percentage) {
+			// nobody is watching
+		}
+		MazeConfiguration getMaze() {
+			return maze ;
+		}
+	}
+}
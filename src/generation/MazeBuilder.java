@@ -2,6 +2,11 @@ package generation;
 
 import falstad.Constants;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 
 /**
  * This class has the responsibility to create a maze of given dimensions (width, height) 
@@ -17,7 +22,6 @@ public class MazeBuilder implements Runnable {
 	// Given input information: 
 	protected int width, height ; 	// width and height of maze, 
 	private int rooms; 		// requested number of rooms in maze, a room is an area with no walls larger than a single cell
-	private int expectedPartiters; 	// user given limit for partiters
 	
 	// Produced output information to create the new maze
 	// root, cells, dists, startx, starty
@@ -31,34 +35,40 @@ public class MazeBuilder implements Runnable {
 	// the distance to exit for a position in cell(i,j)
 
 	// class internal local variables
-	protected SingleRandom random ; // random number stream, used to make randomized decisions, e.g for direction to go
+	protected RandomStream random ; // random number stream, used to make randomized decisions, e.g for direction to go
+	private boolean deterministic ; // true: the seed only depends on the skill level, false: the seed comes with the order
 	Order order; // describes what is wanted, e.g. a perfect maze or not
+	// without a second worker thread there is nothing to gain from computing distances and the BSP tree at the same time
+	private boolean pipelined = ForkJoinPool.getCommonPoolParallelism() > 1 ;
+	// buffers from previous orders, null if every order allocates its own
+	private BufferArena arena ;
 	
 	// constants
-	static final long SLEEP_INTERVAL = 100 ; //constant used for brief breaks to recognize interrupted signal, unit is millisecond
-	static final int MAX_TRIES = 250 ; // room generation: max number of tries to find a random location for a room
 	static final int MIN_ROOM_DIMENSION = 3; // room generation: min dimension
 	static final int MAX_ROOM_DIMENSION = 8; // room generation: max dimension
+	static final long DETERMINISTIC_SEED = 0x5EEDL ; // seed for deterministic generation, the skill level is added to it
+	// memory needed per cell while a maze is generated, measured as the smallest heap that works for all builders
+	// on a 1000x1000 maze (at most about 303 bytes for Prim, Kruskal and the tiled builder), with a small margin:
+	// cells and distances take about 16 bytes, builders up to 16 bytes more, the rest is the BSP tree and its segments
+	static final int BYTES_PER_CELL = 310 ;
+	// memory per cell that a finished maze keeps, most of it for segments of the BSP tree,
+	// measured as 82 to 88 bytes for all builders on 1000x1000 mazes, with a small margin
+	static final int RETAINED_BYTES_PER_CELL = 96 ;
 
 	/**
 	 * Constructor for a randomized maze generation
 	 */
 	public MazeBuilder(){
-		random = SingleRandom.getRandom();
+		random = new RandomStream();
 	}
 	/**
-	 * Constructor with option to make maze generation deterministic or random
+	 * Constructor with option to make maze generation deterministic or random.
+	 * A deterministic builder ignores the seed of an order and delivers the same maze 
+	 * each time it is called for the same skill level.
 	 */
 	public MazeBuilder(boolean deterministic){
-		if (true == deterministic)
-		{
-			// Control random number generation
-			System.out.println("Assignment: functionality to make maze generation deterministic not implemented yet! Fix this! Program stops!");
-			System.exit(0) ;
-			// TODO: implement code that makes sure that if MazeBuilder.build is called for same the skill level twice, it will deliver the same results
-			// HINT: check http://download.oracle.com/javase/6/docs/api/java/util/Random.html\
-		}
-		random = SingleRandom.getRandom();
+		this.deterministic = deterministic ;
+		random = new RandomStream();
 	}
 
 	/**
@@ -66,45 +76,179 @@ public class MazeBuilder implements Runnable {
 	 * @param order
 	 */
 	public void buildOrder(Order order) {
+		buildOrder(order, widthOf(order), heightOf(order)) ;
+	}
+	/**
+	 * Gives the number of rooms a builder tries to place for the given order.
+	 * Fewer rooms are placed if the maze is too small for them, see generateRooms().
+	 * @param order
+	 * @return number of rooms, 0 for a perfect maze
+	 */
+	public static int getRoomCount(Order order) {
+		// only algorithm without rooms guarantees a perfect maze
+		// rooms can result in loops, so for a perfect maze, set room number to 0
+		if (order.isPerfect())
+			return 0 ;
+		if (order.getRooms() >= 0)
+			return order.getRooms() ;
+		// skill levels have always come with one room more than listed, mazes stay the same that way
+		final int skill = order.getSkillLevel() ;
+		return (Constants.SKILL_ROOMS[skill] > 0) ? Constants.SKILL_ROOMS[skill] + 1 : 0 ;
+	}
+	/**
+	 * Sets internal fields according to given order but for a maze of the given dimensions,
+	 * which is how the factory delivers a smaller maze if the ordered one does not fit into memory.
+	 * @param order
+	 * @param width of the maze
+	 * @param height of the maze
+	 */
+	public void buildOrder(Order order, int width, int height) {
 		this.order = order;
 		int skill = order.getSkillLevel() ;
+		// restart the random number stream such that the same order results in the same maze
+		random.setSeed(deterministic ? DETERMINISTIC_SEED + skill : order.getSeed());
 		// derive parameters
-		width = Constants.SKILL_X[skill];
-		height = Constants.SKILL_Y[skill];
-		// only algorithm without rooms guarantees a perfect maze
-		// rooms can result in loops, so for a perfect maze, set room number to 0
-		rooms = order.isPerfect() ? 0 : Constants.SKILL_ROOMS[skill];
-		expectedPartiters = Constants.SKILL_PARTCT[skill];
+		this.width = width;
+		this.height = height;
+		rooms = getRoomCount(order) ;
 		// instantiate data structures
-		cells = new Cells(width,height) ;
-		dists = new Distance(width,height) ;
+		if (null == arena) {
+			cells = new Cells(width,height) ;
+			dists = new Distance(width,height) ;
+		}
+		else {
+			cells = arena.takeCells(width, height) ;
+			dists = arena.takeDistance(width, height) ;
+			dists.lendQueue(arena.takeInts(width*height)) ;
+		}
 	}
+	/**
+	 * Gives the width of the maze for the given order, either the requested one or the one of the skill level.
+	 */
+	static int widthOf(Order order) {
+		return (order.getWidth() > 0) ? order.getWidth() : Constants.SKILL_X[order.getSkillLevel()] ;
+	}
+	/**
+	 * Gives the height of the maze for the given order, either the requested one or the one of the skill level.
+	 */
+	static int heightOf(Order order) {
+		return (order.getHeight() > 0) ? order.getHeight() : Constants.SKILL_Y[order.getSkillLevel()] ;
+	}
+	/**
+	 * Estimates the memory needed at most while a maze of the given dimensions is generated, 
+	 * based on BYTES_PER_CELL.
+	 * @return number of bytes
+	 */
+	public static long estimateBytes(int width, int height) {
+		return (long)width * height * BYTES_PER_CELL ;
+	}
+
+	/**
+	 * Gives the arena that provides buffers for this builder.
+	 * @return the arena, null if buffers are allocated for each order
+	 */
+	BufferArena getArena() {
+		return arena ;
+	}
+	/**
+	 * Sets the arena that provides buffers for this builder, this has to happen before buildOrder is called.
+	 * Scratch buffers go back to the arena when they are not needed anymore, 
+	 * cells and distances are delivered with the maze and only come back if the maze is recycled.
+	 * @param arena provides buffers, null if buffers are allocated for each order
+	 */
+	void setArena(BufferArena arena) {
+		this.arena = arena ;
+	}
+	/**
+	 * Gives an array of at least the given length for temporary use, its content is undefined.
+	 * It should be handed back with giveBack when it is not needed anymore.
+	 */
+	protected int[] takeInts(int length) {
+		return (null == arena) ? new int[length] : arena.takeInts(length) ;
+	}
+	/**
+	 * Gives an array of at least the given length for temporary use, the first length entries are 0.
+	 * It should be handed back with giveBack when it is not needed anymore.
+	 */
+	protected byte[] takeZeroedBytes(int length) {
+		return (null == arena) ? new byte[length] : arena.takeZeroedBytes(length) ;
+	}
+	/**
+	 * Gives disjoint sets for elements 0,1,...,size-1 for temporary use.
+	 * They should be handed back with giveBack when they are not needed anymore.
+	 */
+	protected DisjointSets takeDisjointSets(int size) {
+		return (null == arena) ? new DisjointSets(size) : arena.takeDisjointSets(size) ;
+	}
+	/**
+	 * Hands a buffer back that is not used anymore such that the next order can reuse it.
+	 */
+	protected void giveBack(int[] buffer) {
+		if (null != arena && null != buffer)
+			arena.give(buffer) ;
+	}
+	protected void giveBack(byte[] buffer) {
+		if (null != arena && null != buffer)
+			arena.give(buffer) ;
+	}
+	protected void giveBack(DisjointSets buffer) {
+		if (null != arena && null != buffer)
+			arena.give(buffer) ;
+	}
+
 	/**
 	 * Main method to run construction of a new maze in a thread of its own.
 	 * This method is called by the MazeFactory to generate a maze.
 	 */
 	public void run() {
 		// try-catch block to recognize if thread is interrupted
+		try {
+			build() ;
+		}
+		catch (InterruptedException ex) {
+			// if user cancels a lengthy maze generation, we need to stop and 
+			// clean up internal data structures
+			// exception mechanism is basically used to exit method in a controlled way
+			// 
+			dbg("Catching signal to stop") ;
+			// fields have been reset by build already
+		}
+	}
+	/**
+	 * Constructs a new maze for the current order, delivers it to the order and returns it.
+	 * This method is called by the MazeFactory on one of its worker threads.
+	 * @return the maze configuration that has been delivered
+	 * @throws InterruptedException if the thread is interrupted, i.e. the order is cancelled,
+	 * in that case nothing is delivered
+	 */
+	public MazeConfiguration build() throws InterruptedException {
 		try {
 			// create an initial invalid maze where all walls and borders are up
 			cells.initialize();
 			// place rooms in maze as needed
 			if (rooms > 0) generateRooms();
 
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+			stopIfInterrupted() ; // test if thread has been interrupted, i.e. notified to stop
 
-			// put pathways into the maze, determine its starting and end position and calculate distances
-			generate();
+			final BSPNode root ;
+			if (pipelined) {
+				// same as below but distances are computed while the BSP tree is built
+				root = generatePipelined() ;
+			}
+			else {
+				// put pathways into the maze, determine its starting and end position and calculate distances
+				generate();
 
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+				stopIfInterrupted() ; // test if thread has been interrupted, i.e. notified to stop
 
-			final int colchange = random.nextIntWithinInterval(0, 255); // used in the constructor for Segments  class Seg
-			final BSPBuilder b = new BSPBuilder(order, dists, cells, width, height, colchange, expectedPartiters) ;
-			BSPNode root = b.generateBSPNodes(); // takes a long time, updates progressbar, 
-			// it also internally checks for cancel requests
-			// and throws an interrupted exception if that happens
+				final int colchange = random.nextIntWithinInterval(0, 255); // used to determine the color of segments, see SegmentTable
+				final BSPBuilder b = new BSPBuilder(order, dists, cells, width, height, colchange) ;
+				root = b.generateBSPNodes(); // takes a long time, updates progressbar, 
+				// it also internally checks for cancel requests
+				// and throws an interrupted exception if that happens
+			}
 
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+			stopIfInterrupted() ; // test if thread has been interrupted, i.e. notified to stop
 
 			// communicate results back to MazeController
 			MazeConfiguration mazeConfig = new MazeContainer();
@@ -114,21 +258,32 @@ public class MazeBuilder implements Runnable {
 			mazeConfig.setMazedists(dists);
 			mazeConfig.setRootnode(root);
 			mazeConfig.setStartingPosition(startx, starty);
+			// TODO: check why this is done. It creates a top wall on position (0,0). This may even corrupt a maze and block its exit!
+			// the maze updates its distances, so they stay correct even then
+			mazeConfig.addWall(0, 0, CardinalDirection.North);
+
+			// distances are done, the maze does not need the queue of the search anymore
+			giveBack(dists.returnQueue()) ;
+
 			order.deliver(mazeConfig);
 			order.updateProgress(100); // Order interface promises to communicate 100% upon delivery
-			// reset order and other fields for safe repeated operation and garbage collection
-			reset() ;
+			return mazeConfig ;
 		}
-		catch (InterruptedException ex) {
-			// if user cancels a lengthy maze generation, we need to stop and 
-			// clean up internal data structures
-			// exception mechanism is basically used to exit method in a controlled way
-			// 
-			dbg("Catching signal to stop") ;
+		finally {
 			// reset order and other fields for safe repeated operation and garbage collection
-			reset();
+			reset() ;
 		}
 	}
+	/**
+	 * Checks if the current thread has been interrupted, i.e. the order has been cancelled.
+	 * This is cheap enough to be called frequently from within generation loops,
+	 * the builder thread never sleeps just to give an interrupt a chance to show.
+	 * @throws InterruptedException if the current thread has been interrupted, the interrupted status is cleared
+	 */
+	static void stopIfInterrupted() throws InterruptedException {
+		if (Thread.interrupted())
+			throw new InterruptedException() ;
+	}
 	/**
 	 * Reset all fields to initial values
 	 */
@@ -136,7 +291,6 @@ public class MazeBuilder implements Runnable {
 		width = 0 ;
 		height = 0 ;
 		rooms = 0 ;
-		expectedPartiters = 0 ;
 		startx = 0 ;
 		starty = 0 ;
 		cells = null ;
@@ -150,56 +304,49 @@ public class MazeBuilder implements Runnable {
 	/**
 	 * Generate all rooms in a given maze where initially all walls are up. Rooms are placed randomly and of random sizes
 	 * such that the maze can turn out to be too small to accommodate the requested number of rooms (class attribute rooms). 
-	 * In that case less rooms are produced.
+	 * In that case less rooms are produced, but only if not even a room of minimal size fits anymore.
 	 * @return generated number of rooms
 	 */
 	protected int generateRooms() {
-		// Rooms are randomly positioned such that it may be impossible to place the all rooms if the maze is too small
-		// to prevent an infinite loop we limit the number of failed to MAX_TRIES == 250
-		int tries = 0 ;
+		// the index knows where rooms are, so each room is placed at a random position where it fits 
+		// and there is no trial and error with a limited number of failed attempts
+		final RoomIndex index = new RoomIndex(width, height) ;
 		int result = 0 ;
-		while (tries < MAX_TRIES && result <= rooms) {
-			if (placeRoom())
-				result++ ;
-			else
-				tries++ ;
-		}
+		while (result < rooms && placeRoom(index))
+			result++ ;
 		return result ;
 	}
 	
 	
 	/**
 	 * Allocates space for a room of random dimensions in the maze.
-	 * The position of the room is chosen randomly. The method is not sophisticated 
-	 * such that the attempt may fail even if the maze has ample space to accommodate 
-	 * a room of the chosen size. 
-	 * @return true if room is successfully placed, false otherwise
+	 * The position of the room is chosen randomly among all positions where the room fits. 
+	 * If a room of the chosen size does not fit anywhere, a room of minimal size is tried.
+	 * @param index keeps track of the rooms placed so far and is updated with the new room
+	 * @return true if room is successfully placed, false if there is no space left for a room
 	 */
-	private boolean placeRoom() {
-		// get width and height of random size that are not too large
-		// if too large return as a failed attempt
-		final int rw = random.nextIntWithinInterval(MIN_ROOM_DIMENSION, MAX_ROOM_DIMENSION);
-		if (rw >= width-4)
-			return false;
-
-		final int rh = random.nextIntWithinInterval(MIN_ROOM_DIMENSION, MAX_ROOM_DIMENSION);
-		if (rh >= height-4)
-			return false;
-		
-		// proceed for a given width and height
+	private boolean placeRoom(RoomIndex index) {
+		// get width and height of random size
+		int rw = random.nextIntWithinInterval(MIN_ROOM_DIMENSION, MAX_ROOM_DIMENSION);
+		int rh = random.nextIntWithinInterval(MIN_ROOM_DIMENSION, MAX_ROOM_DIMENSION);
 		// obtain a random position (rx,ry) such that room is located on as a rectangle with (rx,ry) and (rxl,ryl) as corner points
-		// upper bound is chosen such that width and height of room fits maze area.
-		final int rx = random.nextIntWithinInterval(1, width-rw-1);
-		final int ry = random.nextIntWithinInterval(1, height-rh-1);
+		int[] pos = index.findPosition(rw, rh, random) ;
+		if (null == pos) {
+			rw = MIN_ROOM_DIMENSION ;
+			rh = MIN_ROOM_DIMENSION ;
+			pos = index.findPosition(rw, rh, random) ;
+			if (null == pos)
+				return false ;
+		}
+		final int rx = pos[0];
+		final int ry = pos[1];
 		final int rxl = rx+rw-1;
 		final int ryl = ry+rh-1;
-		// check all cells in this area if they already belong to a room
-		// if this is the case, return false for a failed attempt
-		if (cells.areaOverlapsWithRoom(rx, ry, rxl, ryl))
-			return false ;
+		assert !cells.areaOverlapsWithRoom(rx, ry, rxl, ryl) : "RoomIndex and cells disagree on room at " + rx + "," + ry ;
 		// since the area is available, mark it for this room and remove all walls
 		// from this on it is clear that we can place the room on the maze
-		cells.markAreaAsRoom(rw, rh, rx, ry, rxl, ryl); 
+		cells.markAreaAsRoom(rw, rh, rx, ry, rxl, ryl, random); 
+		index.add(rx, ry, rxl, ryl) ;
 		return true;
 	}
 
@@ -226,6 +373,70 @@ public class MazeBuilder implements Runnable {
 		cells.setExitPosition(remote[0], remote[1]);
 	}
 
+	/**
+	 * Does the same as generate() followed by the construction of the BSP tree, 
+	 * but the distances to the exit are computed on the fork/join common pool 
+	 * while the BSP tree is built on the current thread.
+	 * The tree only depends on the walls, so the exit position is the only 
+	 * result of the distance computation that has to be known in advance:
+	 * the exit opens a wall on the border. Segments get their distance and color 
+	 * once both computations are done, the resulting maze is the same as with generate().
+	 * @return root node of the BSP tree
+	 * @throws InterruptedException if the order is cancelled
+	 */
+	private BSPNode generatePipelined() throws InterruptedException {
+		generatePathways();
+
+		final int[] remote = dists.computeExitPosition(cells) ;
+		cells.setExitPosition(remote[0], remote[1]);
+
+		stopIfInterrupted() ; // test if thread has been interrupted, i.e. notified to stop
+
+		// cells are only read from now on, so both computations can share them
+		final AtomicBoolean started = new AtomicBoolean() ; // set by whoever comes first, the task or the finally block
+		final ForkJoinTask<?> distances = ForkJoinPool.commonPool().submit(new Runnable() {
+			@Override
+			public void run() {
+				if (started.compareAndSet(false, true))
+					dists.computeDistancesToExit(cells);
+			}
+		}) ;
+		try {
+			final int colchange = random.nextIntWithinInterval(0, 255); // used to determine the color of segments, see SegmentTable
+			final BSPBuilder b = new BSPBuilder(order, dists, cells, width, height, colchange, true) ;
+			final BSPNode root = b.generateBSPNodes();
+			distances.get() ;
+			b.backfillDistances(root) ;
+			// identify cell with the greatest distance
+			final int[] pos = dists.getStartPosition();
+			startx = pos[0] ;
+			starty = pos[1] ;
+			return root ;
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException("MazeBuilder: computation of distances failed", e.getCause()) ;
+		}
+		finally {
+			// distances that have not started are not needed anymore, distances that have 
+			// must be done before the build is over as they write into the maze's distance matrix
+			if (!started.compareAndSet(false, true))
+				distances.quietlyJoin() ;
+		}
+	}
+	/**
+	 * Tells if distances and the BSP tree are computed at the same time, see generatePipelined().
+	 */
+	public boolean isPipelined() {
+		return pipelined ;
+	}
+	/**
+	 * Sets if distances and the BSP tree are computed at the same time. 
+	 * By default this is the case if the fork/join common pool has more than one worker.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined ;
+	}
+
 	/**
 	 * This method generates pathways into the maze.
 	 * Comments have been removed to make students 
@@ -240,43 +451,49 @@ public class MazeBuilder implements Runnable {
 		final int firstx = x; 
 		final int firsty = y;
 		
-		CardinalDirection[][] origcds = new CardinalDirection[width][height]; 
+		// direction in which a cell was entered, encoded as ordinal+1, 0 at the starting position
+		final byte[] origcds = takeZeroedBytes(width*height); 
 		CardinalDirection cd = CardinalDirection.East;
 		CardinalDirection origcd = cd;
 		
 		cells.setCellAsVisited(x, y); 
-		Wall wall = new Wall(x, y, cd);
 		while (true) { 
-			wall.setWall(x, y, cd);
-			if (!cells.canGo(wall)) {
+			if (!cells.canGo(x, y, cd)) {
 				cd = cd.rotateClockwise();
 				if (origcd == cd) {				
 					if (x == firstx && y == firsty)
 						break; 			
-					int[] dxy = origcds[x][y].getDirection();
-					x -= dxy[0];
-					y -= dxy[1];
-					if (null == origcds[x][y]) {
+					final CardinalDirection back = CardinalDirection.fromOrdinal(origcds[x*height+y] - 1);
+					x -= back.dx();
+					y -= back.dy();
+					if (0 == origcds[x*height+y]) {
 						// Happens at starting position
 						assert (x == firstx && y == firsty) : "catching null elsewhere than starting position" ;
-						cd = cd.randomDirection() ;
+						cd = randomDirection() ;
 					}
 					else
-						cd = origcds[x][y] ;
+						cd = CardinalDirection.fromOrdinal(origcds[x*height+y] - 1) ;
 					cd = cd.rotateClockwise();
 					origcd = cd;
 				}
 			} else {
-				cells.deleteWall(wall);
-				int[] dxy = cd.getDirection();
-				x += dxy[0];
-				y += dxy[1];
+				cells.deleteWall(x, y, cd);
+				x += cd.dx();
+				y += cd.dy();
 				cells.setCellAsVisited(x, y);
-				origcds[x][y] = cd;
-				cd = cd.randomDirection();
+				origcds[x*height+y] = (byte)(cd.ordinal() + 1);
+				cd = randomDirection();
 				origcd = cd;
 			}
 		}
+		giveBack(origcds);
+	}
+	/**
+	 * Gives a random direction, same as CardinalDirection.randomDirection(random)
+	 * but without the switch over the enum values.
+	 */
+	private CardinalDirection randomDirection() {
+		return CardinalDirection.fromOrdinal(random.nextIntWithinInterval(0, 3)) ;
 	}
 	/* original, kept  for discussion in class !!!!
 	protected void generatePathways() {
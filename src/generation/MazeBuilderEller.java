@@ -1,174 +1,275 @@
 package generation;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-
+/**
+ * This class has the responsibility to create a maze of given dimensions (width, height)
+ * together with a solution based on a distance matrix.
+ * The MazeBuilder implements Runnable such that it can be run a separate thread.
+ * The MazeFactory has a MazeBuilder and handles the thread management.
+ *
+ * The maze is built with Eller's algorithm.
+ * Rows are processed one at a time from top to bottom. Each cell of the current row carries
+ * the label of a set of cells that are connected by pathways built so far.
+ * Walls between adjacent cells of different sets are taken down at random,
+ * then each set gets at least one connection to the next row.
+ * In the last row all remaining sets are joined.
+ * Only the labels of the current row are kept, so the auxiliary memory is linear in the width
+ * and the running time is linear in the number of cells.
+ * Algorithm leaves walls in tact that carry the border flag.
+ *
+ * Rooms can cut off a set from all following rows, e.g. a room with a single door at its top.
+ * If that happens, the disconnected parts are joined in a final pass over the whole maze.
+ */
 public class MazeBuilderEller extends MazeBuilder implements Runnable {
 
-    ArrayList<EllerSet> sets = new ArrayList<EllerSet>();
-
-    public MazeBuilderEller() {
-        super();
-        System.out.println("MazeBuilderEller uses Eller's algorithm to generate maze.");
-    }
-
-    public MazeBuilderEller(boolean det) {
-        super(det);
-        System.out.println("MazeBuilderEller uses Eller's algorithm to generate maze.");
-    }
-
-    @Override
-    protected void generatePathways() {
-
-        for (int y = 0; y < height; y++) {
-
-            // iterate through row, adding set-less tiles to a new set
-            // also randomly adds eastern neighbor to set of current tile if the two tiles are in different sets
-            for (int x = 0; x < width; x++) {
-
-                int currentTileSetId = this.inSet(x,y); // the set id of the current tile
-
-                // checks if current tile is in a set, adds it to one if not
-                if (currentTileSetId == -1) {
-                    EllerSet newSet = new EllerSet(sets.size(), width);
-                    sets.add(newSet);
-
-                    newSet.addTile(x, y);
-                    currentTileSetId = sets.size() - 1; // assign currentTileSetId and increment total sets
-                }
-
-
-                System.out.println("Current Set ID prior to next-tile check is: " + currentTileSetId);
-                // check if next tile is in bounds
-                if (x + 1 < width) {
-                    int nextTileSetId = this.inSet(x + 1, y); // the set id of the tile to the right of the current tile
-
-                    // check if current tile and next tile are in different sets
-                    // if so, gives a 50% chance to destroy the wall between them and add the right tile to the current set
-                    System.out.println("Attempting to smash through wall...");
-                    if (nextTileSetId != currentTileSetId && Math.random() >= 0.5) {
-
-                        System.out.println("Attempt Succeeded!");
-
-                        if (nextTileSetId != -1) {
-                            sets.get(nextTileSetId).annex(x + 1, y);
-                            System.out.println("\nAnnexed Set Info--");
-                            sets.get(nextTileSetId).printInfo();
-                        }
-
-                        System.out.println("\nCurrentTileId: " + currentTileSetId);
-                        //Wall dyingWall = new Wall(x, y, CardinalDirection.East);
-                        //cells.deleteWall(dyingWall);
-                        sets.get(currentTileSetId).addTile(x + 1, y);
-                    } else {
-                        System.out.println("Attempt Failed.\n");
-                    }
-                }
-
-            }
-
-            // clean empty sets'
-            System.out.println("First Cleaning Begun: " + sets.size() + " sets before.");
-            this.cleanSets();
-            System.out.println("First Cleaning Ended: " + sets.size() + " sets after.");
-
-            // returns to beginning of same row and iterates through it again
-            // chooses at least one southern wall to destroy per set in the row
-            if (y + 1 < height) {
-                for (EllerSet currentSet : sets) {
-                    //if (currentSet.checkDuplicates()) {
-                    //    System.out.println("Issue found!");
-                    //}
-                    int holeAmount = (int) (Math.random() * (currentSet.getSize() - 1) + 1);
-                    int [][] digTiles = currentSet.provideDigTiles(holeAmount);
-                    for (int [] digTile : digTiles) {
-                        //Wall digWall = new Wall(digTile[0], digTile[1], CardinalDirection.South);
-                        //cells.deleteWall(digWall);
-                        if (currentSet.contains(digTile[0], digTile[1] + 1)) {
-                            System.out.println("ERRORERRORERRORERRORERRORERRORERRORERRORERRORERRORERRORERROR!!!");
-                        }
-                        currentSet.addTile(digTile[0], digTile[1] + 1);
-                    }
-                }
-
-                // clean empty sets again, ditch upper rows
-                System.out.println("Second Cleaning Begun: " + sets.size() + " sets before.");
-                this.cleanSets();
-                System.out.println("Second Cleaning Ended: " + sets.size() + " sets after.");
-            }
-        }
-    }
-
-    // checks if selected tile is in a set
-    // returns setId if true, -1 if false
-    private int inSet(int x, int y) {
-        System.out.println("Checking if (" + x + ", " + y + ") is in a set...");
-        int inSet = -1;
-        for (EllerSet containerSet: this.sets) {
-            if (containerSet.contains(x, y)) inSet = containerSet.getId();
-        }
-        if (inSet == -1) System.out.println("(" + x + ", " + y + ") is not in a set.");
-        if (inSet != -1) System.out.println("(" + x + ", " + y + ") is already in set " + inSet);
-        return inSet;
-    }
-
-    // removes all empty sets from sets array list and updates new set ids accordingly
-    private void cleanSets() {
-        int setsRemoved = 0;
-
-        System.out.println("List of Sets before Cleaning: ");
-        for (EllerSet printSet : this.sets) {
-            System.out.print(printSet.getId() + " - ");
-        }
-
-
-        Iterator<EllerSet> iter = this.sets.iterator();
-        while (iter.hasNext()) {
-            EllerSet currentSet = iter.next();
-            //if (currentSet.checkDuplicates()) {
-            //    System.out.println("Issue found!");
-            //}
-
-            // for every set, modifies id by the number of sets removed in the process of the cleanup
-            currentSet.setId(currentSet.getId() - setsRemoved);
-
-            // if the set is empty, remove it from the list and increase sets removed by 1
-            if (currentSet.getSize() == 0) {
-                System.out.println("Removing set " + currentSet.getId());
-                iter.remove();
-                setsRemoved++;
-            }
-        }
-
-        for (EllerSet tallSet : this.sets) {
-            tallSet.clearRow();
-        }
-
-        System.out.println("List of Sets after  Cleaning: ");
-        for (EllerSet printSet : this.sets) {
-            System.out.print(printSet.getId() + " - ");
-        }
-    }
-
-    private Wall extractWallFromCandidateSetRandomly(final ArrayList<Wall> candidates) {
-        return candidates.remove(random.nextIntWithinInterval(0, candidates.size()-1));
-    }
-
-
-    /**
-     * Updates a list of all walls that could be removed from the maze based on walls towards new cells
-     * @param x
-     * @param y
-     */
-    private void updateListOfWalls(int x, int y, ArrayList<Wall> walls) {
-        Wall wall = new Wall(x, y, CardinalDirection.East) ;
-        for (CardinalDirection cd : CardinalDirection.values()) {
-            wall.setWall(x, y, cd);
-            if (cells.canGo(wall)) //
-            {
-                walls.add(new Wall(x, y, cd));
-            }
-        }
-    }
-
-}
\ No newline at end of file
+	// labels of the sets for cells (x,y) in the current row, values are in 0,...,width-1
+	private int[] label ;
+	private int[] nextLabel ; 		// labels for the next row
+	private DisjointSets sets ; 	// joins labels of the current row
+	// the following arrays are indexed by the representative of a set in the current row
+	private int[] downCount ; 		// number of cells connected to the next row
+	private int[] downOptions ; 	// number of cells with a wall to the south that can be taken down
+	private int[] pick ; 			// cell chosen at random to connect a set to the next row
+	// indexed by x
+	private boolean[] down ; 		// true if (x,y) is connected to (x,y+1)
+	private boolean needsRepair ; 	// true if a set was cut off and the maze is not connected
+	private int coins ; 			// random bits for coin flips
+	private int coinCount ; 		// number of bits left in coins
+
+	public MazeBuilderEller() {
+		super();
+		System.out.println("MazeBuilderEller uses Eller's algorithm to generate maze.");
+	}
+
+	public MazeBuilderEller(boolean det) {
+		super(det);
+		System.out.println("MazeBuilderEller uses Eller's algorithm to generate maze.");
+	}
+
+	/**
+	 * This method generates pathways into the maze by using Eller's algorithm.
+	 * Rows are processed from top to bottom and each finished row is final in the cells object.
+	 */
+	@Override
+	protected void generatePathways() {
+		label = new int[width] ;
+		nextLabel = new int[width] ;
+		sets = new DisjointSets(width) ;
+		downCount = new int[width] ;
+		downOptions = new int[width] ;
+		pick = new int[width] ;
+		down = new boolean[width] ;
+		needsRepair = false ;
+		coinCount = 0 ;
+		// each cell of the first row starts in a set of its own
+		for (int x = 0; x < width; x++)
+			label[x] = x ;
+		for (int y = 0; y < height; y++) {
+			sets.reset(width) ;
+			joinOpenCells(y) ;
+			if (y == height-1) {
+				joinLastRow(y) ;
+				break ;
+			}
+			joinRandomly(y) ;
+			connectDown(y) ;
+			moveToNextRow() ;
+		}
+		if (needsRepair)
+			connectComponents() ;
+		// release memory that is not needed anymore
+		label = null ;
+		nextLabel = null ;
+		sets = null ;
+		downCount = null ;
+		downOptions = null ;
+		pick = null ;
+		down = null ;
+	}
+	/**
+	 * Joins the sets of adjacent cells in row y that are not separated by a wall,
+	 * which is the case inside rooms.
+	 */
+	private void joinOpenCells(int y) {
+		for (int x = 0; x+1 < width; x++) {
+			if (cells.hasNoWall(x, y, CardinalDirection.East))
+				sets.union(label[x], label[x+1]) ;
+		}
+	}
+	/**
+	 * Takes down walls between adjacent cells of different sets in row y at random.
+	 */
+	private void joinRandomly(int y) {
+		for (int x = 0; x+1 < width; x++) {
+			if (isRemovable(x, y, CardinalDirection.East) &&
+					sets.find(label[x]) != sets.find(label[x+1]) &&
+					flipCoin()) {
+				cells.deleteWall(x, y, CardinalDirection.East);
+				sets.union(label[x], label[x+1]) ;
+			}
+		}
+	}
+	/**
+	 * Takes down walls to the south in row y at random such that
+	 * each set is connected to the next row at least once.
+	 */
+	private void connectDown(int y) {
+		for (int x = 0; x < width; x++) {
+			final int root = sets.find(label[x]) ;
+			downCount[root] = 0 ;
+			downOptions[root] = 0 ;
+		}
+		// cells in rooms are connected to the next row already
+		for (int x = 0; x < width; x++) {
+			final int root = sets.find(label[x]) ;
+			down[x] = cells.hasNoWall(x, y, CardinalDirection.South) ;
+			if (down[x])
+				downCount[root]++ ;
+			else if (isRemovable(x, y, CardinalDirection.South))
+				downOptions[root]++ ;
+		}
+		rescueSetsWithoutWayDown(y) ;
+		// take down walls to the south at random
+		for (int x = 0; x < width; x++) {
+			if (!down[x] && isRemovable(x, y, CardinalDirection.South) && flipCoin()) {
+				cells.deleteWall(x, y, CardinalDirection.South);
+				down[x] = true ;
+				downCount[sets.find(label[x])]++ ;
+			}
+		}
+		// sets that did not get a connection pick one of their options uniformly at random,
+		// downOptions is reused to count the options seen so far
+		for (int x = 0; x < width; x++)
+			downOptions[sets.find(label[x])] = 0 ;
+		for (int x = 0; x < width; x++) {
+			final int root = sets.find(label[x]) ;
+			if (0 == downCount[root] && isRemovable(x, y, CardinalDirection.South)) {
+				downOptions[root]++ ;
+				if (0 == random.nextIntWithinInterval(0, downOptions[root]-1))
+					pick[root] = x ;
+			}
+		}
+		for (int x = 0; x < width; x++) {
+			final int root = sets.find(label[x]) ;
+			if (0 == downCount[root] && downOptions[root] > 0 && pick[root] == x) {
+				cells.deleteWall(x, y, CardinalDirection.South);
+				down[x] = true ;
+				downCount[root]++ ;
+			}
+		}
+	}
+	/**
+	 * Joins sets in row y that have no way to the next row with a neighboring set in the same row.
+	 * This is necessary if all cells of a set are above a room or in the bottom row of a room.
+	 * Sets that cannot be joined are cut off, the maze then needs a repair at the end.
+	 */
+	private void rescueSetsWithoutWayDown(int y) {
+		for (int x = 0; x+1 < width; x++) {
+			final int root1 = sets.find(label[x]) ;
+			final int root2 = sets.find(label[x+1]) ;
+			if (root1 == root2 || !(hasNoWayDown(root1) || hasNoWayDown(root2)) ||
+					!isRemovable(x, y, CardinalDirection.East))
+				continue ;
+			cells.deleteWall(x, y, CardinalDirection.East);
+			sets.union(root1, root2) ;
+			final int root = sets.find(root1) ;
+			downCount[root] = downCount[root1] + downCount[root2] ;
+			downOptions[root] = downOptions[root1] + downOptions[root2] ;
+		}
+		for (int x = 0; x < width; x++) {
+			if (hasNoWayDown(sets.find(label[x])))
+				needsRepair = true ;
+		}
+	}
+	private boolean hasNoWayDown(int root) {
+		return 0 == downCount[root] && 0 == downOptions[root] ;
+	}
+	/**
+	 * Computes labels for the next row. Cells connected to the current row inherit
+	 * the label of their set, all other cells start in sets of their own.
+	 * Labels are renumbered to stay in the range 0,...,width-1.
+	 */
+	private void moveToNextRow() {
+		// pick is reused to map the representative of a set to its new label
+		for (int x = 0; x < width; x++)
+			pick[sets.find(label[x])] = -1 ;
+		int count = 0 ;
+		for (int x = 0; x < width; x++) {
+			if (down[x]) {
+				final int root = sets.find(label[x]) ;
+				if (pick[root] < 0)
+					pick[root] = count++ ;
+				nextLabel[x] = pick[root] ;
+			}
+		}
+		for (int x = 0; x < width; x++) {
+			if (!down[x])
+				nextLabel[x] = count++ ;
+		}
+		final int[] tmp = label ;
+		label = nextLabel ;
+		nextLabel = tmp ;
+	}
+	/**
+	 * Joins all remaining sets in the last row.
+	 */
+	private void joinLastRow(int y) {
+		for (int x = 0; x+1 < width; x++) {
+			if (isRemovable(x, y, CardinalDirection.East) && sets.union(label[x], label[x+1]))
+				cells.deleteWall(x, y, CardinalDirection.East);
+		}
+		final int root = sets.find(label[0]) ;
+		for (int x = 1; x < width; x++) {
+			if (sets.find(label[x]) != root)
+				needsRepair = true ;
+		}
+	}
+	/**
+	 * Connects all parts of the maze that are not reachable from each other
+	 * by taking down walls between them.
+	 * This needs memory proportional to the number of cells and is only
+	 * necessary if rooms cut off some sets.
+	 */
+	private void connectComponents() {
+		final DisjointSets components = takeDisjointSets(width*height) ;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (x+1 < width && cells.hasNoWall(x, y, CardinalDirection.East))
+					components.union(x*height+y, (x+1)*height+y) ;
+				if (y+1 < height && cells.hasNoWall(x, y, CardinalDirection.South))
+					components.union(x*height+y, x*height+y+1) ;
+			}
+		}
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (x+1 < width && isRemovable(x, y, CardinalDirection.East) &&
+						components.union(x*height+y, (x+1)*height+y))
+					cells.deleteWall(x, y, CardinalDirection.East);
+				if (y+1 < height && isRemovable(x, y, CardinalDirection.South) &&
+						components.union(x*height+y, x*height+y+1))
+					cells.deleteWall(x, y, CardinalDirection.South);
+			}
+		}
+		giveBack(components) ;
+	}
+	/**
+	 * Gives true or false with equal probability. 
+	 * Each random number provides 32 coin flips, which matters as there are about two flips per cell.
+	 */
+	private boolean flipCoin() {
+		if (0 == coinCount) {
+			coins = random.nextInt() ;
+			coinCount = 32 ;
+		}
+		coinCount-- ;
+		final boolean result = (coins & 1) != 0 ;
+		coins >>>= 1 ;
+		return result ;
+	}
+	/**
+	 * Tells if there is a wall at (x,y) in the given direction that is not protected by a border.
+	 * Cells are never marked as visited by this algorithm, so canGo only checks for borders.
+	 */
+	private boolean isRemovable(int x, int y, CardinalDirection dir) {
+		return cells.hasWall(x, y, dir) && cells.canGo(x, y, dir) ;
+	}
+}
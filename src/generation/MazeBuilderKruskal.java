@@ -0,0 +1,93 @@
+package generation;
+
+/**
+ * This class has the responsibility to create a maze of given dimensions (width, height)
+ * together with a solution based on a distance matrix.
+ * The MazeBuilder implements Runnable such that it can be run a separate thread.
+ * The MazeFactory has a MazeBuilder and handles the thread management.
+ *
+ * The maze is built with a randomized version of Kruskal's algorithm.
+ * All internal walls are put into a list in random order, each wall is taken down
+ * if the cells on both of its sides are not connected yet.
+ * Which cells are connected is tracked with a disjoint set (union-find) data structure.
+ * Algorithm leaves walls in tact that carry the border flag, just like the DFS and Prim builders.
+ *
+ * Walls and sets are encoded as integers in primitive arrays,
+ * the algorithm does not allocate objects per cell or per wall.
+ */
+public class MazeBuilderKruskal extends MazeBuilder implements Runnable {
+
+	public MazeBuilderKruskal() {
+		super();
+		System.out.println("MazeBuilderKruskal uses Kruskal's algorithm to generate maze.");
+	}
+
+	public MazeBuilderKruskal(boolean det) {
+		super(det);
+		System.out.println("MazeBuilderKruskal uses Kruskal's algorithm to generate maze.");
+	}
+
+	/**
+	 * This method generates pathways into the maze by using Kruskal's algorithm to generate a spanning tree for an undirected graph.
+	 * The cells are the nodes of the graph, the internal walls that may be taken down are its edges.
+	 * Cells that are already connected, i.e. cells inside a room, are joined before any wall is considered.
+	 */
+	@Override
+	protected void generatePathways() {
+		final int size = width*height ;
+		// disjoint sets over all cells, a cell (x,y) is identified by x*height+y
+		final DisjointSets sets = takeDisjointSets(size) ;
+		int components = size ;
+		// collect walls to the east and to the south of each cell,
+		// a wall is encoded as 2*(x*height+y) plus 0 for East and 1 for South
+		final int[] walls = takeInts(2*size) ;
+		int count = 0 ;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				final int cell = x*height+y ;
+				if (x+1 < width) {
+					if (cells.hasNoWall(x, y, CardinalDirection.East)) {
+						// no wall inside a room, cells are connected already
+						if (sets.union(cell, cell+height))
+							components-- ;
+					}
+					else if (cells.canGo(x, y, CardinalDirection.East))
+						walls[count++] = 2*cell ;
+				}
+				if (y+1 < height) {
+					if (cells.hasNoWall(x, y, CardinalDirection.South)) {
+						if (sets.union(cell, cell+1))
+							components-- ;
+					}
+					else if (cells.canGo(x, y, CardinalDirection.South))
+						walls[count++] = 2*cell+1 ;
+				}
+			}
+		}
+		shuffle(walls, count) ;
+		// take down walls between cells that are not connected yet until a single component is left
+		for (int i = 0; i < count && components > 1; i++) {
+			final int wall = walls[i] ;
+			final int cell = wall >>> 1 ;
+			final boolean south = (wall & 1) != 0 ;
+			if (sets.union(cell, south ? cell+1 : cell+height)) {
+				cells.deleteWall(cell / height, cell % height, south ? CardinalDirection.South : CardinalDirection.East);
+				components-- ;
+			}
+		}
+		giveBack(walls) ;
+		giveBack(sets) ;
+	}
+	/**
+	 * Brings the first count entries of the given array into a random order
+	 * with a Fisher-Yates shuffle.
+	 */
+	private void shuffle(int[] array, int count) {
+		for (int i = count-1; i > 0; i--) {
+			final int j = random.nextIntWithinInterval(0, i) ;
+			final int tmp = array[i] ;
+			array[i] = array[j] ;
+			array[j] = tmp ;
+		}
+	}
+}
@@ -1,6 +1,6 @@
 package generation;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
   * This class has the responsibility to create a maze of given dimensions (width, height) 
@@ -20,6 +20,11 @@ import java.util.ArrayList;
 
 public class MazeBuilderPrim extends MazeBuilder implements Runnable {
 	
+	private static final int INITIAL_CAPACITY = 64 ;
+	
+	private int[] candidates ; 	// walls that may be taken down, encoded by encodeWall
+	private int size ; 			// number of candidates in use
+	
 	public MazeBuilderPrim() {
 		super();
 		System.out.println("MazeBuilderPrim uses Prim's algorithm to generate maze.");
@@ -34,46 +39,62 @@ public class MazeBuilderPrim extends MazeBuilder implements Runnable {
 	 * This method generates pathways into the maze by using Prim's algorithm to generate a spanning tree for an undirected graph.
 	 * The cells are the nodes of the graph and the spanning tree. An edge represents that one can move from one cell to an adjacent cell.
 	 * So an edge implies that its nodes are adjacent cells in the maze and that there is no wall separating these cells in the maze. 
+	 * 
+	 * Candidate walls are kept as packed integers (see encodeWall) in a primitive array.
+	 * A random candidate is extracted by swapping it with the last one, 
+	 * so each step takes constant time and the total running time is linear in the number of cells.
+	 * Each wall is added at most once since a cell is visited only once, 
+	 * so no extra bookkeeping is needed to avoid duplicates.
 	 */
 	@Override
 	protected void generatePathways() {
 		// pick initial position (x,y) at some random position on the maze
 		int x = random.nextIntWithinInterval(0, width-1);
 		int y = random.nextIntWithinInterval(0, height-1);
+		cells.setCellAsVisited(x, y); // the start cell is part of the spanning tree, no wall may lead back into it
 		// create an initial list of all walls that could be removed
 		// those walls lead to adjacent cells that are not part of the spanning tree yet.
-		final ArrayList<Wall> candidates = new ArrayList<Wall>();
-		updateListOfWalls(x, y, candidates);
+		candidates = takeInts(INITIAL_CAPACITY) ;
+		size = 0 ;
+		updateListOfWalls(x, y);
 		
-		Wall curWall;
 		// we need to consider each candidate wall and consider it only once
-		while(!candidates.isEmpty()){
+		while(size > 0){
 			// in order to have a randomized algorithm,
 			// we randomly select and extract a wall from our candidate set
 			// this also reduces the set to make sure we terminate the loop
-			curWall = extractWallFromCandidateSetRandomly(candidates);
+			final int wall = extractWallFromCandidateSetRandomly();
+			x = wall / (height*4) ;
+			y = (wall / 4) % height ;
+			final CardinalDirection cd = CardinalDirection.fromOrdinal(wall & 3) ;
 			// check if wall leads to a new cell that is not connected to the spanning tree yet
-			if (cells.canGo(curWall))
+			if (cells.canGo(x, y, cd))
 			{
 				// delete wall from maze, note that this takes place from both directions
-				cells.deleteWall(curWall);
+				cells.deleteWall(x, y, cd);
 				// update current position
-				x = curWall.getNeighborX();
-				y = curWall.getNeighborY();
+				x += cd.dx();
+				y += cd.dy();
 				
 				cells.setCellAsVisited(x, y); // the flag is never reset, so this ensure we never go to (x,y) again
-				updateListOfWalls(x, y, candidates); // checks to see if it has walls to new cells, if it does it adds them to the list
+				updateListOfWalls(x, y); // checks to see if it has walls to new cells, if it does it adds them to the list
 				// note that each wall can get added at most once. This is important for termination and efficiency
 			}
 		}
+		giveBack(candidates) ; // the grown list suits the next maze of the same size
+		candidates = null ; // release memory that is not needed anymore
 	}
 	/**
-	 * Pick a random position in the list of candidates, remove the candidate from the list and return it
-	 * @param candidates
+	 * Pick a random position in the list of candidates, remove the candidate from the list and return it.
+	 * The last candidate takes the place of the removed one, so the order of candidates changes
+	 * but nothing needs to be shifted.
 	 * @return candidate from the list, randomly chosen
 	 */
-	private Wall extractWallFromCandidateSetRandomly(final ArrayList<Wall> candidates) {
-		return candidates.remove(random.nextIntWithinInterval(0, candidates.size()-1)); 
+	private int extractWallFromCandidateSetRandomly() {
+		final int index = random.nextIntWithinInterval(0, size-1) ;
+		final int result = candidates[index] ;
+		candidates[index] = candidates[--size] ;
+		return result ; 
 	}
 	
 
@@ -82,15 +103,22 @@ public class MazeBuilderPrim extends MazeBuilder implements Runnable {
 	 * @param x
 	 * @param y
 	 */
-	private void updateListOfWalls(int x, int y, ArrayList<Wall> walls) {
-		Wall wall = new Wall(x, y, CardinalDirection.East) ;
-		for (CardinalDirection cd : CardinalDirection.values()) {
-			wall.setWall(x, y, cd);
-			if (cells.canGo(wall)) // 
+	private void updateListOfWalls(int x, int y) {
+		for (int d = 0; d < 4; d++) {
+			final CardinalDirection cd = CardinalDirection.fromOrdinal(d) ;
+			if (cells.canGo(x, y, cd)) // 
 			{
-				walls.add(new Wall(x, y, cd));
+				if (size == candidates.length)
+					candidates = Arrays.copyOf(candidates, 2*size) ;
+				candidates[size++] = encodeWall(x, y, cd) ;
 			}
 		}
 	}
+	/**
+	 * Encodes a wall as a single integer, 4*(x*height+y) plus the ordinal of the direction.
+	 */
+	private int encodeWall(int x, int y, CardinalDirection cd) {
+		return 4*(x*height+y) + cd.ordinal() ;
+	}
 
 }
\ No newline at end of file
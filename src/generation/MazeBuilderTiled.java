@@ -0,0 +1,202 @@
+package generation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class has the responsibility to create a maze of given dimensions (width, height)
+ * together with a solution based on a distance matrix.
+ * The MazeBuilder implements Runnable such that it can be run a separate thread.
+ * The MazeFactory has a MazeBuilder and handles the thread management.
+ *
+ * The maze is built in tiles such that very large mazes can be generated on several processors.
+ * The grid is split into square tiles of TILE_SIZE cells per side. Each tile gets a perfect maze
+ * of its own with a randomized version of Kruskal's algorithm, tiles are processed in parallel
+ * by the workers of a fork/join pool. Then the tiles are stitched together:
+ * the walls on the boundaries between tiles are considered in random order, again with Kruskal's
+ * algorithm, such that the result is a spanning tree over all cells and the maze stays perfect.
+ *
+ * Tiles never share a cell, so tasks write to the cells object directly and
+ * work on disjoint parts of the same disjoint sets without any locking.
+ * Tiles are handed to the workers in a limited number of ranges of consecutive tiles, each range
+ * has a part of a single wall buffer to itself that it reuses for one tile after the other.
+ * Each tile gets a random stream of its own with a seed derived from the builder's stream,
+ * so the maze for a given seed does not depend on the number of workers or the order of tasks.
+ * Algorithm leaves walls in tact that carry the border flag, just like the other builders.
+ */
+public class MazeBuilderTiled extends MazeBuilder implements Runnable {
+
+	// number of cells per side of a tile, a tile fits into the cache of a processor
+	static final int TILE_SIZE = 64 ;
+	// odd constant to spread the seeds of tiles, golden ratio as for SplittableRandom
+	private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L ;
+	// room for the walls inside a tile, each cell has at most a wall to the East and to the South
+	private static final int TILE_WALLS = 2 * TILE_SIZE * TILE_SIZE ;
+	// number of ranges of tiles per worker, more than one such that a worker that is done early can help out
+	private static final int RANGES_PER_WORKER = 4 ;
+
+	private final ForkJoinPool pool ; 	// workers that generate the tiles
+	private DisjointSets sets ; 		// connected cells, a cell (x,y) is identified by x*height+y
+	private long tileSeed ; 			// seed for the random stream of the tile with index 0
+	private int ranges ; 				// number of ranges the tiles are split into
+	private int[] walls ; 				// walls of the tiles, range r uses TILE_WALLS entries from r*TILE_WALLS on
+
+	public MazeBuilderTiled() {
+		this(false);
+	}
+
+	public MazeBuilderTiled(boolean det) {
+		this(det, ForkJoinPool.commonPool());
+	}
+	/**
+	 * Constructor for a builder that generates its tiles with the workers of the given pool.
+	 * @param det true for a deterministic maze generation
+	 * @param pool runs the tasks for the tiles
+	 */
+	public MazeBuilderTiled(boolean det, ForkJoinPool pool) {
+		super(det);
+		this.pool = pool ;
+		System.out.println("MazeBuilderTiled uses tiles with Kruskal's algorithm to generate maze.");
+	}
+
+	/**
+	 * This method generates pathways into the maze tile by tile and stitches the tiles together.
+	 */
+	@Override
+	protected void generatePathways() {
+		sets = takeDisjointSets(width*height) ;
+		tileSeed = random.nextLong() ;
+		ranges = Math.min(getTileColumns() * getTileRows(), RANGES_PER_WORKER * pool.getParallelism()) ;
+		walls = takeInts(ranges * TILE_WALLS) ;
+		if (ranges == 1)
+			new TileTask(0, 1).compute() ; // nothing to share
+		else
+			pool.invoke(new TileTask(0, ranges)) ;
+		giveBack(walls) ;
+		walls = null ;
+		stitchTiles() ;
+		giveBack(sets) ;
+		sets = null ; // release memory that is not needed anymore
+	}
+	private int getTileColumns() {
+		return (width + TILE_SIZE - 1) / TILE_SIZE ;
+	}
+	private int getTileRows() {
+		return (height + TILE_SIZE - 1) / TILE_SIZE ;
+	}
+
+	/**
+	 * Generates the tiles of the ranges with indices in [from,to). Several ranges are split in halves,
+	 * the tiles of a single range are generated one after the other by the current worker.
+	 */
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from ;
+		private final int to ;
+
+		TileTask(int from, int to) {
+			this.from = from ;
+			this.to = to ;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				final int middle = (from + to) >>> 1 ;
+				invokeAll(new TileTask(from, middle), new TileTask(middle, to)) ;
+				return ;
+			}
+			final int columns = getTileColumns() ;
+			final int tiles = columns * getTileRows() ;
+			final int last = (int)((long)(from + 1) * tiles / ranges) ;
+			for (int tile = (int)((long)from * tiles / ranges); tile < last; tile++) {
+				final int x0 = (tile % columns) * TILE_SIZE ;
+				final int y0 = (tile / columns) * TILE_SIZE ;
+				generateTile(x0, y0, Math.min(x0 + TILE_SIZE, width), Math.min(y0 + TILE_SIZE, height),
+						new RandomStream(tileSeed + tile * SEED_GAMMA), from * TILE_WALLS) ;
+			}
+		}
+	}
+
+	/**
+	 * Generates a perfect maze in the tile [x0,x1) x [y0,y1) with Kruskal's algorithm.
+	 * Only walls inside the tile are taken down and only sets of cells inside the tile are joined.
+	 * Cells inside a room are joined before any wall is considered.
+	 * @param offset is the first entry of the wall buffer that belongs to the range of this tile
+	 */
+	private void generateTile(int x0, int y0, int x1, int y1, RandomStream tileRandom, int offset) {
+		// a wall is encoded as 2*(x*height+y) plus 0 for East and 1 for South
+		int count = offset ;
+		for (int x = x0; x < x1; x++) {
+			for (int y = y0; y < y1; y++) {
+				final int cell = x*height+y ;
+				if (x+1 < x1)
+					count = addWall(cell, x, y, CardinalDirection.East, walls, count) ;
+				if (y+1 < y1)
+					count = addWall(cell, x, y, CardinalDirection.South, walls, count) ;
+			}
+		}
+		shuffle(walls, offset, count, tileRandom) ;
+		takeDownWalls(walls, offset, count) ;
+	}
+	/**
+	 * Joins the walls on the boundaries between tiles such that all tiles are connected
+	 * and no loop is created.
+	 */
+	private void stitchTiles() {
+		final int columns = getTileColumns() ;
+		final int rows = getTileRows() ;
+		// walls to the east of the last column of each tile and to the south of its last row
+		final int[] stitches = takeInts((columns-1)*height + (rows-1)*width) ;
+		int count = 0 ;
+		for (int x = TILE_SIZE-1; x+1 < width; x += TILE_SIZE) {
+			for (int y = 0; y < height; y++)
+				count = addWall(x*height+y, x, y, CardinalDirection.East, stitches, count) ;
+		}
+		for (int y = TILE_SIZE-1; y+1 < height; y += TILE_SIZE) {
+			for (int x = 0; x < width; x++)
+				count = addWall(x*height+y, x, y, CardinalDirection.South, stitches, count) ;
+		}
+		shuffle(stitches, 0, count, random) ;
+		takeDownWalls(stitches, 0, count) ;
+		giveBack(stitches) ;
+	}
+	/**
+	 * Considers the wall of the given cell in the given direction, East or South.
+	 * If there is no wall, e.g. inside a room, the cells on both sides are joined right away.
+	 * Otherwise the wall is added to the list if it can be taken down.
+	 * @return index of the next entry of the list, i.e. count plus one if the wall has been added
+	 */
+	private int addWall(int cell, int x, int y, CardinalDirection dir, int[] walls, int count) {
+		final boolean south = (CardinalDirection.South == dir) ;
+		if (cells.hasNoWall(x, y, dir))
+			sets.union(cell, south ? cell+1 : cell+height) ;
+		else if (cells.canGo(x, y, dir))
+			walls[count++] = south ? 2*cell+1 : 2*cell ;
+		return count ;
+	}
+	/**
+	 * Takes down each wall of the list in [from,to) if the cells on its sides are not connected yet.
+	 */
+	private void takeDownWalls(int[] walls, int from, int to) {
+		for (int i = from; i < to; i++) {
+			final int wall = walls[i] ;
+			final int cell = wall >>> 1 ;
+			final boolean south = (wall & 1) != 0 ;
+			if (sets.union(cell, south ? cell+1 : cell+height))
+				cells.deleteWall(cell / height, cell % height, south ? CardinalDirection.South : CardinalDirection.East);
+		}
+	}
+	/**
+	 * Brings the entries of the given array in [from,to) into a random order
+	 * with a Fisher-Yates shuffle.
+	 */
+	private static void shuffle(int[] array, int from, int to, RandomStream random) {
+		for (int i = to-1; i > from; i--) {
+			final int j = from + random.nextIntWithinInterval(0, i-from) ;
+			final int tmp = array[i] ;
+			array[i] = array[j] ;
+			array[j] = tmp ;
+		}
+	}
+}
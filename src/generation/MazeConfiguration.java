@@ -60,6 +60,9 @@ public interface MazeConfiguration {
 	/**
 	 * Gets access to a tree of nodes for segments of walls which is
 	 * used for drawing the currently visible part.
+	 * Implementations that keep the tree in its flat form build the nodes
+	 * anew on each call, which takes time and memory in proportion to the size
+	 * of the tree; callers that only read the tree should use {@link #getBSPTree()}.
 	 * @return the rootnode
 	 */
 	BSPNode getRootnode();
@@ -69,6 +72,12 @@ public interface MazeConfiguration {
 	 * @param rootnode the rootnode to set
 	 */
 	void setRootnode(BSPNode rootnode);
+	/**
+	 * Gets access to the tree of segments of walls in the flat form 
+	 * that is used for drawing the currently visible part.
+	 * @return the tree, null if no tree has been set
+	 */
+	FlatBSPTree getBSPTree();
 	/**
 	 * Tells if (x,y) coordinate is within range.
 	 * @param x is on the horizontal axis
@@ -94,6 +103,26 @@ public interface MazeConfiguration {
 	 * @return true if (x,y) is valid and there is a wall in the given direction, false otherwise
 	 */
 	public boolean hasWall(int x, int y, CardinalDirection dir) ;
+	/**
+	 * Deletes an internal wall at position (x,y) in the given direction. 
+	 * Distances to the exit are updated such that getDistanceToExit and 
+	 * getNeighborCloserToExit remain correct.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param dir is the direction in terms of North, East, South, West
+	 * @return true if the wall was deleted, false if it is on the outside border
+	 */
+	public boolean deleteWall(int x, int y, CardinalDirection dir) ;
+	/**
+	 * Adds a wall at position (x,y) in the given direction. 
+	 * Distances to the exit are updated such that getDistanceToExit and 
+	 * getNeighborCloserToExit remain correct. 
+	 * Positions that are cut off from the exit have a distance of Integer.MAX_VALUE.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param dir is the direction in terms of North, East, South, West
+	 */
+	public void addWall(int x, int y, CardinalDirection dir) ;
 	/**
 	 * Provides coordinates of a position adjacent to the given (x,y)
 	 * position that has a distance to the exit that is less than
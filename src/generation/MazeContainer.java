@@ -12,7 +12,7 @@ public class MazeContainer implements MazeConfiguration {
 	private int height; // height of maze
 	private Cells mazecells ; // maze as a matrix of cells which keep track of the location of walls
 	private Distance mazedists ; // a matrix with distance values for each cell towards the exit
-	private BSPNode rootnode ; // a binary tree type search data structure to quickly locate a subset of segments
+	private FlatBSPTree tree ; // a binary tree type search data structure to quickly locate a subset of segments
 	// a segment is a continuous sequence of walls in vertical or horizontal direction
 	// a subset of segments need to be quickly identified for drawing
 	// the BSP tree partitions the set of all segments and provides a binary search tree for the partitions
@@ -72,19 +72,28 @@ public class MazeContainer implements MazeConfiguration {
 
 	/**
 	 * Gives the rootnode for the tree of BSPnodes.
-	 * Warning, returns direct access to internal field.
+	 * The tree is only kept in its flat form, so each call creates the nodes anew.
+	 * Its leaves refer to the segments of the maze, not to a copy.
 	 * @return the rootnode
 	 */
 	public BSPNode getRootnode() {
-		return rootnode;
+		return (null == tree) ? null : tree.toNodes();
 	}
 
 	/**
-	 * Sets the root for the tree of BSPnodes
+	 * Sets the root for the tree of BSPnodes, the tree is compiled into its flat form.
 	 * @param rootnode the rootnode to set
 	 */
 	public void setRootnode(BSPNode rootnode) {
-		this.rootnode = rootnode;
+		this.tree = (null == rootnode) ? null : new FlatBSPTree(rootnode);
+	}
+	/**
+	 * Gives the tree of BSPnodes in its flat form.
+	 * Warning, returns direct access to internal field.
+	 * @return the tree
+	 */
+	public FlatBSPTree getBSPTree() {
+		return tree;
 	}
 	/**
 	 * Tells if given (x,y) position is valid, i.e. within legal range of values
@@ -114,6 +123,34 @@ public class MazeContainer implements MazeConfiguration {
 		return this.mazecells.hasWall(x, y, dir) ;
 	}
 
+	/**
+	 * Deletes the wall at position (x,y) in the given direction 
+	 * and updates distances to the exit accordingly.
+	 * Only internal walls can be deleted, walls on the outside border stay in place.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param dir is the direction of the wall
+	 * @return true if the wall was deleted, false if it is on the outside border
+	 */
+	public boolean deleteWall(int x, int y, CardinalDirection dir) {
+		if (!isValidPosition(x+dir.dx(), y+dir.dy()))
+			return false ;
+		mazecells.deleteWall(x, y, dir);
+		mazedists.updateAfterWallDeleted(mazecells, x, y, dir);
+		return true ;
+	}
+	/**
+	 * Adds a wall at position (x,y) in the given direction 
+	 * and updates distances to the exit accordingly.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param dir is the direction of the wall
+	 */
+	public void addWall(int x, int y, CardinalDirection dir) {
+		mazecells.addWall(x, y, dir, isValidPosition(x+dir.dx(), y+dir.dy()));
+		mazedists.updateAfterWallAdded(mazecells, x, y, dir);
+	}
+
 	/**
 	 * Gives a (x',y') neighbor for given (x,y) that is closer to exit
 	 * if it exists. 
@@ -126,17 +163,15 @@ public class MazeContainer implements MazeConfiguration {
 		// find best candidate
 		int dnext = getDistanceToExit(x, y) ;
 		int[] result = new int[2] ;
-		int[] dir;
-		for (CardinalDirection cd: CardinalDirection.values()) {
+		for (CardinalDirection cd: DIRECTIONS) {
 			if (hasWall(x, y, cd)) 
 				continue; // there is a wall
 			// no wall, let's check the distance
-			dir = cd.getDirection();
-			int dn = getDistanceToExit(x+dir[0], y+dir[1]);
+			int dn = getDistanceToExit(x+cd.dx(), y+cd.dy());
 			if (dn < dnext) {
 				// update neighbor position with min distance
-				result[0] = x+dir[0] ;
-				result[1] = y+dir[1] ;
+				result[0] = x+cd.dx() ;
+				result[1] = y+cd.dy() ;
 				dnext = dn ;
 			}	
 		}
@@ -150,6 +185,9 @@ public class MazeContainer implements MazeConfiguration {
 		return result;
 	}
 
+	// all directions, cached to avoid the array copy that comes with each call to values()
+	private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values() ;
+
 	/**
 	 * Provides the (x,y) starting position.
 	 * The starting position is typically chosen to by furthest away from the exit.
@@ -3,110 +3,277 @@ package generation;
 import generation.Factory;
 import generation.Order;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 
 /**
- * This class encapsulates how a maze is generated. 
- * It takes orders to produce a maze, delegates it to the matching maze builder 
- * that computes and delivers the maze. This class operates the worker thread
- * to do the computation in the background. The maze builder classes contribute
- * a run method to execute on the worker thread.
+ * This class encapsulates how a maze is generated.
+ * It takes orders to produce a maze, delegates it to the matching maze builder
+ * that computes and delivers the maze.
+ * Computations run in the background on the worker threads of an executor,
+ * by default a pool with one thread per processor that is shared by all factories.
+ * The factory accepts any number of orders at the same time, each order gets
+ * a builder of its own and a Future as a handle to wait for or cancel that order
+ * without affecting any other order.
+ * 
+ * In arena mode, builders reuse the buffers of previous orders instead of allocating
+ * new ones, which takes load off the garbage collector if many mazes are generated in a row.
+ * Each builder checks out an arena of its own and returns it when it is done,
+ * so there are never more arenas than builders at work. A delivered maze belongs to its order,
+ * its cells and distances are only reused if they are handed back with recycle.
  */
 public class MazeFactory implements Factory {
 	// generation can be deterministic, i.e. same maze is generated each time for a given size
 	private boolean deterministic;
-	// factory keeps track of the current order, takes at most one order at a time
-	private Order currentOrder;
-	// factory has a MazeBuilder to do the work
-	// note that subclasses are instantiated for specific algorithms such as Prim's
-	// according to the given order
-	private MazeBuilder builder;
-	// 
-	private Thread buildThread; // computations are performed in own separated thread with this.run()
-	
+	// executes the builders, bounded number of worker threads
+	private final ExecutorService executor;
+	// factory keeps track of the most recent order for the methods of the Factory interface
+	private Future<MazeConfiguration> currentOrder;
+	// true if builders reuse buffers from previous orders
+	private volatile boolean arenaMode;
+	// arenas that are not checked out by a builder, the most recently returned one is used first
+	private final ConcurrentLinkedDeque<BufferArena> arenas = new ConcurrentLinkedDeque<BufferArena>();
+
+	// worker pool used by factories that are not given an executor, created on demand
+	private static ExecutorService sharedExecutor;
+
 	//////////////////////// Constructor ////////////////////////////////////////
 	/**
 	 * Constructor for a randomized maze generation
 	 */
 	public MazeFactory(){
-		// nothing to do
+		this(false);
 	}
 	/**
 	 * Constructor with option to make maze generation deterministic or random
 	 */
 	public MazeFactory(boolean deterministic){
+		this(deterministic, getSharedExecutor());
+	}
+	/**
+	 * Constructor for a factory that runs its builders with the given executor.
+	 * The executor limits the number of mazes that are generated at the same time.
+	 * @param deterministic true if the same maze is generated each time for a given skill level
+	 * @param executor runs the builders
+	 */
+	public MazeFactory(boolean deterministic, ExecutorService executor){
 		this.deterministic = deterministic;
+		this.executor = executor;
 	}
-	
+
 	//////////////////////// Factory interface //////////////////////////////////
 	@Override
 	public boolean order(Order order) {
-		// check if factory is busy
-		if (null != buildThread && buildThread.isAlive()) {
-			// order is currently processed, don't queue, just refuse
-			System.out.println("MazeFactory.order: refusing to take order, too busy with current order");
+		final Future<MazeConfiguration> handle = submit(order);
+		if (null == handle)
 			return false;
-		}
-		// idle, so accept order
-		currentOrder = order;
-		// set builder according to order
-		switch (order.getBuilder()) {
-			case DFS :
-				builder = deterministic ? new MazeBuilder(true) : new MazeBuilder();
-				buildOrder();
-				break;
-			case Prim:
-				builder = deterministic ? new MazeBuilderPrim(true) : new MazeBuilderPrim();
-				buildOrder();
-				break;
-			case Eller:
-				builder = deterministic ? new MazeBuilderEller(true) : new MazeBuilderEller();
-				buildOrder();
-				break;
-			default:
-				System.out.println("MazeFactory.order: missing implementation for requested algorithm: " + order.getBuilder());
-				return false;
-		}
+		currentOrder = handle;
 		return true ;
 	}
 	@Override
 	public void cancel() {
 		System.out.println("MazeFactory.cancel: called");
-		if (null != buildThread) {
-			buildThread.interrupt() ;
-			buildThread = null; // allow for next order to get through
+		if (null != currentOrder) {
+			// interrupts the builder, clean up happens in its build method
+			currentOrder.cancel(true) ;
+			currentOrder = null; // allow for next order to get through
 		}
 		else {
-			System.out.println("MazeFactory.cancel: no thread to cancel");
+			System.out.println("MazeFactory.cancel: no order to cancel");
 		}
-		// clean up happens in interrupt handling in run method
-		builder = null;
-		currentOrder = null;
 	}
 	@Override
 	public void waitTillDelivered() {
-		if (buildThread != null) {
-			try {
-				buildThread.join();
-			} catch (Exception e) { 
-				System.out.println("MazeBuilder.wailTillDelivered: join synchronization with builder thread lead to an exception") ;
-			}
+		if (currentOrder != null) {
+			await(currentOrder);
 		}
 		else {
-			System.out.println("MazeBuilder.waitTillDelivered: no thread to wait for");
+			System.out.println("MazeFactory.waitTillDelivered: no order to wait for");
 		}
-		builder = null;
 		currentOrder = null;
 	}
-	///////////////////////// private methods ///////////////////////////////////
+
+	//////////////////////// handles for concurrent orders //////////////////////
 	/**
-	 * Provide the builder with necessary input and start its execution
+	 * Takes an order and starts its production in the background.
+	 * Other orders that are in production are not affected.
+	 * The returned handle can be used to wait for the maze with get()
+	 * or to cancel this order with cancel(true).
+	 * The maze is also delivered to the order as with the order method.
+	 * @param order describes the maze
+	 * @return handle for the order, null if the requested algorithm is not supported
+	 * or the maze does not fit into the memory budget of the order
 	 */
-	private void buildOrder() { 
+	public Future<MazeConfiguration> submit(Order order) {
+		final MazeBuilder builder = prepareBuilder(order);
 		if (null == builder)
+			return null;
+		return executor.submit(new Callable<MazeConfiguration>() {
+			@Override
+			public MazeConfiguration call() throws InterruptedException {
+				return build(builder);
+			}
+		});
+	}
+	/**
+	 * Tells if builders reuse buffers from previous orders.
+	 */
+	public boolean isArenaMode() {
+		return arenaMode;
+	}
+	/**
+	 * Sets if builders reuse buffers from previous orders, this applies to orders that are submitted afterwards.
+	 * By default, each order allocates buffers of its own.
+	 */
+	public void setArenaMode(boolean arenaMode) {
+		this.arenaMode = arenaMode;
+		if (!arenaMode)
+			arenas.clear();
+	}
+	/**
+	 * Takes back a delivered maze that is not used anymore such that its cells and distances
+	 * can be reused for the next order of the same dimensions. This has no effect unless the factory is in arena mode.
+	 * The caller gives up the maze: neither the maze nor its cells and distances must be used afterwards,
+	 * not by the caller nor by anyone else who has been given a reference to them.
+	 * @param maze is a maze that has been delivered by this factory
+	 */
+	public void recycle(MazeConfiguration maze) {
+		if (!arenaMode)
 			return;
-		System.out.println("MazeFactory.buildOrder: started") ;
-		builder.buildOrder(currentOrder);
-		buildThread = new Thread(builder);
-		buildThread.start();
+		final BufferArena arena = takeArena();
+		arena.give(maze.getMazecells());
+		arena.give(maze.getMazedists());
+		arenas.push(arena);
+	}
+	/**
+	 * Waits for the given order to be delivered.
+	 * @param handle for an order as given by submit
+	 * @return the delivered maze, null if the order was cancelled or failed
+	 */
+	public static MazeConfiguration await(Future<MazeConfiguration> handle) {
+		try {
+			return handle.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.out.println("MazeFactory.await: interrupted while waiting for delivery") ;
+		} catch (ExecutionException e) {
+			System.out.println("MazeFactory.await: maze generation failed with " + e.getCause()) ;
+		} catch (CancellationException e) {
+			// order was cancelled, nothing is delivered
+		}
+		return null;
+	}
+	///////////////////////// private methods ///////////////////////////////////
+	/**
+	 * Creates a builder for the given order and sets it up for the ordered maze.
+	 * The memory needed for the maze is estimated before anything is allocated. If it exceeds
+	 * the budget of the order, which is never more than the maximum heap size, the order
+	 * is rejected, or if the order accepts a smaller maze, width and height are scaled down
+	 * by the same factor such that the maze fits.
+	 * @return the builder, null if the algorithm is not supported or the maze does not fit
+	 */
+	MazeBuilder prepareBuilder(Order order) {
+		final MazeBuilder builder = createBuilder(order);
+		if (null == builder) {
+			System.out.println("MazeFactory: missing implementation for requested algorithm: " + order.getBuilder());
+			return null;
+		}
+		int width = MazeBuilder.widthOf(order);
+		int height = MazeBuilder.heightOf(order);
+		final long heap = Runtime.getRuntime().maxMemory();
+		final long budget = (order.getMemoryBudget() > 0) ? Math.min(order.getMemoryBudget(), heap) : heap;
+		final long needed = MazeBuilder.estimateBytes(width, height);
+		if (needed > budget) {
+			if (!order.acceptsSmallerMaze()) {
+				System.out.println("MazeFactory: rejected " + width + "x" + height + " maze, needs " + needed + " bytes but budget is " + budget);
+				return null;
+			}
+			final double scale = Math.sqrt((double)budget / needed);
+			width = Math.max(1, (int)(width * scale));
+			height = Math.max(1, (int)(height * scale));
+			if (MazeBuilder.estimateBytes(width, height) > budget) {
+				System.out.println("MazeFactory: rejected maze, budget of " + budget + " bytes is too small for any maze");
+				return null;
+			}
+			System.out.println("MazeFactory: maze scaled down to " + width + "x" + height + " to fit into " + budget + " bytes");
+		}
+		if (arenaMode)
+			builder.setArena(takeArena());
+		builder.buildOrder(order, width, height);
+		return builder;
+	}
+	/**
+	 * Runs the given builder and returns its arena, if any, for the next order.
+	 * An arena of a failed or cancelled builder is returned as well, buffers that
+	 * were in use at that time are not in the arena anymore.
+	 * @return the delivered maze
+	 */
+	MazeConfiguration build(MazeBuilder builder) throws InterruptedException {
+		try {
+			return builder.build();
+		}
+		finally {
+			final BufferArena arena = builder.getArena();
+			if (null != arena) {
+				builder.setArena(null);
+				if (arenaMode)
+					arenas.push(arena);
+			}
+		}
+	}
+	/**
+	 * Checks out an arena that no builder is using.
+	 */
+	private BufferArena takeArena() {
+		final BufferArena arena = arenas.poll();
+		return (null == arena) ? new BufferArena() : arena;
+	}
+	/**
+	 * Creates a new builder for the algorithm requested by the given order.
+	 * Each order gets a builder of its own such that orders do not share any state.
+	 * @return the builder, null if the algorithm is not supported
+	 */
+	MazeBuilder createBuilder(Order order) {
+		switch (order.getBuilder()) {
+			case DFS :
+				return new MazeBuilder(deterministic);
+			case Prim:
+				return new MazeBuilderPrim(deterministic);
+			case Eller:
+				return new MazeBuilderEller(deterministic);
+			case Kruskal:
+				return new MazeBuilderKruskal(deterministic);
+			case Tiled:
+				return new MazeBuilderTiled(deterministic);
+			default:
+				return null;
+		}
+	}
+	/**
+	 * Gives the worker pool shared by all factories that are not given an executor.
+	 * It has one thread per processor, threads are daemon threads such that
+	 * they do not keep the application alive.
+	 */
+	private static synchronized ExecutorService getSharedExecutor() {
+		if (null == sharedExecutor) {
+			final AtomicInteger count = new AtomicInteger();
+			sharedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "MazeFactory-worker-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sharedExecutor;
 	}
-}
\ No newline at end of file
+}
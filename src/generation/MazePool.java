@@ -0,0 +1,429 @@
+package generation;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import falstad.Constants;
+
+/**
+ * A pool of pre-generated mazes that serves orders without waiting for the generation.
+ * Mazes are kept per combination of skill level, builder algorithm and perfect flag.
+ * Whenever a maze of some kind is ordered, a single background thread generates
+ * new mazes of that kind one after the other until the pool holds the configured number of them again.
+ * Refills therefore take at most one processor away from orders that miss the pool and are built
+ * by the maze factory on all processors. The thread has the lowest priority, but the pool does 
+ * not rely on it as many platforms, e.g. JVMs on Linux by default, ignore thread priorities.
+ * The memory held by the pool is limited; if there is no room for a maze of the kind that
+ * has just been ordered, mazes of the kind that has been ordered least recently are dropped first.
+ *
+ * An order that finds a matching maze in the pool (a hit) gets it delivered right away,
+ * other orders (misses) are passed on to a maze factory.
+ * Note that a maze from the pool has been generated with a seed of its own,
+ * the seed of the order is only respected for misses. The pool is therefore meant for
+ * orders that do not ask for a particular maze, e.g. a new game.
+ *
+ * The pool implements the Factory interface such that it can replace a MazeFactory.
+ * Counters for hits, misses and the latency of refills are available for monitoring.
+ * A pool that is not needed anymore is stopped with shutdown.
+ */
+public class MazePool implements Factory {
+	// memory a finished maze keeps per cell: cells, distances and the BSP tree
+	static final int BYTES_PER_CELL = MazeBuilder.RETAINED_BYTES_PER_CELL ;
+
+	private final MazeFactory factory ; 		// generates mazes for misses
+	private final ExecutorService refillExecutor ; // generates mazes to refill the pool, usually a single thread
+	private final boolean ownsRefillExecutor ; 	// true if the pool has created the refill executor
+	private final ExecutorService deliveryExecutor ; // delivers mazes from the pool
+	private boolean shutdown ; 					// true once shutdown has been called, no more refills start
+	private final int depth ; 					// number of mazes to keep per kind
+	private final long maxBytes ; 				// upper limit for memory held by the pool
+	// mazes per kind, iteration order is from least recently to most recently ordered
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>() ;
+	private long bytes ; 						// estimated memory held by the pool, including mazes in production
+	private final SplittableRandom seeds = new SplittableRandom() ;
+	// factory keeps track of the most recent order for the methods of the Factory interface
+	private Future<MazeConfiguration> currentOrder ;
+
+	// counters
+	private long hits ;
+	private long misses ;
+	private long evictions ;
+	private long refills ;
+	private long refillNanos ;
+
+	/**
+	 * Constructor for a pool that refills itself with a single low priority thread.
+	 * @param depth is the number of mazes to keep for each kind of maze that has been ordered
+	 * @param maxBytes is the upper limit for the estimated memory held by the pool
+	 */
+	public MazePool(int depth, long maxBytes) {
+		this(new MazeFactory(),
+				createExecutor("MazePool-refill-", 1, Thread.MIN_PRIORITY), true,
+				depth, maxBytes) ;
+	}
+	/**
+	 * Constructor
+	 * @param factory generates mazes for orders that cannot be served from the pool
+	 * @param refillExecutor runs the builders that refill the pool, with more than one thread 
+	 * refills compete with the factory for processors
+	 * @param depth is the number of mazes to keep for each kind of maze that has been ordered
+	 * @param maxBytes is the upper limit for the estimated memory held by the pool
+	 */
+	public MazePool(MazeFactory factory, ExecutorService refillExecutor, int depth, long maxBytes) {
+		this(factory, refillExecutor, false, depth, maxBytes) ;
+	}
+	private MazePool(MazeFactory factory, ExecutorService refillExecutor, boolean ownsRefillExecutor, int depth, long maxBytes) {
+		this.factory = factory ;
+		this.refillExecutor = refillExecutor ;
+		this.ownsRefillExecutor = ownsRefillExecutor ;
+		this.depth = depth ;
+		this.maxBytes = maxBytes ;
+		deliveryExecutor = createExecutor("MazePool-delivery-", 1, Thread.NORM_PRIORITY) ;
+	}
+
+	//////////////////////// Factory interface //////////////////////////////////
+	@Override
+	public boolean order(Order order) {
+		final Future<MazeConfiguration> handle = submit(order) ;
+		if (null == handle)
+			return false ;
+		currentOrder = handle ;
+		return true ;
+	}
+	@Override
+	public void cancel() {
+		if (null != currentOrder) {
+			currentOrder.cancel(true) ;
+			currentOrder = null ;
+		}
+	}
+	@Override
+	public void waitTillDelivered() {
+		if (null != currentOrder)
+			MazeFactory.await(currentOrder) ;
+		currentOrder = null ;
+	}
+
+	//////////////////////// pool operations ////////////////////////////////////
+	/**
+	 * Takes an order and serves it from the pool if possible,
+	 * otherwise the order is passed on to the factory.
+	 * Either way the pool starts to produce mazes of the ordered kind in the background.
+	 * @param order describes the maze
+	 * @return handle for the order as for MazeFactory.submit
+	 */
+	public Future<MazeConfiguration> submit(final Order order) {
+		if (isCustom(order)) {
+			// the pool only keeps mazes of the dimensions and rooms that come with a skill level
+			synchronized (this) {
+				misses++ ;
+			}
+			return factory.submit(order) ;
+		}
+		final Key key = new Key(order.getSkillLevel(), order.getBuilder(), order.isPerfect()) ;
+		final MazeConfiguration maze ;
+		synchronized (this) {
+			final Entry entry = touch(key) ;
+			maze = entry.mazes.poll() ;
+			if (null != maze) {
+				hits++ ;
+				bytes -= key.estimateBytes() ;
+			}
+			else
+				misses++ ;
+			refill(key, entry) ;
+		}
+		if (null == maze)
+			return factory.submit(order) ;
+		return deliveryExecutor.submit(new Callable<MazeConfiguration>() {
+			@Override
+			public MazeConfiguration call() {
+				order.deliver(maze) ;
+				order.updateProgress(100) ;
+				return maze ;
+			}
+		}) ;
+	}
+	/**
+	 * Stops the threads of the pool. Refills that have not started yet are dropped, 
+	 * mazes from the pool that have been ordered already are still delivered.
+	 * The refill executor is only shut down if the pool has created it, refills in production are then 
+	 * interrupted. An executor given to the constructor is left to its owner, the pool just starts 
+	 * no more refills on it. The pool must not take orders anymore afterwards.
+	 */
+	public void shutdown() {
+		synchronized (this) {
+			shutdown = true ;
+		}
+		if (ownsRefillExecutor)
+			refillExecutor.shutdownNow() ;
+		deliveryExecutor.shutdown() ;
+	}
+	private synchronized boolean isShutdown() {
+		return shutdown ;
+	}
+	/**
+	 * Waits until the threads of the pool have stopped after a shutdown.
+	 * @param timeout is the longest time to wait
+	 * @param unit of the timeout
+	 * @return true if all threads of the pool have stopped, false if the timeout elapsed before
+	 * @throws InterruptedException if the current thread is interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout) ;
+		if (ownsRefillExecutor && !refillExecutor.awaitTermination(timeout, unit))
+			return false ;
+		return deliveryExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) ;
+	}
+	/**
+	 * Starts to produce mazes of the given kind in the background
+	 * such that later orders can be served from the pool.
+	 */
+	public synchronized void prefill(int skill, Order.Builder builder, boolean perfect) {
+		final Key key = new Key(skill, builder, perfect) ;
+		refill(key, touch(key)) ;
+	}
+	/**
+	 * Gives the number of mazes of the given kind that are ready in the pool.
+	 */
+	public synchronized int size(int skill, Order.Builder builder, boolean perfect) {
+		final Entry entry = entries.get(new Key(skill, builder, perfect)) ;
+		return (null == entry) ? 0 : entry.mazes.size() ;
+	}
+	/**
+	 * Makes the given kind the most recently ordered one.
+	 * @return the mazes of the given kind
+	 */
+	private Entry touch(Key key) {
+		Entry entry = entries.remove(key) ;
+		if (null == entry)
+			entry = new Entry() ;
+		entries.put(key, entry) ;
+		return entry ;
+	}
+	/**
+	 * Orders as many mazes of the given kind as are missing to reach the configured depth.
+	 * If the memory limit does not allow for another maze, mazes of less recently ordered kinds are dropped.
+	 * Nothing is ordered once the pool is shut down.
+	 */
+	private void refill(Key key, Entry entry) {
+		while (!shutdown && entry.mazes.size() + entry.pending < depth) {
+			if (bytes + key.estimateBytes() > maxBytes && !evict(entry, key.estimateBytes()))
+				break ;
+			entry.pending++ ;
+			bytes += key.estimateBytes() ;
+			final RefillOrder order = new RefillOrder(key, entry, seeds.nextLong()) ;
+			refillExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					order.produce() ;
+				}
+			}) ;
+		}
+	}
+	/**
+	 * Adds a maze that has been produced for the pool.
+	 */
+	private synchronized void add(Entry entry, MazeConfiguration maze, long nanos) {
+		// the maze has been accounted for in bytes when it was ordered
+		entry.pending-- ;
+		entry.mazes.add(maze) ;
+		refills++ ;
+		refillNanos += nanos ;
+	}
+	/**
+	 * Releases the memory reserved for a maze that could not be produced.
+	 */
+	private synchronized void release(Key key, Entry entry) {
+		entry.pending-- ;
+		bytes -= key.estimateBytes() ;
+	}
+	/**
+	 * Drops mazes of the least recently ordered kinds until there is room for the given number of bytes.
+	 * Mazes of the given entry are kept, so are mazes in production.
+	 * @return true if there is enough room, false otherwise
+	 */
+	private boolean evict(Entry keep, long needed) {
+		final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator() ;
+		while (bytes + needed > maxBytes && iterator.hasNext()) {
+			final Map.Entry<Key, Entry> next = iterator.next() ;
+			final Entry entry = next.getValue() ;
+			while (entry != keep && bytes + needed > maxBytes && !entry.mazes.isEmpty()) {
+				entry.mazes.poll() ;
+				bytes -= next.getKey().estimateBytes() ;
+				evictions++ ;
+			}
+		}
+		return bytes + needed <= maxBytes ;
+	}
+
+	//////////////////////// counters ///////////////////////////////////////////
+	/**
+	 * Gives the number of orders that have been served from the pool.
+	 */
+	public synchronized long getHits() {
+		return hits ;
+	}
+	/**
+	 * Gives the number of orders that have been passed on to the factory.
+	 */
+	public synchronized long getMisses() {
+		return misses ;
+	}
+	/**
+	 * Gives the number of mazes that have been dropped to meet the memory limit.
+	 */
+	public synchronized long getEvictions() {
+		return evictions ;
+	}
+	/**
+	 * Gives the number of mazes that have been produced for the pool.
+	 */
+	public synchronized long getRefills() {
+		return refills ;
+	}
+	/**
+	 * Gives the average time in milliseconds from ordering a maze for the pool until it is added to the pool.
+	 * @return average latency, 0 if no maze has been produced for the pool yet
+	 */
+	public synchronized double getAverageRefillMillis() {
+		return (0 == refills) ? 0 : refillNanos / 1e6 / refills ;
+	}
+	/**
+	 * Gives the estimated memory held by the pool including mazes in production.
+	 */
+	public synchronized long getBytes() {
+		return bytes ;
+	}
+
+	///////////////////////// private classes and methods ///////////////////////
+	/**
+	 * Tells if the given order asks for dimensions or a number of rooms of its own.
+	 */
+	private static boolean isCustom(Order order) {
+		return order.getWidth() > 0 || order.getHeight() > 0 || order.getRooms() >= 0 ;
+	}
+	/**
+	 * Kind of maze, mazes of the same kind are interchangeable.
+	 */
+	private static final class Key {
+		final int skill ;
+		final Order.Builder builder ;
+		final boolean perfect ;
+
+		Key(int skill, Order.Builder builder, boolean perfect) {
+			this.skill = skill ;
+			this.builder = builder ;
+			this.perfect = perfect ;
+		}
+		long estimateBytes() {
+			return (long)BYTES_PER_CELL * Constants.SKILL_X[skill] * Constants.SKILL_Y[skill] ;
+		}
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false ;
+			final Key o = (Key)other ;
+			return skill == o.skill && builder == o.builder && perfect == o.perfect ;
+		}
+		@Override
+		public int hashCode() {
+			return (skill * 31 + builder.hashCode()) * 2 + (perfect ? 1 : 0) ;
+		}
+	}
+	/**
+	 * Mazes of a single kind that are ready plus the number of mazes in production.
+	 */
+	private static final class Entry {
+		final ArrayDeque<MazeConfiguration> mazes = new ArrayDeque<MazeConfiguration>() ;
+		int pending ;
+	}
+	/**
+	 * Order to produce a maze for the pool.
+	 */
+	private final class RefillOrder implements Order {
+		private final Key key ;
+		private final Entry entry ; 	// mazes of the same kind in the pool
+		private final long seed ;
+		private final long start = System.nanoTime() ;
+		private boolean delivered ;
+
+		RefillOrder(Key key, Entry entry, long seed) {
+			this.key = key ;
+			this.entry = entry ;
+			this.seed = seed ;
+		}
+		/**
+		 * Generates the maze on the current thread, the maze is added to the pool by deliver.
+		 */
+		void produce() {
+			try {
+				if (isShutdown())
+					return ; // the maze would never be ordered from the pool
+				final MazeBuilder builder = factory.createBuilder(this) ;
+				builder.buildOrder(this) ;
+				builder.build() ;
+			}
+			catch (InterruptedException e) {
+				// executor is shut down
+			}
+			catch (RuntimeException e) {
+				System.out.println("MazePool: maze generation failed with " + e) ;
+			}
+			finally {
+				if (!delivered)
+					release(key, entry) ;
+			}
+		}
+		@Override
+		public int getSkillLevel() {
+			return key.skill ;
+		}
+		@Override
+		public Builder getBuilder() {
+			return key.builder ;
+		}
+		@Override
+		public boolean isPerfect() {
+			return key.perfect ;
+		}
+		@Override
+		public long getSeed() {
+			return seed ;
+		}
+		@Override
+		public void deliver(MazeConfiguration mazeConfig) {
+			delivered = true ;
+			add(entry, mazeConfig, System.nanoTime() - start) ;
+		}
+		@Override
+		public void updateProgress(int percentage) {
+			// nobody is waiting for this maze
+		}
+	}
+	/**
+	 * Creates a pool of daemon threads with the given priority.
+	 */
+	private static ExecutorService createExecutor(final String name, int threads, final int priority) {
+		final AtomicInteger count = new AtomicInteger() ;
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + count.incrementAndGet()) ;
+				thread.setDaemon(true) ;
+				thread.setPriority(priority) ;
+				return thread ;
+			}
+		}) ;
+	}
+}
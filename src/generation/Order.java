@@ -11,9 +11,49 @@ package generation;
  */
 public interface Order {
 	/**
-	 * Gives the required skill level, range of values 0,1,2,...,15
+	 * Gives the required skill level, range of values 0,1,2,...,15.
+	 * The skill level determines the dimensions and the number of rooms
+	 * unless the order asks for particular values.
 	 */
 	int getSkillLevel() ;
+	/**
+	 * Gives the requested width of the maze.
+	 * @return width, 0 for the width that comes with the skill level
+	 */
+	default int getWidth() {
+		return 0 ;
+	}
+	/**
+	 * Gives the requested height of the maze.
+	 * @return height, 0 for the height that comes with the skill level
+	 */
+	default int getHeight() {
+		return 0 ;
+	}
+	/**
+	 * Gives the requested number of rooms, which is ignored for a perfect maze.
+	 * @return number of rooms, -1 for the number that comes with the skill level
+	 */
+	default int getRooms() {
+		return -1 ;
+	}
+	/**
+	 * Gives the upper limit for the memory that the generation of the maze may take.
+	 * The factory estimates the memory needed before it starts to build the maze
+	 * and rejects an order that does not fit, unless the order accepts a smaller maze.
+	 * @return number of bytes, 0 if the only limit is the maximum heap size
+	 */
+	default long getMemoryBudget() {
+		return 0 ;
+	}
+	/**
+	 * Tells if the factory may deliver a smaller maze than requested
+	 * if the requested maze does not fit into the memory budget.
+	 * The smaller maze keeps the ratio of width and height.
+	 */
+	default boolean acceptsSmallerMaze() {
+		return false ;
+	}
 	/** 
 	 * Gives the requested builder algorithm, possible values 
 	 * are listed in the Builder enum type.
@@ -21,17 +61,24 @@ public interface Order {
 	Builder getBuilder() ;
 	/**
 	 * Lists all maze generation algorithms that are supported
-	 * by the maze factory (Eller needs to be implemented for P2)
+	 * by the maze factory (Eller needs to be implemented for P2).
+	 * Tiled generates parts of the maze in parallel and is meant for very large mazes.
 	 * @author pk
 	 *
 	 */
-	enum Builder { DFS, Prim, Kruskal, Eller } ;
+	enum Builder { DFS, Prim, Kruskal, Eller, Tiled } ;
 	/**
 	 * Describes if the ordered maze should be perfect, i.e. there are 
 	 * no loops and no isolated areas, which also implies that 
 	 * there are no rooms as rooms can imply loops
 	 */
 	boolean isPerfect() ;
+	/**
+	 * Gives the seed for the random number generator of the maze builder.
+	 * The same seed results in the same maze for the same skill level, 
+	 * builder algorithm and setting for a perfect maze.
+	 */
+	long getSeed() ;
 	/**
 	 * Delivers the produced maze. 
 	 * This method is called by the factory to provide the 
@@ -45,6 +92,9 @@ public interface Order {
 	 * during production, there is no guarantee on particular values.
 	 * Percentage will be delivered in monotonously increasing order,
 	 * the last call is with a value of 100 after delivery of product.
+	 * The method is called by the threads that generate the maze, one call at a time, 
+	 * so it should return quickly and leave any drawing to another thread, 
+	 * e.g. by publishing the value to a ProgressChannel.
 	 * @param current percentage of job completion
 	 */
 	void updateProgress(int percentage) ;
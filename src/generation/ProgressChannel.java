@@ -0,0 +1,57 @@
+package generation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes the progress of a maze generation from the builder thread to the user interface.
+ * The builder publishes percentages, the user interface samples the latest value
+ * at a pace of its own, e.g. with a timer. Values that are published in between samples
+ * are simply overwritten, only the highest percentage is kept.
+ * Publishing is lock-free and never waits for the user interface,
+ * so the speed of generation does not depend on the speed of drawing.
+ *
+ */
+public final class ProgressChannel {
+	/** latest percentage, -1 if nothing has been published since the last reset */
+	private final AtomicInteger percentage = new AtomicInteger(-1) ;
+	/** last percentage handed out by sampleIfChanged */
+	private int sampled = -1 ;
+
+	/**
+	 * Publishes a new percentage. Values that are smaller than the current value are ignored
+	 * such that the progress never goes backwards.
+	 * This method can be called from any thread.
+	 * @param value is the percentage in the range [0,100]
+	 */
+	public void publish(int value) {
+		int current = percentage.get() ;
+		while (current < value && !percentage.compareAndSet(current, value))
+			current = percentage.get() ;
+	}
+	/**
+	 * Gives the latest percentage.
+	 * @return percentage, -1 if nothing has been published yet
+	 */
+	public int sample() {
+		return percentage.get() ;
+	}
+	/**
+	 * Gives the latest percentage if it has changed since the last call of this method.
+	 * This method is meant to be called by a single thread, e.g. a timer of the user interface.
+	 * @return percentage, -1 if it has not changed
+	 */
+	public int sampleIfChanged() {
+		final int value = percentage.get() ;
+		if (value == sampled)
+			return -1 ;
+		sampled = value ;
+		return value ;
+	}
+	/**
+	 * Starts over for a new maze generation.
+	 */
+	public void reset() {
+		percentage.set(-1) ;
+		sampled = -1 ;
+	}
+}
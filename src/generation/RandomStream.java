@@ -0,0 +1,74 @@
+package generation;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class implements a stream of pseudo random numbers for a single maze generation.
+ * Each builder has a stream of its own, so builders that run in parallel do not share a generator
+ * and there is no lock or contended seed as with the SingleRandom singleton.
+ * A stream that starts with a given seed always delivers the same sequence of numbers,
+ * which makes maze generation reproducible.
+ *
+ * The stream is not thread safe, it is meant to be used by a single thread at a time.
+ *
+ */
+public final class RandomStream {
+	/** internal random number generator, not shared with anybody else */
+	private SplittableRandom generator ;
+	/** seed value the current sequence of random numbers started with */
+	private long seed ;
+
+	/**
+	 * Constructor for a stream with an arbitrary seed.
+	 */
+	public RandomStream() {
+		this(new SplittableRandom().nextLong()) ;
+	}
+	/**
+	 * Constructor for a stream that starts with the given seed.
+	 * @param seed is the seed value for the random number generator
+	 */
+	public RandomStream(long seed) {
+		setSeed(seed) ;
+	}
+
+	/**
+	 * Restarts the stream with the given seed.
+	 * @param seed is the seed value for the random number generator
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed ;
+		generator = new SplittableRandom(seed) ;
+	}
+	/**
+	 * Gives the seed the current sequence of random numbers started with.
+	 * @return seed value
+	 */
+	public long getSeed() {
+		return seed ;
+	}
+	/**
+	 * Delivers a random number.
+	 * @return random integer value
+	 */
+	public int nextInt() {
+		return generator.nextInt();
+	}
+	/**
+	 * Delivers a random long number, e.g. as a seed for another stream.
+	 * @return random long value
+	 */
+	public long nextLong() {
+		return generator.nextLong();
+	}
+	/**
+	 * Generate an integer random number in interval [lowerBound,upperBound]
+	 * @param lowerBound
+	 * @param upperBound
+	 * @return random number within given range
+	 */
+	public int nextIntWithinInterval(final int lowerBound, final int upperBound) {
+		assert(lowerBound <= upperBound) : "parameter error, lowerbound " + lowerBound + "> upper bound" + upperBound ;
+		return lowerBound + generator.nextInt(upperBound - lowerBound + 1) ;
+	}
+}
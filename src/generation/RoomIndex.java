@@ -0,0 +1,162 @@
+package generation;
+
+/**
+ * Keeps track of the cells that belong to rooms such that a position for a new room
+ * can be found without trial and error on the cells object.
+ * Each row of the maze is a bit set with one bit per cell, so the test whether a room
+ * overlaps with another room or comes too close to it only looks at a few words per row
+ * and takes constant time as rooms are small. The index is updated with each room that is added.
+ *
+ * A position for a room is drawn uniformly at random among all feasible positions.
+ * As long as the maze has ample space, random positions are tested until one is feasible,
+ * which is the same as drawing from the feasible positions only.
+ * If that fails a few times, all feasible positions are counted and one of them is picked,
+ * so a room is placed whenever there is space for it, and the number of random numbers
+ * needed per room is bounded.
+ *
+ * Like Cells.areaOverlapsWithRoom, a room needs at least one cell of distance to other rooms
+ * and to the outside border.
+ */
+final class RoomIndex {
+	// number of random positions that are tried before all feasible positions are counted
+	static final int RANDOM_TRIES = 8 ;
+
+	private final int width ;
+	private final int height ;
+	private final long[][] rows ; 	// rows[y] has bit x set if cell (x,y) is in a room
+
+	/**
+	 * Constructor for an index without rooms
+	 * @param width of the maze
+	 * @param height of the maze
+	 */
+	RoomIndex(int width, int height) {
+		this.width = width ;
+		this.height = height ;
+		rows = new long[height][(width + 63) >>> 6] ;
+	}
+
+	/**
+	 * Tells if a room with upper left corner (rx,ry) and lower right corner (rxl,ryl) would
+	 * overlap with a room or would be too close to another room or the outside border.
+	 * @return true if the room cannot be placed there, same as Cells.areaOverlapsWithRoom
+	 */
+	boolean overlaps(int rx, int ry, int rxl, int ryl) {
+		if (rx < 1 || ry < 1 || rxl+1 >= width || ryl+1 >= height)
+			return true ;
+		for (int y = ry-1; y <= ryl+1; y++) {
+			if (hasBits(rows[y], rx-1, rxl+1))
+				return true ;
+		}
+		return false ;
+	}
+	/**
+	 * Adds a room with upper left corner (rx,ry) and lower right corner (rxl,ryl) to the index.
+	 */
+	void add(int rx, int ry, int rxl, int ryl) {
+		for (int y = ry; y <= ryl; y++) {
+			for (int x = rx; x <= rxl; x++)
+				rows[y][x >>> 6] |= 1L << x ;
+		}
+	}
+	/**
+	 * Picks a random position for a room of the given dimensions among all positions
+	 * where it does not overlap with another room.
+	 * @param rw room width
+	 * @param rh room height
+	 * @param random provides random numbers
+	 * @return upper left corner (rx,ry) of the room, null if the room does not fit anywhere
+	 */
+	int[] findPosition(int rw, int rh, RandomStream random) {
+		// upper left corners that keep the room off the border
+		final int maxX = width-rw-1 ;
+		final int maxY = height-rh-1 ;
+		if (maxX < 1 || maxY < 1)
+			return null ;
+		for (int i = 0; i < RANDOM_TRIES; i++) {
+			final int rx = random.nextIntWithinInterval(1, maxX) ;
+			final int ry = random.nextIntWithinInterval(1, maxY) ;
+			if (!overlaps(rx, ry, rx+rw-1, ry+rh-1))
+				return new int[] { rx, ry } ;
+		}
+		// the maze is crowded, count the feasible positions and pick one of them
+		final long[] blocked = new long[rows[0].length] ;
+		final long[] feasible = new long[rows[0].length] ;
+		final int[] counts = new int[height] ;
+		int total = 0 ;
+		for (int ry = 1; ry <= maxY; ry++) {
+			counts[ry] = findFeasibleColumns(rw, rh, ry, blocked, feasible) ;
+			total += counts[ry] ;
+		}
+		if (0 == total)
+			return null ;
+		int target = random.nextIntWithinInterval(0, total-1) ;
+		int ry = 1 ;
+		while (target >= counts[ry])
+			target -= counts[ry++] ;
+		findFeasibleColumns(rw, rh, ry, blocked, feasible) ;
+		int i = 0 ;
+		while (target >= Long.bitCount(feasible[i]))
+			target -= Long.bitCount(feasible[i++]) ;
+		long word = feasible[i] ;
+		for (; target > 0; target--)
+			word &= word-1 ; // clear lowest bit
+		// bit x marks the last column of the padded room area, which is rx+rw
+		final int x = (i << 6) + Long.numberOfTrailingZeros(word) ;
+		return new int[] { x-rw, ry } ;
+	}
+	/**
+	 * Determines the columns x where a room of the given dimensions with upper left corner (x-rw,ry) fits.
+	 * The padded room area covers columns x-rw-1,...,x which all need to be free in rows ry-1,...,ry+rh.
+	 * @param blocked is a buffer for the columns that have a room cell in any of these rows
+	 * @param feasible receives a bit set with bit x set if the room fits
+	 * @return number of feasible columns
+	 */
+	private int findFeasibleColumns(int rw, int rh, int ry, long[] blocked, long[] feasible) {
+		final int words = blocked.length ;
+		System.arraycopy(rows[ry-1], 0, blocked, 0, words) ;
+		for (int y = ry; y <= ry+rh; y++) {
+			for (int i = 0; i < words; i++)
+				blocked[i] |= rows[y][i] ;
+		}
+		// column x is infeasible if any of the columns x-rw-1,...,x is blocked,
+		// so blocked columns are spread to the following rw+1 columns
+		for (int i = 0; i < words; i++)
+			feasible[i] = blocked[i] ;
+		for (int shift = 1; shift <= rw+1; shift++) {
+			for (int i = 0; i < words; i++)
+				feasible[i] |= (blocked[i] << shift) | ((i > 0) ? blocked[i-1] >>> (64-shift) : 0) ;
+		}
+		// keep columns rw+1,...,width-1, others put the room too close to the border
+		int count = 0 ;
+		for (int i = 0; i < words; i++) {
+			long word = ~feasible[i] ;
+			final int first = i << 6 ;
+			if (first < rw+1)
+				word &= -1L << (rw+1-first) ;
+			if (first+64 > width)
+				word &= -1L >>> (first+64-width) ;
+			feasible[i] = word ;
+			count += Long.bitCount(word) ;
+		}
+		return count ;
+	}
+	/**
+	 * Tells if any bit in positions from,...,to is set in the given bit set.
+	 */
+	private static boolean hasBits(long[] row, int from, int to) {
+		final int first = from >>> 6 ;
+		final int last = to >>> 6 ;
+		final long firstMask = -1L << from ;
+		final long lastMask = -1L >>> (63 - (to & 63)) ;
+		if (first == last)
+			return (row[first] & firstMask & lastMask) != 0 ;
+		if ((row[first] & firstMask) != 0 || (row[last] & lastMask) != 0)
+			return true ;
+		for (int i = first+1; i < last; i++) {
+			if (row[i] != 0)
+				return true ;
+		}
+		return false ;
+	}
+}
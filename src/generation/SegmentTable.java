@@ -0,0 +1,288 @@
+package generation;
+
+import java.util.Arrays;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import falstad.MazeFileWriter;
+
+/**
+ * A table of segments, i.e. continuous sequences of walls in the maze, one row per segment.
+ * Each attribute of a segment is kept in an array of its own such that a maze with
+ * hundreds of thousands of segments needs a handful of arrays instead of as many objects,
+ * and a loop over consecutive rows reads consecutive memory.
+ *
+ * A segment starts at (x,y) and extends by (dx,dy) where either dx != 0 and dy == 0 or vice versa,
+ * the end position is (x+dx, y+dy). Its distance is the distance of its starting position to the exit,
+ * its color is an RGB value that depends on the distance and the direction.
+ * A segment is flagged as partition once the BSPBuilder has used it to split a node
+ * and as seen once the user has seen it on the way through the maze.
+ *
+ * Leaves of the BSP tree refer to a range of rows, the rows of a leaf are next to each other.
+ * A table is not thread safe, rows that are added by one thread must not be read by another thread
+ * without synchronization.
+ *
+ * This code is refactored code from Seg.java which comes from Maze.java by Paul Falstad, www.falstad.com,
+ * Copyright (C) 1998, all rights reserved
+ * Paul Falstad granted permission to modify and use code for teaching purposes.
+ */
+public final class SegmentTable {
+	// bits of the flags array
+	private static final byte PARTITION = 1 ;
+	private static final byte SEEN = 2 ;
+
+	private int[] x ; 		// x coordinate of starting position of segment
+	private int[] y ; 		// y coordinate of starting position of segment
+	private int[] dx ; 		// direction and length of segment in x coordinate
+	private int[] dy ; 		// direction and length of segment in y coordinate
+	private int[] dist ; 	// distance of starting position of segment to exit position of maze
+	private int[] color ; 	// int of RGB values for color
+	private byte[] flags ; 	// PARTITION and SEEN bits
+	private int size ; 		// number of rows in use
+
+	/**
+	 * Constructor for an empty table
+	 * @param capacity is the number of rows the table can take before its arrays need to grow
+	 */
+	public SegmentTable(int capacity) {
+		capacity = Math.max(capacity, 1) ;
+		x = new int[capacity] ;
+		y = new int[capacity] ;
+		dx = new int[capacity] ;
+		dy = new int[capacity] ;
+		dist = new int[capacity] ;
+		color = new int[capacity] ;
+		flags = new byte[capacity] ;
+	}
+
+	/**
+	 * Adds a segment, its color is determined from its distance and direction.
+	 * @param psx x coordinate of starting position of segment
+	 * @param psy y coordinate of starting position of segment
+	 * @param pdx direction and length of segment in x coordinate
+	 * @param pdy direction and length of segment in y coordinate
+	 * @param distance of starting position of this segment to exit position of maze
+	 * @param cc used to decide which color is assigned to segment, see getColor(int, int, int)
+	 * @return index of the new row
+	 */
+	public int add(int psx, int psy, int pdx, int pdy, int distance, int cc) {
+		return add(psx, psy, pdx, pdy, distance, getColor(pdx, distance, cc), false, false) ;
+	}
+	/**
+	 * Adds a segment with all its attributes given explicitly, e.g. when it is read from a file.
+	 * @return index of the new row
+	 */
+	public int add(int psx, int psy, int pdx, int pdy, int distance, int rgb, boolean partition, boolean seen) {
+		// check side condition for extension
+		assert (pdx != 0 && pdy == 0) || (pdx == 0 && pdy != 0) : "Segment needs to extend into exactly one direction" ;
+		if (size == x.length)
+			grow(size + (size >> 1) + 1) ;
+		x[size] = psx ;
+		y[size] = psy ;
+		dx[size] = pdx ;
+		dy[size] = pdy ;
+		dist[size] = distance ;
+		color[size] = rgb ;
+		flags[size] = (byte)((partition ? PARTITION : 0) | (seen ? SEEN : 0)) ;
+		return size++ ;
+	}
+	/**
+	 * Adds a copy of a row of another table (or of this one).
+	 * @return index of the new row
+	 */
+	int append(SegmentTable source, int i) {
+		if (size == x.length)
+			grow(size + (size >> 1) + 1) ;
+		x[size] = source.x[i] ;
+		y[size] = source.y[i] ;
+		dx[size] = source.dx[i] ;
+		dy[size] = source.dy[i] ;
+		dist[size] = source.dist[i] ;
+		color[size] = source.color[i] ;
+		flags[size] = source.flags[i] ;
+		return size++ ;
+	}
+	/**
+	 * Shortens the segment in row i to the given extension, its starting position stays the same.
+	 * This is for a segment that is split in two, the other piece is added as a row of its own.
+	 */
+	void setExtension(int i, int pdx, int pdy) {
+		assert (pdx != 0 && pdy == 0) || (pdx == 0 && pdy != 0) : "Segment needs to extend into exactly one direction" ;
+		dx[i] = pdx ;
+		dy[i] = pdy ;
+	}
+	/**
+	 * Moves the starting position of the segment in row i, its extension stays the same.
+	 * This is for a segment that is joined with the one before it, see setExtension.
+	 */
+	void setStartPosition(int i, int psx, int psy) {
+		x[i] = psx ;
+		y[i] = psy ;
+	}
+	/**
+	 * Releases unused capacity, for a table that does not grow any further.
+	 */
+	void trimToSize() {
+		if (size < x.length)
+			grow(size) ;
+	}
+	private void grow(int capacity) {
+		x = Arrays.copyOf(x, capacity) ;
+		y = Arrays.copyOf(y, capacity) ;
+		dx = Arrays.copyOf(dx, capacity) ;
+		dy = Arrays.copyOf(dy, capacity) ;
+		dist = Arrays.copyOf(dist, capacity) ;
+		color = Arrays.copyOf(color, capacity) ;
+		flags = Arrays.copyOf(flags, capacity) ;
+	}
+
+	/**
+	 * @return the number of segments in the table
+	 */
+	public int size() {
+		return size ;
+	}
+
+	/**
+	 * Determines the color of a segment.
+	 * The RGB value is computed directly, the same as the one of a java.awt.Color with
+	 * these components, such that no color object needs to be created.
+	 * @param pdx extension of the segment in x direction, horizontal segments are a little brighter
+	 * @param distance to exit
+	 * @param cc obscure, apparently it asks for a color change
+	 * @return RGB value with an alpha value of 255
+	 */
+	public static int getColor(int pdx, int distance, int cc) {
+		int add = (pdx != 0) ? 1 : 0;
+		// 7 in binary is 0...0111
+		// use AND to get last 3 digits of distance
+		distance /= 4;
+		int part1 = distance & 7;
+		// mod used to limit the number of colors to 6
+		int part2 = ((distance >> 3) ^ cc) % 6;
+
+		// compute rgb value, depends on distance and x direction
+		int rgbValue = ((part1 + 2 + add) * 70)/8 + 80;
+		switch (part2) {
+			case 0: return getRGB(rgbValue, 20, 20);
+			case 1: return getRGB(20, rgbValue, 20);
+			case 2: return getRGB(20, 20, rgbValue);
+			case 3: return getRGB(rgbValue, rgbValue, 20);
+			case 4: return getRGB(20, rgbValue, rgbValue);
+			case 5: return getRGB(rgbValue, 20, rgbValue);
+			default: return getRGB(20, 20, 20);
+		}
+	}
+	private static int getRGB(int red, int green, int blue) {
+		return 0xff000000 | (red << 16) | (green << 8) | blue ;
+	}
+
+	/**
+	 * Computes specific integer values for the X,Y directions.
+	 * If x direction matters, it returns the inverse direction, either -1 or 1.
+	 * If y direction matters, it returns the inverse direction, either -2 or 2.
+	 * Possible return values limited to {-2,-1,1,2}.
+	 * @param i row of the segment
+	 */
+	public int getDir(int i) {
+		if (dx[i] != 0)
+			return (dx[i] < 0) ? 1 : -1;
+		return (dy[i] < 0) ? 2 : -2;
+	}
+
+	public int getDistance(int i) {
+		return dist[i] ;
+	}
+	/**
+	 * Sets the distance and the color that depends on it.
+	 * This is for segments that are created before the distances of the maze are known.
+	 * @param i row of the segment
+	 * @param distance of starting position of this segment to exit position of maze
+	 * @param cc same value as for add
+	 */
+	void setDistance(int i, int distance, int cc) {
+		dist[i] = distance ;
+		color[i] = getColor(dx[i], distance, cc) ;
+	}
+
+	public boolean isPartition(int i) {
+		return (flags[i] & PARTITION) != 0 ;
+	}
+	public void setPartition(int i, boolean partition) {
+		flags[i] = (byte)(partition ? (flags[i] | PARTITION) : (flags[i] & ~PARTITION)) ;
+	}
+	/**
+	 * Sets partition bit to true for cases where the segment touches the border of the maze
+	 * and has an extension of 0.
+	 * Method is used in BSPBuilder.
+	 */
+	void updatePartitionIfBorderCase(int i, int width, int height) {
+		if (((x[i] == 0 || x[i] == width ) && dx[i] == 0) ||
+				((y[i] == 0 || y[i] == height) && dy[i] == 0)) {
+			setPartition(i, true) ;
+		}
+	}
+	public boolean isSeen(int i) {
+		return (flags[i] & SEEN) != 0 ;
+	}
+	public void setSeen(int i, boolean seen) {
+		flags[i] = (byte)(seen ? (flags[i] | SEEN) : (flags[i] & ~SEEN)) ;
+	}
+
+	/**
+	 * @return the color RGB value of the segment in row i
+	 */
+	public int getColor(int i) {
+		return color[i] ;
+	}
+	public void setColor(int i, int rgb) {
+		color[i] = rgb ;
+	}
+
+	public int getStartPositionX(int i) {
+		return x[i] ;
+	}
+	public int getStartPositionY(int i) {
+		return y[i] ;
+	}
+	public int getExtensionX(int i) {
+		return dx[i] ;
+	}
+	public int getExtensionY(int i) {
+		return dy[i] ;
+	}
+	public int getEndPositionX(int i) {
+		return x[i] + dx[i] ;
+	}
+	public int getEndPositionY(int i) {
+		return y[i] + dy[i] ;
+	}
+
+	/**
+	 * Tells if the segment in row i matches the segment in row j of the other table in all attributes.
+	 */
+	public boolean sameSegment(int i, SegmentTable other, int j) {
+		return x[i] == other.x[j] && y[i] == other.y[j] && dx[i] == other.dx[j] && dy[i] == other.dy[j] &&
+				dist[i] == other.dist[j] && color[i] == other.color[j] && flags[i] == other.flags[j] ;
+	}
+
+	/**
+	 * Stores the segment in row i into the given document with the help of the MazeFileWriter
+	 * @param doc document to add data to
+	 * @param mazeXML element to add data to
+	 * @param number index number of the leaf node
+	 * @param index of the segment within the leaf node
+	 * @param i row of the segment
+	 */
+	public void store(Document doc, Element mazeXML, int number, int index, int i) {
+		MazeFileWriter.appendChild(doc, mazeXML, "distSeg_" + number+ "_" + index, dist[i]) ;
+		MazeFileWriter.appendChild(doc, mazeXML, "dxSeg_" + number+ "_" + index, dx[i]) ;
+		MazeFileWriter.appendChild(doc, mazeXML, "dySeg_" + number+ "_" + index, dy[i]) ;
+		MazeFileWriter.appendChild(doc, mazeXML, "partitionSeg_" + number+ "_" + index, isPartition(i)) ;
+		MazeFileWriter.appendChild(doc, mazeXML, "seenSeg_" + number+ "_" + index, isSeen(i)) ;
+		MazeFileWriter.appendChild(doc, mazeXML, "xSeg_" + number+ "_" + index, x[i]) ;
+		MazeFileWriter.appendChild(doc, mazeXML, "ySeg_" + number+ "_" + index, y[i]) ;
+		MazeFileWriter.appendChild(doc, mazeXML, "colSeg_" + number+ "_" + index, color[i]) ;
+	}
+}
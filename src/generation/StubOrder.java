@@ -19,6 +19,12 @@ public class StubOrder implements Order {
     private int skill;
     private Builder builder;
     private boolean isPerfect;
+    private long seed;
+    private int width;
+    private int height;
+    private int rooms = -1;
+    private long memoryBudget;
+    private boolean acceptsSmallerMaze;
 
     public StubOrder() {
         super();
@@ -27,6 +33,7 @@ public class StubOrder implements Order {
         mazeConfig = new MazeContainer();
         this.isPerfect = false;
         this.skill = 0;
+        this.seed = new java.util.Random().nextLong();
     }
 
     public void setSkillLevel(int newSkill) {
@@ -38,7 +45,52 @@ public class StubOrder implements Order {
         return this.skill;
     }
 
-    private void setBuilder(Builder builder) {
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public void setRooms(int rooms) {
+        this.rooms = rooms;
+    }
+
+    @Override
+    public int getRooms() {
+        return rooms;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setAcceptsSmallerMaze(boolean acceptsSmallerMaze) {
+        this.acceptsSmallerMaze = acceptsSmallerMaze;
+    }
+
+    @Override
+    public boolean acceptsSmallerMaze() {
+        return acceptsSmallerMaze;
+    }
+
+    public void setBuilder(Builder builder) {
         this.builder = builder ;
     }
 
@@ -52,6 +104,15 @@ public class StubOrder implements Order {
         return isPerfect;
     }
 
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public long getSeed() {
+        return this.seed;
+    }
+
     public void start() {
         factory.order(this);
         factory.waitTillDelivered();
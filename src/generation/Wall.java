@@ -11,7 +11,7 @@ public class Wall {
 	// Cell location (x,y) pair.
 	private int x;
 	private int y;
-	private int[] d; // direction (dx,dy) pair
+	private CardinalDirection dir; // direction, provides the (dx,dy) pair
 
 	/**
 	 * Constructor, values have same effect has setWall(x,y,cd).
@@ -23,7 +23,7 @@ public class Wall {
 	{
 		this.x = x;
 		this.y = y;
-		d = cd.getDirection();
+		dir = cd;
 	}
 	/**
 	 * Sets the internal fields to the given values for a (x,y)
@@ -36,7 +36,7 @@ public class Wall {
 	{
 		this.x = x;
 		this.y = y;
-		d = cd.getDirection();
+		dir = cd;
 	}
 	/**
 	 * Get the x coordinate for the current (x,y) position.
@@ -58,14 +58,14 @@ public class Wall {
 	 * given limits and assign these values to this wall.
 	 * @param width such that 0 <= x < width
 	 * @param height such that 0 <= y < height
+	 * @param random provides the random numbers
 	 */
-	public void setRandomly(int width, int height) {
+	public void setRandomly(int width, int height, RandomStream random) {
 		// pick position (x,y) with x being random, y being random
-		SingleRandom random = SingleRandom.getRandom() ;
 		x = random.nextIntWithinInterval(0, width-1) ;
 		y = random.nextIntWithinInterval(0, height - 1);
 		// pick a direction, 
-		d = CardinalDirection.East.randomDirection().getDirection() ;
+		dir = CardinalDirection.East.randomDirection(random) ;
 	}
 	/**
 	 * Computes the x coordinate of neighboring (adjacent) cell for internal walls.
@@ -74,7 +74,7 @@ public class Wall {
 	 * @return the x coordinate of adjacent cell
 	 */
 	public int getNeighborX() {
-		return x+d[0] ;
+		return x+dir.dx() ;
 	}
 	/**
 	 * Computes the y coordinate of neighboring (adjacent) cell for internal walls.
@@ -83,7 +83,7 @@ public class Wall {
 	 * @return  the y coordinate of adjacent cell
 	 */
 	public int getNeighborY() {
-		return y+d[1] ;
+		return y+dir.dy() ;
 	}
 	/**
 	 * Provides the direction for the wall with regard to the 
@@ -91,6 +91,6 @@ public class Wall {
 	 * @return the direction of this wall with regard to its cell location
 	 */
 	public CardinalDirection getDirection() {
-		return CardinalDirection.getDirection(d[0], d[1]) ;
+		return dir ;
 	}
 }
@@ -0,0 +1,162 @@
+package falstad;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import falstad.Constants.StateGUI;
+import generation.BSPBuilder;
+import generation.Cells;
+import generation.FlatBSPTree;
+import generation.MazeConfiguration;
+import generation.MazeFactory;
+import generation.StubOrder;
+
+/**
+ * Simple micro benchmark for the FirstPersonDrawer.
+ * This is not a JUnit test case; it is started as a Java application and
+ * prints its measurements to standard output.
+ * It reports the time per frame of the first person view for a maze of a given skill level.
+ * Frames are drawn from random positions of the maze in the four directions, once on a panel
+ * that skips all drawing operations such that the work of the drawer itself is measured,
+ * i.e. the traversal of the BSP tree and the projection of visible segments, 
+ * and once on an offscreen image. The fastest round over all positions counts.
+ * Each maze is drawn with its tree, which is built from one segment per run, and with a tree built
+ * from joined runs, see BSPBuilder.setCoalescing, and the panel that skips drawing counts how many segments 
+ * make it to the screen and how many polygons they take per frame.
+ * It runs headless, e.g. with -Djava.awt.headless=true.
+ *
+ */
+public class DrawerBenchmark {
+
+	static final int POSITIONS = 200 ; // number of positions per maze, each is drawn in four directions
+	static final int WARMUP = 10 ; // number of rounds over all positions that are not measured
+	static final int ROUNDS = 20 ; // number of rounds over all positions that are measured, the fastest one is reported
+
+	public static void main(String[] args) {
+		for (int skill : new int[] { 3, 9, 12, 15 }) {
+			MazeConfiguration maze = createMaze(skill) ;
+			FlatBSPTree coalesced = createCoalescedTree(maze) ;
+			benchmarkFrames(maze, maze.getBSPTree(), "runs, skill " + skill, new SkippingPanel()) ;
+			benchmarkFrames(maze, coalesced, "coalesced, skill " + skill, new SkippingPanel()) ;
+			benchmarkFrames(maze, maze.getBSPTree(), "runs, skill " + skill, new ImagePanel()) ;
+			benchmarkFrames(maze, coalesced, "coalesced, skill " + skill, new ImagePanel()) ;
+		}
+	}
+
+	/**
+	 * Measures the time per frame for random positions of the given maze drawn with the given tree.
+	 */
+	static void benchmarkFrames(MazeConfiguration maze, FlatBSPTree tree, String name, MazePanel panel) {
+		final int[][] positions = new int[POSITIONS][] ;
+		final java.util.Random random = new java.util.Random(maze.getWidth()) ;
+		for (int i = 0; i < POSITIONS; i++)
+			positions[i] = new int[] { random.nextInt(maze.getWidth()), random.nextInt(maze.getHeight()) } ;
+		final FirstPersonDrawer drawer = new FirstPersonDrawer(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
+				Constants.STEP_SIZE, new Cells(maze.getWidth()+1, maze.getHeight()+1), tree) ;
+		final RangeSet rset = new RangeSet() ;
+		long nanos = Long.MAX_VALUE ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			if (panel instanceof SkippingPanel)
+				((SkippingPanel)panel).reset() ;
+			final long start = System.nanoTime() ;
+			for (int[] position : positions) {
+				for (int angle = 0; angle < 360; angle += 90) {
+					final int view_dx = (int) (Math.cos(Math.toRadians(angle))*(1<<16)) ;
+					final int view_dy = (int) (Math.sin(Math.toRadians(angle))*(1<<16)) ;
+					drawer.redraw(panel, StateGUI.STATE_PLAY, position[0], position[1], view_dx, view_dy, 0, 0, rset, angle) ;
+				}
+			}
+			if (round >= WARMUP)
+				nanos = Math.min(nanos, System.nanoTime() - start) ;
+		}
+		System.out.printf("%-40s %10.1f us per frame%s%n", name + ", " + panel, nanos / 1e3 / (POSITIONS * 4), 
+				(panel instanceof SkippingPanel) ? ((SkippingPanel)panel).getCounts(POSITIONS * 4) : "") ;
+	}
+	/**
+	 * Builds the tree of the given maze again from joined runs.
+	 */
+	static FlatBSPTree createCoalescedTree(MazeConfiguration maze) {
+		final BSPBuilder builder = new BSPBuilder(null, maze.getMazedists(), maze.getMazecells(), maze.getWidth(), maze.getHeight(), 0) ;
+		builder.setCoalescing(true) ;
+		try {
+			return new FlatBSPTree(builder.generateBSPNodes()) ;
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("DrawerBenchmark: interrupted", e) ;
+		}
+	}
+
+	static MazeConfiguration createMaze(int skill) {
+		final MazeConfiguration[] result = new MazeConfiguration[1] ;
+		StubOrder order = new StubOrder() {
+			@Override
+			public void deliver(MazeConfiguration mazeConfig) {
+				result[0] = mazeConfig ;
+			}
+		} ;
+		order.setSkillLevel(skill) ;
+		order.setSeed(skill) ;
+		MazeFactory factory = new MazeFactory() ;
+		factory.order(order) ;
+		factory.waitTillDelivered() ;
+		return result[0] ;
+	}
+
+	/**
+	 * A panel that skips all drawing operations, it only counts segments and polygons.
+	 * The FirstPersonDrawer sets the color once for each segment it draws.
+	 */
+	static class SkippingPanel extends MazePanel {
+		private static final long serialVersionUID = 1L;
+		private long segments ;
+		private long polygons ;
+
+		void reset() {
+			segments = 0 ;
+			polygons = 0 ;
+		}
+		String getCounts(int frames) {
+			return String.format(", %6.1f segments, %6.1f polygons", (double)segments / frames, (double)polygons / frames) ;
+		}
+
+		@Override
+		public void set2DGraphics() {
+		}
+		@Override
+		public void configure2D() {
+		}
+		@Override
+		public void setColor(int color, boolean is2D) {
+			segments++ ;
+		}
+		@Override
+		public void setColor(Constants.Colors color, boolean is2D) {
+		}
+		@Override
+		public void fillRect(int x, int y, int width, int height) {
+		}
+		@Override
+		public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+			polygons++ ;
+		}
+		@Override
+		public String toString() {
+			return "no drawing" ;
+		}
+	}
+	/**
+	 * A panel that draws on an offscreen image.
+	 */
+	static class ImagePanel extends MazePanel {
+		private static final long serialVersionUID = 1L;
+		private final BufferedImage image = new BufferedImage(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB) ;
+
+		@Override
+		public Graphics getBufferGraphics() {
+			return image.getGraphics() ;
+		}
+		@Override
+		public String toString() {
+			return "image" ;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package falstad;
+
+import java.lang.management.ManagementFactory;
+
+import falstad.Robot.Direction;
+import generation.Order.Builder;
+
+/**
+ * Simple micro benchmark for robots and drivers.
+ * This is not a JUnit test case; it is started as a Java application and
+ * prints its measurements to standard output.
+ * It reports the memory that is allocated per sensor call and per step 
+ * of a driver on its way to the exit, a maze is generated without graphics 
+ * with the TestController as in the JUnit tests.
+ *
+ */
+public class RobotBenchmark {
+
+	static final int SENSOR_CALLS = 100000 ; // number of measured calls to distanceToObstacle
+	static final int DRIVES = 10 ; // number of mazes a wizard drives through
+
+	public static void main(String[] args) {
+		benchmarkDistanceToObstacle() ;
+		benchmarkWizard() ;
+	}
+
+	/**
+	 * Measures bytes allocated per call of BasicRobot.distanceToObstacle 
+	 * averaged over all four directions.
+	 */
+	static void benchmarkDistanceToObstacle() {
+		TestController controller = createController() ;
+		BasicRobot robot = (BasicRobot) controller.getDriver().getRobot() ;
+		Direction[] directions = Direction.values() ;
+		long sink = 0 ; // prevents dead code elimination
+		// warm up the JIT compiler
+		for (int i = 0; i < SENSOR_CALLS; i++)
+			sink += robot.distanceToObstacle(directions[i & 3]) ;
+		long allocated = getAllocatedBytes() ;
+		long start = System.nanoTime() ;
+		for (int i = 0; i < SENSOR_CALLS; i++)
+			sink += robot.distanceToObstacle(directions[i & 3]) ;
+		long stop = System.nanoTime() ;
+		long bytes = getAllocatedBytes() - allocated ;
+		System.out.printf("%-40s %10.1f bytes per call %10.1f ns per call%n", "BasicRobot.distanceToObstacle", 
+				(double)bytes / SENSOR_CALLS, (double)(stop - start) / SENSOR_CALLS) ;
+		if (sink == 42)
+			System.out.println() ;
+	}
+	/**
+	 * Measures bytes allocated per step of the Wizard driver through a skill level 3 maze.
+	 */
+	static void benchmarkWizard() {
+		long bytes = 0 ;
+		long steps = 0 ;
+		for (int i = 0; i < DRIVES; i++) {
+			TestController controller = createController() ;
+			Wizard wizard = (Wizard) controller.getDriver() ;
+			long allocated = getAllocatedBytes() ;
+			try {
+				wizard.drive2Exit() ;
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			bytes += getAllocatedBytes() - allocated ;
+			steps += wizard.getPathLength() ;
+		}
+		System.out.printf("%-40s %10.1f bytes per step%n", "Wizard.drive2Exit", (double)bytes / steps) ;
+	}
+	/**
+	 * Creates a controller with a Wizard driver and a BasicRobot on a skill level 3 maze.
+	 */
+	static TestController createController() {
+		TestController controller = new TestController() ;
+		controller.setDriver("Wizard") ;
+		controller.setSkillLevel(3) ;
+		controller.setBuilder(Builder.DFS) ;
+		controller.generate() ;
+		return controller ;
+	}
+	/**
+	 * Gives the number of bytes allocated by the current thread so far if the JVM supports it, 0 otherwise.
+	 */
+	static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean() ;
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId()) ;
+		return 0 ;
+	}
+}
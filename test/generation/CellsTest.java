@@ -140,6 +140,50 @@ public class CellsTest{
 		assertFalse(cells1.equals(cells)) ;
 	}
 
+	/**
+	 * Test case: Check if copy constructor delivers an independent copy
+	 * <p>
+	 * Method under test: Cells(Cells input), equals(Object other)
+	 * <p>
+	 * Correct behavior: the copy is equal to the original and
+	 * changes to the copy do not affect the original.
+	 */
+	@Test
+	public final void testCellsCopyConstructor() {
+		cells.initialize();
+		Cells copy = new Cells(cells) ;
+		assertTrue(copy.equals(cells)) ;
+		assertEquals(width, copy.getWidth()) ;
+		assertEquals(height, copy.getHeight()) ;
+		copy.deleteWall(new Wall(1, 1, CardinalDirection.East));
+		assertFalse(copy.equals(cells)) ;
+		assertTrue(cells.hasWall(1, 1, CardinalDirection.East)) ;
+	}
+
+	/**
+	 * Test case: Correctness of the scans along rows and columns
+	 * <p>
+	 * Method under test: nextWallInRow(int x, int y, CardinalDirection dir), 
+	 * nextWallInColumn(int x, int y, CardinalDirection dir)
+	 * <p>
+	 * Correct behavior: the scan delivers the first position at or after 
+	 * the given one with a wall in the given direction, width or height if there is none.
+	 */
+	@Test
+	public final void testNextWallInRowAndColumn() {
+		cells.initialize();
+		assertEquals(0, cells.nextWallInRow(0, 1, CardinalDirection.North)) ;
+		cells.deleteWall(new Wall(0, 1, CardinalDirection.North));
+		cells.deleteWall(new Wall(1, 1, CardinalDirection.North));
+		assertEquals(2, cells.nextWallInRow(0, 1, CardinalDirection.North)) ;
+		assertEquals(width, cells.nextWallInRow(width, 1, CardinalDirection.North)) ;
+		cells.deleteWall(new Wall(2, 1, CardinalDirection.West));
+		cells.deleteWall(new Wall(2, 2, CardinalDirection.West));
+		cells.deleteWall(new Wall(2, 3, CardinalDirection.West));
+		assertEquals(0, cells.nextWallInColumn(2, 0, CardinalDirection.West)) ;
+		assertEquals(height, cells.nextWallInColumn(2, 1, CardinalDirection.West)) ;
+	}
+
 	/** 
 	 * Test case: Correctness of the canGo method 
 	 * <p>
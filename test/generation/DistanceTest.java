@@ -0,0 +1,220 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the computation of distance values in the Distance class.
+ *
+ * @author pk
+ *
+ */
+public class DistanceTest {
+
+	private MazeBuilder builder ; // provides a maze with pathways but without distances
+	private Cells cells ;
+	private Distance dists ;
+	private int width ;
+	private int height ;
+
+	/**
+	 * Creates a maze of skill level 5 with rooms, i.e. a maze with loops,
+	 * without computing any distances.
+	 */
+	@Before
+	public void setUp() {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(5);
+		builder = new MazeBuilder() ;
+		builder.buildOrder(order);
+		builder.cells.initialize();
+		builder.generateRooms() ;
+		builder.generatePathways();
+		cells = builder.cells ;
+		width = builder.width ;
+		height = builder.height ;
+		dists = new Distance(width, height) ;
+	}
+
+	/**
+	 * Test case: distances are minimal for all positions
+	 * <p>
+	 * Method under test: computeDistances(Cells cells)
+	 * <p>
+	 * Correct behavior: the exit position has distance 1,
+	 * every other position has a reachable neighbor whose distance is exactly one less
+	 * and no reachable neighbor with a distance that is more than one less.
+	 */
+	@Test
+	public final void testComputeDistancesIsMinimal() {
+		int[] exit = dists.computeDistances(cells) ;
+		assertEquals(1, dists.getDistance(exit[0], exit[1])) ;
+		assertDistancesAreMinimal() ;
+	}
+
+	/**
+	 * Test case: distances in a corridor
+	 * <p>
+	 * Method under test: computeDistances(Cells cells), getStartPosition(), getMaxDistance()
+	 * <p>
+	 * Correct behavior: in a 5x1 corridor the exit is at one end, 
+	 * distances grow by one per cell towards the other end which is the start position.
+	 */
+	@Test
+	public final void testComputeDistancesInCorridor() {
+		cells = new Cells(5, 1) ;
+		cells.initialize();
+		for (int x = 0; x < 4; x++)
+			cells.deleteWall(new Wall(x, 0, CardinalDirection.East));
+		dists = new Distance(5, 1) ;
+		int[] exit = dists.computeDistances(cells) ;
+		assertTrue(exit[0] == 0 || exit[0] == 4) ;
+		for (int x = 0; x < 5; x++)
+			assertEquals(Math.abs(x-exit[0])+1, dists.getDistance(x, 0)) ;
+		assertEquals(4-exit[0], dists.getStartPosition()[0]) ;
+		assertEquals(5, dists.getMaxDistance()) ;
+	}
+
+	/**
+	 * Test case: parallel and sequential search give the same distances
+	 * <p>
+	 * Method under test: computeDistances(Cells cells), setParallelThreshold(int threshold)
+	 * <p>
+	 * Correct behavior: for the generated maze and for a large open area with wide frontiers 
+	 * both searches agree on the exit and on all distance values.
+	 */
+	@Test
+	public final void testParallelComputationMatchesSequential() {
+		assertParallelMatchesSequential() ;
+		// an open area without any internal walls has frontiers large enough to be split
+		width = 400 ;
+		height = 300 ;
+		cells = new Cells(width, height) ;
+		cells.initialize();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (x+1 < width)
+					cells.deleteWall(new Wall(x, y, CardinalDirection.East));
+				if (y+1 < height)
+					cells.deleteWall(new Wall(x, y, CardinalDirection.South));
+			}
+		}
+		assertParallelMatchesSequential() ;
+	}
+
+	/**
+	 * Test case: distances after a sequence of random wall changes
+	 * <p>
+	 * Method under test: MazeContainer.addWall(int x, int y, CardinalDirection dir), 
+	 * MazeContainer.deleteWall(int x, int y, CardinalDirection dir)
+	 * <p>
+	 * Correct behavior: after each change the incrementally maintained distances
+	 * are minimal and match a full recomputation from scratch.
+	 */
+	@Test
+	public final void testIncrementalUpdatesMatchRecomputation() {
+		dists.computeDistances(cells) ;
+		MazeContainer maze = new MazeContainer() ;
+		maze.setWidth(width);
+		maze.setHeight(height);
+		maze.setMazecells(cells);
+		maze.setMazedists(dists);
+		Random random = new Random(4711) ;
+		CardinalDirection[] dirs = CardinalDirection.values() ;
+		for (int i = 0; i < 200; i++) {
+			int x = random.nextInt(width) ;
+			int y = random.nextInt(height) ;
+			CardinalDirection cd = dirs[random.nextInt(dirs.length)] ;
+			if (random.nextBoolean())
+				maze.deleteWall(x, y, cd) ;
+			else if (!cells.hasWall(x, y, cd))
+				maze.addWall(x, y, cd) ;
+			assertDistancesAreMinimal() ;
+			int[][] expected = computeReferenceDistances(dists.getExitPosition()) ;
+			for (int px = 0; px < width; px++)
+				for (int py = 0; py < height; py++)
+					assertEquals("after change " + i + " at " + px + "," + py, 
+							expected[px][py], dists.getDistance(px, py)) ;
+		}
+	}
+
+	/**
+	 * Computes distances for the current cells sequentially and in parallel and compares results
+	 */
+	private void assertParallelMatchesSequential() {
+		Distance sequential = new Distance(width, height) ;
+		sequential.setParallelThreshold(Integer.MAX_VALUE);
+		assertFalse(sequential.isParallel()) ;
+		Distance parallel = new Distance(width, height) ;
+		parallel.setParallelThreshold(0);
+		assertTrue(parallel.isParallel()) ;
+		assertArrayEquals(sequential.computeDistances(cells), parallel.computeDistances(cells)) ;
+		for (int x = 0; x < width; x++)
+			assertArrayEquals(sequential.getDists()[x], parallel.getDists()[x]) ;
+	}
+
+	/**
+	 * Computes distances to the given exit from scratch with a plain breadth first search
+	 * that is independent of the implementation in Distance.
+	 */
+	private int[][] computeReferenceDistances(int[] exit) {
+		int[][] result = new int[width][height] ;
+		for (int[] column : result)
+			Arrays.fill(column, Distance.INFINITY) ;
+		ArrayDeque<int[]> queue = new ArrayDeque<int[]>() ;
+		result[exit[0]][exit[1]] = 1 ;
+		queue.add(exit) ;
+		while (!queue.isEmpty()) {
+			int[] p = queue.poll() ;
+			for (CardinalDirection cd : CardinalDirection.values()) {
+				int[] dir = cd.getDirection() ;
+				int nx = p[0] + dir[0] ;
+				int ny = p[1] + dir[1] ;
+				if (cells.hasWall(p[0], p[1], cd) || nx < 0 || nx >= width || ny < 0 || ny >= height)
+					continue ;
+				if (result[nx][ny] == Distance.INFINITY) {
+					result[nx][ny] = result[p[0]][p[1]] + 1 ;
+					queue.add(new int[] {nx, ny}) ;
+				}
+			}
+		}
+		return result ;
+	}
+
+	/**
+	 * Checks that each position except the exit has a neighbor that is one step closer
+	 * and that no open neighbor is more than one step closer.
+	 * Positions that are cut off from the exit have infinite distance 
+	 * and so do all their open neighbors.
+	 */
+	private void assertDistancesAreMinimal() {
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int d = dists.getDistance(x, y) ;
+				boolean hasCloserNeighbor = (d == 1 || d == Distance.INFINITY) ;
+				for (CardinalDirection cd : CardinalDirection.values()) {
+					int[] dir = cd.getDirection() ;
+					int nx = x + dir[0] ;
+					int ny = y + dir[1] ;
+					if (cells.hasWall(x, y, cd) || nx < 0 || nx >= width || ny < 0 || ny >= height)
+						continue ;
+					int dn = dists.getDistance(nx, ny) ;
+					if (d == Distance.INFINITY || dn == Distance.INFINITY) {
+						assertEquals("cut off area leaks at " + x + "," + y, d, dn) ;
+						continue ;
+					}
+					assertTrue("distance not minimal at " + x + "," + y, dn >= d-1) ;
+					if (dn == d-1)
+						hasCloserNeighbor = true ;
+				}
+				assertTrue("no closer neighbor at " + x + "," + y, hasCloserNeighbor) ;
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the FlatBSPTree class.
+ *
+ */
+public class FlatBSPTreeTest {
+
+	/**
+	 * Test case: a small tree is laid out in depth-first order
+	 * <p>
+	 * Method under test: FlatBSPTree(BSPNode root), isLeaf(int n), getLeftBranch(int n), getRightBranch(int n)
+	 * <p>
+	 * Correct behavior: the root is node 0, the left branch of a node follows it directly,
+	 * the right branch follows the whole left subtree, leaves keep their range of rows.
+	 */
+	@Test
+	public final void testLayout() {
+		SegmentTable segments = createSegments() ;
+		// root splits into a branch with two leaves on the left and a single leaf on the right
+		BSPNode left = new BSPBranch(1, 0, 0, 1, new BSPLeaf(segments, 0, 1), new BSPLeaf(segments, 1, 2)) ;
+		BSPNode root = new BSPBranch(0, 2, 4, 0, left, new BSPLeaf(segments, 2, 4)) ;
+		FlatBSPTree tree = new FlatBSPTree(root) ;
+		assertEquals(5, tree.getNodeCount()) ;
+		assertEquals(3, tree.getDepth()) ;
+		assertSame(segments, tree.getSegments()) ;
+		final int n = FlatBSPTree.ROOT ;
+		assertFalse(tree.isLeaf(n)) ;
+		assertEquals(1, tree.getLeftBranch(n)) ;
+		assertEquals(4, tree.getRightBranch(n)) ;
+		assertEquals(2, tree.getY(n)) ;
+		assertEquals(4, tree.getDx(n)) ;
+		assertFalse(tree.isLeaf(1)) ;
+		assertEquals(2, tree.getLeftBranch(1)) ;
+		assertEquals(3, tree.getRightBranch(1)) ;
+		for (int leaf = 2; leaf <= 4; leaf++)
+			assertTrue(tree.isLeaf(leaf)) ;
+		assertEquals(2, tree.getFrom(4)) ;
+		assertEquals(4, tree.getTo(4)) ;
+		assertEquals(root.getLowerBoundX(), tree.getLowerBoundX(n)) ;
+		assertEquals(root.getUpperBoundY(), tree.getUpperBoundY(n)) ;
+		assertEquals(left.getUpperBoundX(), tree.getUpperBoundX(1)) ;
+	}
+	/**
+	 * Test case: the tree of a maze converts back to the tree it was compiled from
+	 * <p>
+	 * Method under test: toNodes()
+	 * <p>
+	 * Correct behavior: partitions, bounds and ranges of all nodes are the same 
+	 * and the leaves share the segment table of the original tree.
+	 */
+	@Test
+	public final void testToNodes() {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(5) ;
+		order.setSeed(13) ;
+		MazeBuilder builder = new MazeBuilder() ;
+		builder.buildOrder(order) ;
+		builder.run() ;
+		MazeConfiguration maze = order.getMazeConfig() ;
+		BSPNode root = maze.getRootnode() ;
+		FlatBSPTree tree = new FlatBSPTree(root) ;
+		assertEquals(maze.getBSPTree().getNodeCount(), tree.getNodeCount()) ;
+		assertSame(maze.getBSPTree().getSegments(), tree.getSegments()) ;
+		assertSameTree(root, tree.toNodes()) ;
+	}
+
+	private void assertSameTree(BSPNode expected, BSPNode actual) {
+		assertEquals(expected.isIsleaf(), actual.isIsleaf()) ;
+		assertEquals(expected.getLowerBoundX(), actual.getLowerBoundX()) ;
+		assertEquals(expected.getLowerBoundY(), actual.getLowerBoundY()) ;
+		assertEquals(expected.getUpperBoundX(), actual.getUpperBoundX()) ;
+		assertEquals(expected.getUpperBoundY(), actual.getUpperBoundY()) ;
+		if (expected.isIsleaf()) {
+			assertSame(((BSPLeaf)expected).getSegments(), ((BSPLeaf)actual).getSegments()) ;
+			assertEquals(((BSPLeaf)expected).getFrom(), ((BSPLeaf)actual).getFrom()) ;
+			assertEquals(((BSPLeaf)expected).getTo(), ((BSPLeaf)actual).getTo()) ;
+			return ;
+		}
+		BSPBranch e = (BSPBranch)expected ;
+		BSPBranch a = (BSPBranch)actual ;
+		assertEquals(e.getX(), a.getX()) ;
+		assertEquals(e.getY(), a.getY()) ;
+		assertEquals(e.getDx(), a.getDx()) ;
+		assertEquals(e.getDy(), a.getDy()) ;
+		assertSameTree(e.getLeftBranch(), a.getLeftBranch()) ;
+		assertSameTree(e.getRightBranch(), a.getRightBranch()) ;
+	}
+	/**
+	 * Creates four segments, one per leaf of the small tree and two for the last leaf.
+	 */
+	private SegmentTable createSegments() {
+		SegmentTable result = new SegmentTable(4) ;
+		result.add(0, 0, 0, 1, 0, 0) ;
+		result.add(2, 0, 0, 1, 0, 0) ;
+		result.add(0, 3, 4, 0, 0, 0) ;
+		result.add(4, 4, -4, 0, 0, 0) ;
+		return result ;
+	}
+}
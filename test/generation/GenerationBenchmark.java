@@ -0,0 +1,802 @@
+package generation;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.Random;
+
+/**
+ * Simple micro benchmarks for the maze generation package.
+ * This is not a JUnit test case; it is started as a Java application and
+ * prints its measurements to standard output.
+ * The first argument selects the benchmark, e.g. "cells", "distance", "dfs", "builders", "prim", "factory", "cancel", "pipeline", "tiled", "rooms", "alloc", "arena", "bsp", "bspparallel", "segments", "tree" or "coalesce".
+ * Each benchmark is run a few times as a warm up for the JIT compiler before
+ * measurements are taken.
+ *
+ * @author pk
+ *
+ */
+public class GenerationBenchmark {
+
+	static final int WARMUP = 5 ; // number of rounds that are not measured
+	static final int ROUNDS = 10 ; // number of rounds that are measured
+
+	public static void main(String[] args) {
+		String which = (args.length > 0) ? args[0] : "cells" ;
+		switch (which) {
+		case "cells" :
+			benchmarkCells(300, 240) ;
+			benchmarkCells(2000, 2000) ;
+			break ;
+		case "distance" :
+			// the number of worker threads can be set with 
+			// -Djava.util.concurrent.ForkJoinPool.common.parallelism=n
+			System.out.println("Processors: " + Runtime.getRuntime().availableProcessors() + 
+					", fork/join parallelism: " + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism()) ;
+			benchmarkDistance(1024, 1024) ;
+			benchmarkDistance(4096, 4096) ;
+			break ;
+		case "dfs" :
+			benchmarkPathways(new MazeBuilder(), 300, 240) ;
+			benchmarkPathways(new MazeBuilder(), 2000, 2000) ;
+			break ;
+		case "builders" :
+			// skill 15 and a size beyond the skill levels
+			for (int size : new int[] { 300, 1000 }) {
+				int height = (300 == size) ? 240 : size ;
+				benchmarkPathways(new MazeBuilder(), size, height) ;
+				benchmarkPathways(new MazeBuilderPrim(), size, height) ;
+				benchmarkPathways(new MazeBuilderKruskal(), size, height) ;
+				benchmarkPathways(new MazeBuilderEller(), size, height) ;
+			}
+			// tall and narrow, Eller's algorithm only keeps a single row of labels
+			benchmarkPathways(new MazeBuilder(), 16, 1000000) ;
+			benchmarkPathways(new MazeBuilderEller(), 16, 1000000) ;
+			break ;
+		case "prim" :
+			// frontier in an ArrayList versus packed integers, skill 9 and skill 15
+			for (int skill : new int[] { 9, 15 }) {
+				int width = falstad.Constants.SKILL_X[skill] ;
+				int height = falstad.Constants.SKILL_Y[skill] ;
+				benchmarkPathways(new ArrayListPrim(), width, height) ;
+				benchmarkPathways(new MazeBuilderPrim(), width, height) ;
+			}
+			benchmarkPathways(new ArrayListPrim(), 1000, 1000) ;
+			benchmarkPathways(new MazeBuilderPrim(), 1000, 1000) ;
+			break ;
+		case "factory" :
+			// many orders at once, the pool size limits how many run at the same time
+			System.out.println("Processors: " + Runtime.getRuntime().availableProcessors()) ;
+			benchmarkFactory(1, 32, 5) ;
+			benchmarkFactory(Runtime.getRuntime().availableProcessors(), 32, 5) ;
+			benchmarkFactory(4 * Runtime.getRuntime().availableProcessors(), 32, 5) ;
+			break ;
+		case "cancel" :
+			// end-to-end time per maze and time from cancel until the worker thread is free again
+			for (int skill : new int[] { 5, 10, 15 })
+				benchmarkGeneration(skill) ;
+			benchmarkCancel(10, 20) ;
+			benchmarkCancel(15, 20) ;
+			break ;
+		case "pipeline" :
+			// distances computed after or at the same time as the BSP tree
+			System.out.println("Processors: " + Runtime.getRuntime().availableProcessors() + 
+					", fork/join parallelism: " + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism()) ;
+			benchmarkPipeline(10) ;
+			benchmarkPipeline(15) ;
+			break ;
+		case "tiled" :
+			// 16 million cells, single threaded Kruskal versus tiles on 1,2,4,... workers
+			// allocations of the workers do not count for the KB column
+			System.out.println("Processors: " + Runtime.getRuntime().availableProcessors()) ;
+			benchmarkPathways(new MazeBuilderKruskal(), 4000, 4000) ;
+			for (int workers = 1; workers <= Math.max(2, Runtime.getRuntime().availableProcessors()); workers *= 2) {
+				java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(workers) ;
+				MazeBuilder builder = new MazeBuilderTiled(false, pool) ;
+				System.out.print(workers + " workers: ") ;
+				benchmarkPathways(builder, 4000, 4000) ;
+				pool.shutdown() ;
+			}
+			break ;
+		case "rooms" :
+			for (int skill : new int[] { 1, 9, 15 })
+				benchmarkRooms(skill) ;
+			break ;
+		case "alloc" :
+			benchmarkAllocation(Order.Builder.DFS, 5) ;
+			benchmarkAllocation(Order.Builder.DFS, 15) ;
+			benchmarkAllocation(Order.Builder.Prim, 5) ;
+			benchmarkAllocation(Order.Builder.Prim, 15) ;
+			break ;
+		case "arena" :
+			for (Order.Builder algorithm : new Order.Builder[] { Order.Builder.DFS, Order.Builder.Prim, Order.Builder.Kruskal, Order.Builder.Eller }) {
+				for (int skill : new int[] { 9, 15 }) {
+					benchmarkArena(algorithm, skill, false) ;
+					benchmarkArena(algorithm, skill, true) ;
+				}
+			}
+			break ;
+		case "bsp" :
+			for (int skill = 0; skill < falstad.Constants.SKILL_X.length; skill++)
+				benchmarkBSP(skill, Integer.MAX_VALUE) ;
+			break ;
+		case "bspparallel" :
+			// the number of worker threads can be set with 
+			// -Djava.util.concurrent.ForkJoinPool.common.parallelism=n
+			System.out.println("Processors: " + Runtime.getRuntime().availableProcessors() + 
+					", fork/join parallelism: " + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism()) ;
+			for (int skill = 12; skill < falstad.Constants.SKILL_X.length; skill++) {
+				benchmarkBSP(skill, Integer.MAX_VALUE) ;
+				benchmarkBSP(skill, BSPBuilder.PARALLEL_THRESHOLD) ;
+			}
+			break ;
+		case "segments" :
+			for (int skill : new int[] { 9, 12, 15 })
+				benchmarkSegments(skill) ;
+			break ;
+		case "tree" :
+			for (int skill : new int[] { 9, 12, 15 })
+				benchmarkTree(skill) ;
+			break ;
+		case "coalesce" :
+			// one segment per run versus adjacent runs joined before the tree is built
+			for (int skill : new int[] { 9, 12, 15 }) {
+				benchmarkCoalescing(skill, false) ;
+				benchmarkCoalescing(skill, true) ;
+			}
+			break ;
+		default:
+			System.out.println("GenerationBenchmark: unknown benchmark " + which) ;
+		}
+	}
+
+	/////////////////////// Cells ////////////////////////////////////////////
+	/**
+	 * Measures throughput of hasWall and canGo queries on a width x height maze
+	 * where walls have been removed along a diagonal pattern.
+	 */
+	static void benchmarkCells(int width, int height) {
+		Cells cells = new Cells(width, height) ;
+		cells.initialize();
+		Wall wall = new Wall(0, 0, CardinalDirection.East) ;
+		for (int x = 0; x < width-1; x++) {
+			for (int y = 0; y < height-1; y++) {
+				wall.setWall(x, y, ((x+y) % 2 == 0) ? CardinalDirection.East : CardinalDirection.South);
+				cells.deleteWall(wall);
+			}
+		}
+		long queries = 0 ;
+		long sink = 0 ; // prevents dead code elimination
+		long hasWallNanos = 0 ;
+		long canGoNanos = 0 ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			long start = System.nanoTime() ;
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					for (CardinalDirection cd : CardinalDirection.values()) {
+						if (cells.hasWall(x, y, cd))
+							sink++ ;
+					}
+				}
+			}
+			long middle = System.nanoTime() ;
+			for (int x = 1; x < width-1; x++) {
+				for (int y = 1; y < height-1; y++) {
+					wall.setWall(x, y, CardinalDirection.East);
+					if (cells.canGo(wall))
+						sink++ ;
+				}
+			}
+			long stop = System.nanoTime() ;
+			if (round >= WARMUP) {
+				hasWallNanos += middle - start ;
+				canGoNanos += stop - middle ;
+				queries++ ;
+			}
+		}
+		long hasWallCalls = queries * width * height * 4 ;
+		long canGoCalls = queries * (width-2) * (height-2) ;
+		report("Cells.hasWall " + width + "x" + height, hasWallCalls, hasWallNanos) ;
+		report("Cells.canGo   " + width + "x" + height, canGoCalls, canGoNanos) ;
+		if (sink == 42)
+			System.out.println() ;
+	}
+
+	/////////////////////// Distance /////////////////////////////////////////
+	/**
+	 * Measures computeDistances on a width x height maze with the sequential 
+	 * and the parallel breadth first search.
+	 */
+	static void benchmarkDistance(int width, int height) {
+		Cells cells = createLargeMaze(width, height, 4711) ;
+		Distance sequential = new Distance(width, height) ;
+		sequential.setParallelThreshold(Integer.MAX_VALUE);
+		Distance parallel = new Distance(width, height) ;
+		parallel.setParallelThreshold(0);
+		long sequentialNanos = 0 ;
+		long parallelNanos = 0 ;
+		int rounds = 0 ;
+		// a single run takes seconds for the largest sizes, so fewer rounds suffice
+		for (int round = 0; round < 2 + ROUNDS/2; round++) {
+			long start = System.nanoTime() ;
+			sequential.computeDistances(cells) ;
+			long middle = System.nanoTime() ;
+			parallel.computeDistances(cells) ;
+			long stop = System.nanoTime() ;
+			if (round >= 2) {
+				sequentialNanos += middle - start ;
+				parallelNanos += stop - middle ;
+				rounds++ ;
+			}
+		}
+		if (sequential.getMaxDistance() != parallel.getMaxDistance())
+			System.out.println("GenerationBenchmark: results differ") ;
+		System.out.printf("%-40s %10.1f ms per run%n", "Distance sequential " + width + "x" + height, sequentialNanos / 1e6 / rounds) ;
+		System.out.printf("%-40s %10.1f ms per run%n", "Distance parallel   " + width + "x" + height, parallelNanos / 1e6 / rounds) ;
+		System.out.printf("%-40s %10.2f%n", "speedup", (double)sequentialNanos / parallelNanos) ;
+	}
+	/**
+	 * Creates a maze without building it through the MazeBuilder, which is too slow for 
+	 * very large sizes. Each cell opens its wall to the north or to the west at random, 
+	 * which results in a spanning tree, then some more walls are deleted to create loops.
+	 */
+	static Cells createLargeMaze(int width, int height, long seed) {
+		Random random = new Random(seed) ;
+		Cells cells = new Cells(width, height) ;
+		cells.initialize();
+		Wall wall = new Wall(0, 0, CardinalDirection.North) ;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				boolean north = (y > 0) && (x == 0 || random.nextBoolean()) ;
+				if (north || x > 0) {
+					wall.setWall(x, y, north ? CardinalDirection.North : CardinalDirection.West);
+					cells.deleteWall(wall);
+				}
+				if (x > 0 && y > 0 && random.nextInt(10) == 0) {
+					wall.setWall(x, y, north ? CardinalDirection.West : CardinalDirection.North);
+					cells.deleteWall(wall);
+				}
+			}
+		}
+		return cells ;
+	}
+
+	/////////////////////// MazeBuilder ////////////////////////////////////
+	/**
+	 * Measures time and allocated memory of generatePathways for the given builder 
+	 * on a width x height maze without rooms.
+	 */
+	static void benchmarkPathways(MazeBuilder builder, int width, int height) {
+		builder.width = width ;
+		builder.height = height ;
+		long nanos = 0 ;
+		long bytes = 0 ;
+		int rounds = 0 ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			builder.cells = new Cells(width, height) ;
+			builder.cells.initialize();
+			long allocated = getAllocatedBytes() ;
+			long start = System.nanoTime() ;
+			builder.generatePathways();
+			long stop = System.nanoTime() ;
+			if (round >= WARMUP) {
+				nanos += stop - start ;
+				bytes += getAllocatedBytes() - allocated ;
+				rounds++ ;
+			}
+		}
+		System.out.printf("%-40s %10.1f ms per run %10.1f KB allocated per run%n", 
+				builder.getClass().getSimpleName() + " " + width + "x" + height, nanos / 1e6 / rounds, bytes / 1024.0 / rounds) ;
+	}
+	/**
+	 * Prim's algorithm with the frontier in an ArrayList of Wall objects 
+	 * and removal at a random index, which shifts all following entries.
+	 * This is how MazeBuilderPrim worked before it moved to packed integers, 
+	 * it is kept here as a baseline for comparison.
+	 */
+	static class ArrayListPrim extends MazeBuilder {
+		@Override
+		protected void generatePathways() {
+			int x = random.nextIntWithinInterval(0, width-1);
+			int y = random.nextIntWithinInterval(0, height-1);
+			final ArrayList<Wall> candidates = new ArrayList<Wall>();
+			updateListOfWalls(x, y, candidates);
+			while(!candidates.isEmpty()){
+				Wall curWall = candidates.remove(random.nextIntWithinInterval(0, candidates.size()-1));
+				if (cells.canGo(curWall)) {
+					cells.deleteWall(curWall);
+					x = curWall.getNeighborX();
+					y = curWall.getNeighborY();
+					cells.setCellAsVisited(x, y);
+					updateListOfWalls(x, y, candidates);
+				}
+			}
+		}
+		private void updateListOfWalls(int x, int y, ArrayList<Wall> walls) {
+			for (CardinalDirection cd : CardinalDirection.values()) {
+				if (cells.canGo(x, y, cd))
+					walls.add(new Wall(x, y, cd));
+			}
+		}
+	}
+	/**
+	 * Measures the memory allocated to generate a maze of the given skill level, 
+	 * i.e. rooms, pathways and distances, without the BSP tree.
+	 */
+	static void benchmarkAllocation(Order.Builder algorithm, int skill) {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(skill);
+		MazeBuilder builder = (Order.Builder.Prim == algorithm) ? new MazeBuilderPrim() : new MazeBuilder() ;
+		long bytes = 0 ;
+		int rounds = 0 ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			builder.buildOrder(order);
+			long allocated = getAllocatedBytes() ;
+			builder.cells.initialize();
+			builder.generateRooms();
+			builder.generate();
+			if (round >= WARMUP) {
+				bytes += getAllocatedBytes() - allocated ;
+				rounds++ ;
+			}
+		}
+		System.out.printf("%-40s %10.1f KB allocated per maze%n", 
+				"generate " + algorithm + " skill " + skill, bytes / 1024.0 / rounds) ;
+	}
+	/**
+	 * Measures time and memory allocated per maze for a series of complete builds of the same size,
+	 * with and without arena mode where each maze is recycled once it is built.
+	 * Builds run on the current thread without pipelining, so all allocations are counted.
+	 */
+	static void benchmarkArena(Order.Builder algorithm, int skill, boolean arenaMode) {
+		MazeFactory factory = new MazeFactory() ;
+		factory.setArenaMode(arenaMode) ;
+		long nanos = 0 ;
+		long bytes = 0 ;
+		int rounds = 0 ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			StubOrder order = new StubOrder() ;
+			order.setSkillLevel(skill) ;
+			order.setBuilder(algorithm) ;
+			long allocated = getAllocatedBytes() ;
+			long start = System.nanoTime() ;
+			MazeBuilder builder = factory.prepareBuilder(order) ;
+			builder.setPipelined(false) ;
+			try {
+				factory.recycle(factory.build(builder)) ;
+			} catch (InterruptedException e) {
+				return ;
+			}
+			long stop = System.nanoTime() ;
+			if (round >= WARMUP) {
+				nanos += stop - start ;
+				bytes += getAllocatedBytes() - allocated ;
+				rounds++ ;
+			}
+		}
+		System.out.printf("%-40s %10.1f ms per maze %10.1f KB allocated per maze%n", 
+				algorithm + " skill " + skill + (arenaMode ? " arena" : ""), nanos / 1e6 / rounds, bytes / 1024.0 / rounds) ;
+	}
+	/**
+	 * Measures the time to build the BSP tree for mazes of the given skill level
+	 * and the quality of the tree: its depth, number of nodes and how many segments were split.
+	 * Each round uses another maze, values are averages over all measured rounds.
+	 * @param threshold is the minimum number of segments for a parallel build of subtrees
+	 */
+	static void benchmarkBSP(int skill, int threshold) {
+		MazeBuilder builder = new MazeBuilder() ;
+		long nanos = 0 ;
+		long depth = 0 ;
+		long nodes = 0 ;
+		long splits = 0 ;
+		int rounds = 0 ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			StubOrder order = new StubOrder() ;
+			order.setSkillLevel(skill) ;
+			order.setSeed(round) ;
+			builder.buildOrder(order) ;
+			builder.cells.initialize() ;
+			builder.generateRooms() ;
+			builder.generate() ;
+			BSPBuilder bsp = new BSPBuilder(null, builder.dists, builder.cells, builder.width, builder.height, 0) ;
+			bsp.setParallelThreshold(threshold) ;
+			long start = System.nanoTime() ;
+			BSPNode root ;
+			try {
+				root = bsp.generateBSPNodes() ;
+			} catch (InterruptedException e) {
+				return ;
+			}
+			long stop = System.nanoTime() ;
+			if (round >= WARMUP) {
+				nanos += stop - start ;
+				depth += getDepth(root) ;
+				nodes += countNodes(root) ;
+				splits += bsp.getSplitCount() ;
+				rounds++ ;
+			}
+		}
+		System.out.printf("%-30s %10.2f ms per tree, depth %6.1f, %8.1f nodes, %8.1f splits%n", 
+				"BSP skill " + skill + ((threshold < Integer.MAX_VALUE) ? " fork/join" : ""), nanos / 1e6 / rounds, (double)depth / rounds, (double)nodes / rounds, (double)splits / rounds) ;
+	}
+	/**
+	 * Measures the time to build the BSP tree with and without joining adjacent runs 
+	 * and counts the segments on the way: how many the tree is built from, how many of them are split 
+	 * and how many segments the leaves hold in the end, which is what the FirstPersonDrawer draws.
+	 * Each round uses another maze, values are averages over all measured rounds.
+	 */
+	static void benchmarkCoalescing(int skill, boolean coalescing) {
+		MazeBuilder builder = new MazeBuilder() ;
+		long nanos = 0 ;
+		long segments = 0 ;
+		long splits = 0 ;
+		long nodes = 0 ;
+		long leafSegments = 0 ;
+		int rounds = 0 ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			StubOrder order = new StubOrder() ;
+			order.setSkillLevel(skill) ;
+			order.setSeed(round) ;
+			builder.buildOrder(order) ;
+			builder.cells.initialize() ;
+			builder.generateRooms() ;
+			builder.generate() ;
+			BSPBuilder bsp = new BSPBuilder(null, builder.dists, builder.cells, builder.width, builder.height, 0) ;
+			bsp.setCoalescing(coalescing) ;
+			long start = System.nanoTime() ;
+			BSPNode root ;
+			try {
+				root = bsp.generateBSPNodes() ;
+			} catch (InterruptedException e) {
+				return ;
+			}
+			long stop = System.nanoTime() ;
+			if (round >= WARMUP) {
+				final int rows = countSegments(root) ;
+				nanos += stop - start ;
+				// leaves hold the segments the tree is built from, one more for each split and each cut
+				segments += rows - bsp.getSplitCount() - bsp.getCutCount() ;
+				splits += bsp.getSplitCount() ;
+				nodes += countNodes(root) ;
+				leafSegments += rows ;
+				rounds++ ;
+			}
+		}
+		System.out.printf("%-30s %10.2f ms per tree, %9.1f segments, %8.1f splits, %8.1f nodes, %9.1f segments in leaves%n", 
+				"BSP skill " + skill + (coalescing ? " coalesced" : " runs"), nanos / 1e6 / rounds, (double)segments / rounds, 
+				(double)splits / rounds, (double)nodes / rounds, (double)leafSegments / rounds) ;
+	}
+	/**
+	 * Measures the heap that a BSP tree retains per segment, the memory allocated to build it
+	 * and the time to read all segments of all leaves the way the FirstPersonDrawer does.
+	 */
+	static void benchmarkSegments(int skill) {
+		MazeBuilder builder = new MazeBuilder() ;
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(skill) ;
+		order.setSeed(7) ;
+		builder.buildOrder(order) ;
+		builder.cells.initialize() ;
+		builder.generateRooms() ;
+		builder.generate() ;
+		BSPBuilder bsp = new BSPBuilder(null, builder.dists, builder.cells, builder.width, builder.height, 0) ;
+		long used = getUsedMemory() ;
+		long allocated = getAllocatedBytes() ;
+		BSPNode root ;
+		try {
+			root = bsp.generateBSPNodes() ;
+		} catch (InterruptedException e) {
+			return ;
+		}
+		allocated = getAllocatedBytes() - allocated ;
+		used = getUsedMemory() - used ;
+		final int segments = countSegments(root) ;
+		long sum = 0 ;
+		for (int round = 0; round < WARMUP * 10; round++)
+			sum += readSegments(root) ;
+		long start = System.nanoTime() ;
+		for (int round = 0; round < ROUNDS * 10; round++)
+			sum += readSegments(root) ;
+		long nanos = System.nanoTime() - start ;
+		System.out.printf("%-30s %8d segments %8.1f bytes retained per segment %8.1f MB allocated %8.1f us to read all segments %s%n", 
+				"segments skill " + skill, segments, (double)used / segments, allocated / 1e6, nanos / 1e3 / (ROUNDS * 10), (sum == 42) ? " " : "") ;
+	}
+	/**
+	 * Compares the tree of BSPNodes with its flat form: the heap each retains without the segments
+	 * per node and the time for a depth first walk over all nodes that reads bounds and partition lines,
+	 * recursive for the nodes and with an explicit stack for the flat form as in the FirstPersonDrawer.
+	 */
+	static void benchmarkTree(int skill) {
+		MazeBuilder builder = new MazeBuilder() ;
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(skill) ;
+		order.setSeed(7) ;
+		builder.buildOrder(order) ;
+		builder.cells.initialize() ;
+		builder.generateRooms() ;
+		builder.generate() ;
+		BSPBuilder bsp = new BSPBuilder(null, builder.dists, builder.cells, builder.width, builder.height, 0) ;
+		BSPNode root ;
+		try {
+			root = bsp.generateBSPNodes() ;
+		} catch (InterruptedException e) {
+			return ;
+		}
+		long used = getUsedMemory() ;
+		FlatBSPTree tree = new FlatBSPTree(root) ;
+		final long flatBytes = getUsedMemory() - used ;
+		used = getUsedMemory() ;
+		BSPNode copy = tree.toNodes() ;
+		final long nodeBytes = getUsedMemory() - used ;
+		if (copy.isIsleaf())
+			return ;
+		copy = null ;
+		// walks over the tree as it comes from the builder and over its flat form take turns, the fastest round counts
+		final int[] stack = new int[tree.getDepth() + 1] ;
+		long sum = 0 ;
+		long nodeNanos = Long.MAX_VALUE ;
+		long flatNanos = Long.MAX_VALUE ;
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			long start = System.nanoTime() ;
+			for (int i = 0; i < 100; i++)
+				sum += walkNodes(root) ;
+			if (round >= WARMUP)
+				nodeNanos = Math.min(nodeNanos, System.nanoTime() - start) ;
+			start = System.nanoTime() ;
+			for (int i = 0; i < 100; i++)
+				sum += walkTree(tree, stack) ;
+			if (round >= WARMUP)
+				flatNanos = Math.min(flatNanos, System.nanoTime() - start) ;
+		}
+		System.out.printf("%-20s %8d nodes: BSPNodes %8.1f bytes %8.1f us per walk, FlatBSPTree %8.1f bytes %8.1f us per walk %s%n", 
+				"tree skill " + skill, tree.getNodeCount(), (double)nodeBytes / tree.getNodeCount(), nodeNanos / 1e3 / 100,
+				(double)flatBytes / tree.getNodeCount(), flatNanos / 1e3 / 100, (sum == 42) ? " " : "") ;
+	}
+	static long walkNodes(BSPNode node) {
+		long result = node.getLowerBoundX() + node.getLowerBoundY() + node.getUpperBoundX() + node.getUpperBoundY() ;
+		if (node.isIsleaf())
+			return result + ((BSPLeaf)node).getFrom() ;
+		BSPBranch branch = (BSPBranch)node ;
+		result += branch.getX() + branch.getY() + branch.getDx() + branch.getDy() ;
+		return result + walkNodes(branch.getLeftBranch()) + walkNodes(branch.getRightBranch()) ;
+	}
+	static long walkTree(FlatBSPTree tree, int[] stack) {
+		long result = 0 ;
+		int top = 0 ;
+		stack[top++] = FlatBSPTree.ROOT ;
+		while (top > 0) {
+			final int n = stack[--top] ;
+			result += tree.getLowerBoundX(n) + tree.getLowerBoundY(n) + tree.getUpperBoundX(n) + tree.getUpperBoundY(n) ;
+			if (tree.isLeaf(n)) {
+				result += tree.getFrom(n) ;
+				continue ;
+			}
+			result += tree.getX(n) + tree.getY(n) + tree.getDx(n) + tree.getDy(n) ;
+			stack[top++] = tree.getRightBranch(n) ;
+			stack[top++] = tree.getLeftBranch(n) ;
+		}
+		return result ;
+	}
+	static int countSegments(BSPNode node) {
+		if (node.isIsleaf())
+			return ((BSPLeaf)node).getTo() - ((BSPLeaf)node).getFrom() ;
+		BSPBranch branch = (BSPBranch)node ;
+		return countSegments(branch.getLeftBranch()) + countSegments(branch.getRightBranch()) ;
+	}
+	static long readSegments(BSPNode node) {
+		if (node.isIsleaf()) {
+			final BSPLeaf leaf = (BSPLeaf)node ;
+			final SegmentTable segments = leaf.getSegments() ;
+			long result = 0 ;
+			for (int i = leaf.getFrom(); i != leaf.getTo(); i++) {
+				result += segments.getStartPositionX(i) + segments.getStartPositionY(i) + segments.getEndPositionX(i) + segments.getEndPositionY(i) ;
+				result += segments.getColor(i) + (segments.isSeen(i) ? 1 : 0) ;
+			}
+			return result ;
+		}
+		BSPBranch branch = (BSPBranch)node ;
+		return readSegments(branch.getLeftBranch()) + readSegments(branch.getRightBranch()) ;
+	}
+	/**
+	 * Gives the heap in use after garbage collection.
+	 */
+	static long getUsedMemory() {
+		final Runtime runtime = Runtime.getRuntime() ;
+		for (int i = 0; i < 4; i++)
+			System.gc() ;
+		return runtime.totalMemory() - runtime.freeMemory() ;
+	}
+	static int getDepth(BSPNode node) {
+		if (node.isIsleaf())
+			return 1 ;
+		BSPBranch branch = (BSPBranch)node ;
+		return 1 + Math.max(getDepth(branch.getLeftBranch()), getDepth(branch.getRightBranch())) ;
+	}
+	static int countNodes(BSPNode node) {
+		if (node.isIsleaf())
+			return 1 ;
+		BSPBranch branch = (BSPBranch)node ;
+		return 1 + countNodes(branch.getLeftBranch()) + countNodes(branch.getRightBranch()) ;
+	}
+	/**
+	 * Measures how long a factory with the given number of worker threads takes 
+	 * to deliver the given number of mazes of the given skill level that are all ordered at once.
+	 */
+	static void benchmarkFactory(int threads, int mazes, int skill) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads) ;
+		MazeFactory factory = new MazeFactory(false, executor) ;
+		long nanos = 0 ;
+		// a round takes seconds, so fewer rounds suffice
+		for (int round = 0; round < 1 + ROUNDS/5; round++) {
+			List<Future<MazeConfiguration>> handles = new ArrayList<Future<MazeConfiguration>>() ;
+			long start = System.nanoTime() ;
+			for (int i = 0; i < mazes; i++) {
+				StubOrder order = new StubOrder() ;
+				order.setSkillLevel(skill);
+				handles.add(factory.submit(order)) ;
+			}
+			for (Future<MazeConfiguration> handle : handles)
+				MazeFactory.await(handle) ;
+			long stop = System.nanoTime() ;
+			if (round >= 1)
+				nanos += stop - start ;
+		}
+		executor.shutdown();
+		double seconds = nanos / 1e9 / (ROUNDS/5) ;
+		System.out.printf("%-40s %10.1f ms per batch %10.1f mazes/s%n", 
+				"MazeFactory " + threads + " threads, " + mazes + " x skill " + skill, seconds * 1000, mazes / seconds) ;
+	}
+	/**
+	 * Measures the time from ordering a maze of the given skill level until delivery 
+	 * on a single worker thread, i.e. rooms, pathways, distances and the BSP tree.
+	 */
+	static void benchmarkGeneration(int skill) {
+		ExecutorService executor = Executors.newSingleThreadExecutor() ;
+		MazeFactory factory = new MazeFactory(false, executor) ;
+		int rounds = (skill < 15) ? ROUNDS : 3 ;
+		long nanos = 0 ;
+		for (int round = 0; round < 1 + rounds; round++) {
+			StubOrder order = new StubOrder() ;
+			order.setSkillLevel(skill);
+			long start = System.nanoTime() ;
+			MazeFactory.await(factory.submit(order)) ;
+			long stop = System.nanoTime() ;
+			if (round >= 1)
+				nanos += stop - start ;
+		}
+		executor.shutdown();
+		System.out.printf("%-40s %10.1f ms per maze%n", "generate skill " + skill, nanos / 1e6 / rounds) ;
+	}
+	/**
+	 * Measures the time a builder takes for a maze of the given skill level 
+	 * with distances computed before and at the same time as the BSP tree. 
+	 * Both variants take turns such that they profit equally from the warm up. 
+	 * The time for the distances alone is the most that a pipeline can save.
+	 */
+	static void benchmarkPipeline(int skill) {
+		int rounds = (skill < 15) ? ROUNDS : 3 ;
+		long[] nanos = new long[2] ;
+		long distanceNanos = 0 ;
+		for (int round = 0; round < WARMUP + rounds; round++) {
+			for (int i = 0; i < 2; i++) {
+				StubOrder order = new StubOrder() ;
+				order.setSkillLevel(skill);
+				order.setSeed(round);
+				MazeBuilder builder = new MazeBuilder() ;
+				builder.setPipelined(1 == i);
+				builder.buildOrder(order);
+				long start = System.nanoTime() ;
+				MazeConfiguration maze ;
+				try {
+					maze = builder.build() ;
+				} catch (InterruptedException e) {
+					return ;
+				}
+				long stop = System.nanoTime() ;
+				if (round >= WARMUP)
+					nanos[i] += stop - start ;
+				if (0 == i) {
+					start = System.nanoTime() ;
+					new Distance(maze.getWidth(), maze.getHeight()).computeDistances(maze.getMazecells()) ;
+					stop = System.nanoTime() ;
+					if (round >= WARMUP)
+						distanceNanos += stop - start ;
+				}
+			}
+		}
+		System.out.printf("%-40s %10.1f ms per maze%n", "build skill " + skill + " sequential", nanos[0] / 1e6 / rounds) ;
+		System.out.printf("%-40s %10.1f ms per maze%n", "build skill " + skill + " pipelined", nanos[1] / 1e6 / rounds) ;
+		System.out.printf("%-40s %10.1f ms per maze%n", "distances skill " + skill, distanceNanos / 1e6 / rounds) ;
+	}
+	/**
+	 * Measures the time to place the rooms for a maze of the given skill level
+	 * and counts how many of the requested rooms are placed, generateRooms asks for one more room than the skill level.
+	 */
+	static void benchmarkRooms(int skill) {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(skill);
+		MazeBuilder builder = new MazeBuilder() ;
+		int rounds = 20 * ROUNDS ;
+		long nanos = 0 ;
+		long placed = 0 ;
+		for (int round = 0; round < WARMUP + rounds; round++) {
+			order.setSeed(round);
+			builder.buildOrder(order);
+			builder.cells.initialize();
+			long start = System.nanoTime() ;
+			int count = builder.generateRooms() ;
+			long stop = System.nanoTime() ;
+			if (round >= WARMUP) {
+				nanos += stop - start ;
+				placed += count ;
+			}
+		}
+		System.out.printf("%-40s %10.1f us per maze %8.1f of %d rooms placed%n", "rooms skill " + skill, 
+				nanos / 1e3 / rounds, placed / (double)rounds, falstad.Constants.SKILL_ROOMS[skill] + 1) ;
+	}
+	/**
+	 * Measures the time from cancelling an order of the given skill level until its worker thread
+	 * is available for the next order. Orders are cancelled at evenly spread points in time 
+	 * during their generation, only cancellations of orders that are still running count.
+	 */
+	static void benchmarkCancel(int skill, int rounds) {
+		ExecutorService executor = Executors.newSingleThreadExecutor() ;
+		MazeFactory factory = new MazeFactory(false, executor) ;
+		Runnable noop = new Runnable() {
+			@Override
+			public void run() {
+				// nothing to do
+			}
+		} ;
+		long total = 0 ;
+		long max = 0 ;
+		int cancelled = 0 ;
+		try {
+			// one uncancelled order to see how long a generation takes
+			StubOrder order = new StubOrder() ;
+			order.setSkillLevel(skill);
+			long start = System.nanoTime() ;
+			MazeFactory.await(factory.submit(order)) ;
+			long duration = System.nanoTime() - start ;
+			for (int round = 0; round < rounds; round++) {
+				order = new StubOrder() ;
+				order.setSkillLevel(skill);
+				Future<MazeConfiguration> handle = factory.submit(order) ;
+				long delay = duration * round / rounds ;
+				Thread.sleep(delay / 1000000, (int)(delay % 1000000)) ;
+				start = System.nanoTime() ;
+				if (!handle.cancel(true))
+					continue ;
+				executor.submit(noop).get() ;
+				long nanos = System.nanoTime() - start ;
+				total += nanos ;
+				max = Math.max(max, nanos) ;
+				cancelled++ ;
+			}
+		} catch (Exception e) {
+			System.out.println("GenerationBenchmark: cancel benchmark failed with " + e) ;
+		}
+		executor.shutdown();
+		System.out.printf("%-40s %10.2f ms average %10.2f ms max %4d cancelled%n", 
+				"cancel skill " + skill, total / 1e6 / Math.max(1, cancelled), max / 1e6, cancelled) ;
+	}
+	/**
+	 * Gives the number of bytes allocated by the current thread so far if the JVM supports it, 0 otherwise.
+	 */
+	static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean() ;
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId()) ;
+		return 0 ;
+	}
+
+	/**
+	 * Prints calls per microsecond for the given number of calls and elapsed time.
+	 */
+	static void report(String label, long calls, long nanos) {
+		System.out.printf("%-40s %10.1f calls/us %10.2f ms total%n", label, calls * 1000.0 / nanos, nanos / 1e6) ;
+	}
+}
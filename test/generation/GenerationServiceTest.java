@@ -0,0 +1,147 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the GenerationService class.
+ *
+ */
+public class GenerationServiceTest {
+
+	private GenerationService service ;
+
+	@Before
+	public void setUp() {
+		service = new GenerationService(2) ;
+	}
+
+	@After
+	public void tearDown() {
+		service.shutdown() ;
+	}
+
+	/**
+	 * Test case: a batch of mazes is generated and handed to a sink
+	 * <p>
+	 * Method under test: generate(Builder builder, int skill, boolean perfect, int count, long seed, Sink sink)
+	 * <p>
+	 * Correct behavior: the sink gets each maze exactly once, maze i has seed + i, 
+	 * the same seed gives the same maze in another batch, the report counts all mazes.
+	 */
+	@Test
+	public final void testBatch() throws IOException, InterruptedException {
+		final Map<Long, Cells> mazes = new HashMap<Long, Cells>() ;
+		GenerationService.Report report = service.generate(Order.Builder.Prim, 2, false, 9, 100, new GenerationService.Sink() {
+			@Override
+			public void accept(Order order, MazeConfiguration maze) {
+				assertNotNull(maze) ;
+				assertNull(mazes.put(order.getSeed(), maze.getMazecells())) ;
+			}
+		}) ;
+		assertEquals(9, mazes.size()) ;
+		for (long seed = 100; seed < 109; seed++)
+			assertTrue(mazes.containsKey(seed)) ;
+		assertEquals(9, report.getCount()) ;
+		assertEquals(Order.Builder.Prim, report.getBuilder()) ;
+		assertTrue(report.getMazesPerSecond() > 0) ;
+		// generate maze with seed 104 again
+		service.generate(Order.Builder.Prim, 2, false, 1, 104, new GenerationService.Sink() {
+			@Override
+			public void accept(Order order, MazeConfiguration maze) {
+				assertEquals(mazes.get(104L), maze.getMazecells()) ;
+			}
+		}) ;
+	}
+
+	/**
+	 * Test case: the sink fails in the middle of a batch
+	 * <p>
+	 * Method under test: generate(Builder builder, int skill, boolean perfect, int count, long seed, Sink sink)
+	 * <p>
+	 * Correct behavior: the exception of the sink is passed on, the remaining orders are cancelled
+	 * and the service is ready for the next batch.
+	 */
+	@Test
+	public final void testSinkFailureStopsBatch() throws InterruptedException, IOException {
+		final int[] accepted = new int[1] ;
+		try {
+			service.generate(Order.Builder.DFS, 3, false, 100, 0, new GenerationService.Sink() {
+				@Override
+				public void accept(Order order, MazeConfiguration maze) throws IOException {
+					if (++accepted[0] == 3)
+						throw new IOException("disk full") ;
+				}
+			}) ;
+			fail("exception of sink expected") ;
+		} catch (IOException e) {
+			assertEquals("disk full", e.getMessage()) ;
+		}
+		assertEquals(3, accepted[0]) ;
+		GenerationService.Report report = service.generate(Order.Builder.Kruskal, 1, true, 2, 0, new GenerationService.Sink() {
+			@Override
+			public void accept(Order order, MazeConfiguration maze) {
+				accepted[0]++ ;
+			}
+		}) ;
+		assertEquals(2, report.getCount()) ;
+		assertEquals(5, accepted[0]) ;
+	}
+
+	/**
+	 * Test case: the sink fails while other orders of the batch are in production
+	 * <p>
+	 * Method under test: generate(Builder builder, int skill, boolean perfect, int count, long seed, Sink sink)
+	 * <p>
+	 * Correct behavior: when generate returns, no worker thread of the service is busy with a builder of the batch.
+	 */
+	@Test
+	public final void testNoOrderOutlivesBatch() throws InterruptedException {
+		final List<Thread> workers = new ArrayList<Thread>() ;
+		final GenerationService recorded = new GenerationService(2, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r) ;
+				thread.setDaemon(true) ;
+				synchronized (workers) {
+					workers.add(thread) ;
+				}
+				return thread ;
+			}
+		}) ;
+		try {
+			recorded.generate(Order.Builder.Prim, 9, false, 10, 0, new GenerationService.Sink() {
+				@Override
+				public void accept(Order order, MazeConfiguration maze) throws IOException {
+					throw new IOException("disk full") ;
+				}
+			}) ;
+			fail("exception of sink expected") ;
+		} catch (IOException e) {
+			assertEquals("disk full", e.getMessage()) ;
+		}
+		try {
+			synchronized (workers) {
+				assertFalse(workers.isEmpty()) ;
+				for (Thread worker : workers)
+					for (StackTraceElement frame : worker.getStackTrace())
+						assertFalse(worker.getName() + " still runs " + frame, 
+								frame.getClassName().startsWith("generation.MazeBuilder") || 
+								frame.getClassName().startsWith("generation.BSPBuilder") || 
+								frame.getClassName().startsWith("generation.Distance")) ;
+			}
+		} finally {
+			recorded.shutdown() ;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package generation;
+
+import static generation.MazeBuilderFixture.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the pathways generated by the MazeBuilderEller class.
+ *
+ */
+public class MazeBuilderEllerTest {
+
+	/**
+	 * Test case: a maze without rooms is a spanning tree
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: exactly width*height-1 internal walls are taken down
+	 * and every position can be reached.
+	 */
+	@Test
+	public final void testPerfectMazeIsSpanningTree() {
+		assertSpanningTree(generate(new MazeBuilderEller(), 5, false)) ;
+	}
+
+	/**
+	 * Test case: a very tall and narrow maze
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: the maze is a spanning tree, every position can be reached.
+	 */
+	@Test
+	public final void testTallMazeIsSpanningTree() {
+		MazeBuilderEller builder = new MazeBuilderEller() ;
+		builder.width = 7 ;
+		builder.height = 20000 ;
+		builder.cells = new Cells(builder.width, builder.height) ;
+		builder.cells.initialize();
+		builder.generatePathways();
+		assertSpanningTree(builder) ;
+	}
+
+	/**
+	 * Test case: mazes with rooms are connected and keep their outside walls
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: every position can be reached, no wall on the outside border is taken down.
+	 * Rooms with few doors can cut off sets, several mazes are generated to cover such cases.
+	 */
+	@Test
+	public final void testMazeWithRoomsIsConnected() {
+		MazeBuilderEller builder = null ;
+		for (int i = 0; i < 10; i++) {
+			builder = generate(new MazeBuilderEller(), 8, true) ;
+			assertAllPositionsReachable(builder) ;
+		}
+		assertOutsideWallsIntact(builder) ;
+	}
+
+	/**
+	 * Test case: the factory delivers a maze for an Eller order
+	 * <p>
+	 * Method under test: MazeFactory.order(Order order)
+	 * <p>
+	 * Correct behavior: a maze configuration of matching dimensions is delivered.
+	 */
+	@Test
+	public final void testFactoryDeliversEllerMaze() {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(2);
+		order.start(Order.Builder.Eller);
+		MazeConfiguration maze = order.getMazeConfig() ;
+		assertNotNull(maze.getMazecells()) ;
+		assertEquals(falstad.Constants.SKILL_X[2], maze.getWidth()) ;
+		assertEquals(falstad.Constants.SKILL_Y[2], maze.getHeight()) ;
+	}
+}
@@ -0,0 +1,82 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+/**
+ * Shared steps and checks for the tests of the pathways generated by the MazeBuilder subclasses.
+ * Each test keeps the assertions that are specific to its builder.
+ *
+ */
+final class MazeBuilderFixture {
+
+	private MazeBuilderFixture() {
+	}
+
+	/**
+	 * Creates pathways with the given builder for the given skill level.
+	 * @param withRooms if true rooms are placed before pathways are generated
+	 * @return the builder, its cells hold the maze
+	 */
+	static <B extends MazeBuilder> B generate(B builder, int skill, boolean withRooms) {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(skill);
+		builder.buildOrder(order);
+		builder.cells.initialize();
+		if (withRooms)
+			builder.generateRooms() ;
+		builder.generatePathways();
+		return builder ;
+	}
+
+	/**
+	 * Counts the internal walls that have been taken down.
+	 */
+	static int countOpenings(MazeBuilder builder) {
+		final Cells cells = builder.cells ;
+		int openings = 0 ;
+		for (int x = 0; x < builder.width; x++) {
+			for (int y = 0; y < builder.height; y++) {
+				if (x+1 < builder.width && cells.hasNoWall(x, y, CardinalDirection.East))
+					openings++ ;
+				if (y+1 < builder.height && cells.hasNoWall(x, y, CardinalDirection.South))
+					openings++ ;
+			}
+		}
+		return openings ;
+	}
+
+	/**
+	 * Checks that all positions have a finite distance to the exit.
+	 */
+	static void assertAllPositionsReachable(MazeBuilder builder) {
+		Distance dists = new Distance(builder.width, builder.height) ;
+		dists.computeDistances(builder.cells) ;
+		for (int x = 0; x < builder.width; x++)
+			for (int y = 0; y < builder.height; y++)
+				assertTrue("unreachable position " + x + "," + y, dists.getDistance(x, y) < Distance.INFINITY) ;
+	}
+
+	/**
+	 * Checks that the maze is a spanning tree: exactly width*height-1 internal walls
+	 * are taken down and every position can be reached.
+	 */
+	static void assertSpanningTree(MazeBuilder builder) {
+		assertEquals(builder.width*builder.height-1, countOpenings(builder)) ;
+		assertAllPositionsReachable(builder) ;
+	}
+
+	/**
+	 * Checks that no wall on the outside border is taken down.
+	 */
+	static void assertOutsideWallsIntact(MazeBuilder builder) {
+		final Cells cells = builder.cells ;
+		for (int x = 0; x < builder.width; x++) {
+			assertTrue(cells.hasWall(x, 0, CardinalDirection.North)) ;
+			assertTrue(cells.hasWall(x, builder.height-1, CardinalDirection.South)) ;
+		}
+		for (int y = 0; y < builder.height; y++) {
+			assertTrue(cells.hasWall(0, y, CardinalDirection.West)) ;
+			assertTrue(cells.hasWall(builder.width-1, y, CardinalDirection.East)) ;
+		}
+	}
+}
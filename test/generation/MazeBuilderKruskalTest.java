@@ -0,0 +1,58 @@
+package generation;
+
+import static generation.MazeBuilderFixture.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the pathways generated by the MazeBuilderKruskal class.
+ *
+ */
+public class MazeBuilderKruskalTest {
+
+	/**
+	 * Test case: a maze without rooms is a spanning tree
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: exactly width*height-1 internal walls are taken down
+	 * and every position can be reached.
+	 */
+	@Test
+	public final void testPerfectMazeIsSpanningTree() {
+		assertSpanningTree(generate(new MazeBuilderKruskal(), 5, false)) ;
+	}
+
+	/**
+	 * Test case: a maze with rooms is connected and keeps its outside walls
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: every position can be reached, no wall on the outside border is taken down.
+	 */
+	@Test
+	public final void testMazeWithRoomsIsConnected() {
+		MazeBuilderKruskal builder = generate(new MazeBuilderKruskal(), 8, true) ;
+		assertAllPositionsReachable(builder) ;
+		assertOutsideWallsIntact(builder) ;
+	}
+
+	/**
+	 * Test case: the factory delivers a maze for a Kruskal order
+	 * <p>
+	 * Method under test: MazeFactory.order(Order order)
+	 * <p>
+	 * Correct behavior: a maze configuration of matching dimensions is delivered.
+	 */
+	@Test
+	public final void testFactoryDeliversKruskalMaze() {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(2);
+		order.start(Order.Builder.Kruskal);
+		MazeConfiguration maze = order.getMazeConfig() ;
+		assertNotNull(maze.getMazecells()) ;
+		assertEquals(falstad.Constants.SKILL_X[2], maze.getWidth()) ;
+		assertEquals(falstad.Constants.SKILL_Y[2], maze.getHeight()) ;
+	}
+}
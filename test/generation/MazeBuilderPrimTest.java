@@ -0,0 +1,81 @@
+package generation;
+
+import static generation.MazeBuilderFixture.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the pathways generated by the MazeBuilderPrim class.
+ *
+ */
+public class MazeBuilderPrimTest {
+
+	/**
+	 * Test case: a maze without rooms is a spanning tree
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: exactly width*height-1 internal walls are taken down
+	 * and every position can be reached.
+	 */
+	@Test
+	public final void testPerfectMazeIsSpanningTree() {
+		assertSpanningTree(generate(new MazeBuilderPrim(), 5, false)) ;
+	}
+
+	/**
+	 * Test case: small mazes without rooms for many seeds are spanning trees
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: no wall is taken down towards the start cell once it is 
+	 * part of the spanning tree, so no maze has a loop: exactly width*height-1 
+	 * internal walls are taken down and every position can be reached.
+	 */
+	@Test
+	public final void testPerfectMazesForManySeedsAreSpanningTrees() {
+		for (long seed = 0; seed < 200; seed++) {
+			StubOrder order = new StubOrder() ;
+			order.setSkillLevel(0);
+			order.setSeed(seed);
+			MazeBuilderPrim builder = new MazeBuilderPrim() ;
+			builder.buildOrder(order);
+			builder.cells.initialize();
+			builder.generatePathways();
+			assertSpanningTree(builder) ;
+		}
+	}
+
+	/**
+	 * Test case: a large maze without rooms is a spanning tree
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: the frontier grows beyond its initial capacity many times 
+	 * and the result is still a spanning tree.
+	 */
+	@Test
+	public final void testLargeMazeIsSpanningTree() {
+		MazeBuilderPrim builder = new MazeBuilderPrim() ;
+		builder.width = 500 ;
+		builder.height = 400 ;
+		builder.cells = new Cells(builder.width, builder.height) ;
+		builder.cells.initialize();
+		builder.generatePathways();
+		assertSpanningTree(builder) ;
+	}
+
+	/**
+	 * Test case: a maze with rooms is connected and keeps its outside walls
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: every position can be reached, no wall on the outside border is taken down.
+	 */
+	@Test
+	public final void testMazeWithRoomsIsConnected() {
+		MazeBuilderPrim builder = generate(new MazeBuilderPrim(), 8, true) ;
+		assertAllPositionsReachable(builder) ;
+		assertOutsideWallsIntact(builder) ;
+	}
+}
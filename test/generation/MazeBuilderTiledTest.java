@@ -0,0 +1,78 @@
+package generation;
+
+import static generation.MazeBuilderFixture.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests the pathways generated by the MazeBuilderTiled class.
+ *
+ */
+public class MazeBuilderTiledTest {
+
+	/**
+	 * Creates pathways in tiles for a maze of the given size without rooms, 
+	 * tiles are generated by the given number of workers.
+	 */
+	private MazeBuilderTiled generateTiles(int width, int height, long seed, int workers) {
+		ForkJoinPool pool = new ForkJoinPool(workers) ;
+		try {
+			StubOrder order = new StubOrder() ;
+			order.setSeed(seed);
+			MazeBuilderTiled builder = new MazeBuilderTiled(false, pool) ;
+			builder.buildOrder(order);
+			builder.width = width ;
+			builder.height = height ;
+			builder.cells = new Cells(width, height) ;
+			builder.cells.initialize();
+			builder.generatePathways();
+			return builder ;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test case: a maze of many tiles without rooms is a spanning tree
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: exactly width*height-1 internal walls are taken down
+	 * and every position can be reached, also if the size is not a multiple of the tile size.
+	 */
+	@Test
+	public final void testPerfectMazeIsSpanningTree() {
+		assertSpanningTree(generateTiles(3*MazeBuilderTiled.TILE_SIZE+5, 2*MazeBuilderTiled.TILE_SIZE+1, 42, 2)) ;
+	}
+
+	/**
+	 * Test case: a maze with rooms is connected and keeps its outside walls
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: every position can be reached, no wall on the outside border is taken down.
+	 */
+	@Test
+	public final void testMazeWithRoomsIsConnected() {
+		MazeBuilderTiled builder = generate(new MazeBuilderTiled(), 15, true) ;
+		assertAllPositionsReachable(builder) ;
+		assertOutsideWallsIntact(builder) ;
+	}
+
+	/**
+	 * Test case: the number of workers does not matter
+	 * <p>
+	 * Method under test: generatePathways()
+	 * <p>
+	 * Correct behavior: the same seed gives the same maze with 1 and 4 workers.
+	 */
+	@Test
+	public final void testSameMazeForAnyNumberOfWorkers() {
+		Cells single = generateTiles(300, 200, 4711, 1).cells ;
+		Cells parallel = generateTiles(300, 200, 4711, 4).cells ;
+		assertEquals(single, parallel) ;
+		assertFalse(single.equals(generateTiles(300, 200, 4712, 4).cells)) ;
+	}}
@@ -7,6 +7,16 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MazeFactoryTest {
 
@@ -146,4 +156,455 @@ public class MazeFactoryTest {
 
         assertEquals(countedRooms, Constants.SKILL_ROOMS[this.skillLevel] + 1);
     }
+
+    // test that an order with the same seed delivers the same maze for every builder
+    @Test
+    public final void testSameSeedDeliversSameMaze() {
+        for (Order.Builder builder : Order.Builder.values()) {
+            MazeConfiguration first = orderMaze(builder, 4711);
+            MazeConfiguration second = orderMaze(builder, 4711);
+            assertEquals(builder.toString(), first.getMazecells(), second.getMazecells());
+            assertArrayEquals(first.getStartingPosition(), second.getStartingPosition());
+            MazeConfiguration other = orderMaze(builder, 42);
+            assertFalse(builder.toString(), first.getMazecells().equals(other.getMazecells()));
+        }
+    }
+
+    // test that a deterministic builder delivers the same maze for a skill level whatever the seed
+    @Test
+    public final void testDeterministicBuilder() {
+        Cells[] results = new Cells[2];
+        for (int i = 0; i < results.length; i++) {
+            StubOrder order = new StubOrder();
+            order.setSkillLevel(this.skillLevel);
+            order.setSeed(i);
+            MazeBuilder builder = new MazeBuilderPrim(true);
+            builder.buildOrder(order);
+            builder.cells.initialize();
+            builder.generateRooms();
+            builder.generatePathways();
+            results[i] = builder.cells;
+        }
+        assertEquals(results[0], results[1]);
+    }
+
+    private MazeConfiguration orderMaze(Order.Builder builder, long seed) {
+        StubOrder order = new StubOrder();
+        order.setSkillLevel(this.skillLevel);
+        order.setSeed(seed);
+        order.start(builder);
+        return order.getMazeConfig();
+    }
+
+    // test that a factory takes many orders at once and delivers each maze to its own order
+    @Test
+    public final void testConcurrentOrders() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MazeFactory factory = new MazeFactory(false, executor);
+            StubOrder[] orders = new StubOrder[8];
+            List<Future<MazeConfiguration>> handles = new ArrayList<Future<MazeConfiguration>>();
+            for (int i = 0; i < orders.length; i++) {
+                orders[i] = new StubOrder();
+                orders[i].setSkillLevel(i % 4);
+                orders[i].setSeed(i);
+                handles.add(factory.submit(orders[i]));
+            }
+            for (int i = 0; i < orders.length; i++) {
+                MazeConfiguration maze = MazeFactory.await(handles.get(i));
+                assertNotNull(maze);
+                assertSame(maze, orders[i].getMazeConfig());
+                assertEquals(Constants.SKILL_X[i % 4], maze.getWidth());
+                assertEquals(Constants.SKILL_Y[i % 4], maze.getHeight());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // test that cancelling one order does not affect the others
+    @Test
+    public final void testCancelOneOrder() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // keep the worker busy such that the orders are still waiting when one is cancelled
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    latch.await();
+                    return null;
+                }
+            });
+            MazeFactory factory = new MazeFactory(false, executor);
+            StubOrder[] orders = new StubOrder[3];
+            List<Future<MazeConfiguration>> handles = new ArrayList<Future<MazeConfiguration>>();
+            for (int i = 0; i < orders.length; i++) {
+                orders[i] = new StubOrder();
+                orders[i].setSkillLevel(this.skillLevel);
+                handles.add(factory.submit(orders[i]));
+            }
+            MazeConfiguration placeholder = orders[1].getMazeConfig();
+            assertTrue(handles.get(1).cancel(true));
+            latch.countDown();
+            assertNotNull(MazeFactory.await(handles.get(0)));
+            assertNull(MazeFactory.await(handles.get(1)));
+            assertNotNull(MazeFactory.await(handles.get(2)));
+            assertSame(placeholder, orders[1].getMazeConfig());
+            assertNotNull(orders[0].getMazeConfig().getMazecells());
+            assertNotNull(orders[2].getMazeConfig().getMazecells());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // test that a builder stops without delivery when its thread is interrupted during the BSP construction
+    @Test
+    public final void testInterruptStopsBuilder() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MazeFactory factory = new MazeFactory(false, executor);
+            StubOrder order = new StubOrder() {
+                @Override
+                public void updateProgress(int percentage) {
+                    // progress is reported during the BSP construction, act as if the order was cancelled now
+                    if (percentage < 100)
+                        Thread.currentThread().interrupt();
+                }
+            };
+            order.setSkillLevel(this.skillLevel);
+            MazeConfiguration placeholder = order.getMazeConfig();
+            assertNull(MazeFactory.await(factory.submit(order)));
+            assertSame(placeholder, order.getMazeConfig());
+            // the worker thread is available for the next order
+            StubOrder next = new StubOrder();
+            next.setSkillLevel(this.skillLevel);
+            assertNotNull(MazeFactory.await(factory.submit(next)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // test that progress is reported from real work, increases monotonically and ends with 100
+    @Test
+    public final void testProgressIsMonotonic() throws InterruptedException {
+        final List<Integer> values = new ArrayList<Integer>();
+        StubOrder order = new StubOrder() {
+            @Override
+            public void updateProgress(int percentage) {
+                values.add(percentage);
+            }
+        };
+        order.setSkillLevel(8);
+        MazeBuilder builder = new MazeBuilder();
+        builder.buildOrder(order);
+        builder.build();
+        assertFalse(values.isEmpty());
+        assertTrue("one update per percent at most", values.size() <= 101);
+        for (int i = 1; i < values.size(); i++)
+            assertTrue(values.get(i-1) < values.get(i));
+        assertEquals(100, (int)values.get(values.size()-1));
+        assertTrue(values.size() > 2);
+    }
+
+    // test that computing distances and the BSP tree at the same time delivers the same maze as doing it in sequence
+    @Test
+    public final void testPipelinedBuildIsSameMaze() throws InterruptedException {
+        for (Order.Builder builder : Order.Builder.values()) {
+            MazeConfiguration[] results = new MazeConfiguration[2];
+            for (int i = 0; i < results.length; i++) {
+                StubOrder order = new StubOrder();
+                order.setSkillLevel(6);
+                order.setSeed(4711);
+                order.setBuilder(builder);
+                MazeBuilder mazeBuilder = new MazeFactory().createBuilder(order);
+                mazeBuilder.setPipelined(1 == i);
+                mazeBuilder.buildOrder(order);
+                results[i] = mazeBuilder.build();
+            }
+            assertEquals(builder.toString(), results[0].getMazecells(), results[1].getMazecells());
+            assertArrayEquals(results[0].getStartingPosition(), results[1].getStartingPosition());
+            assertArrayEquals(results[0].getMazedists().getDists(), results[1].getMazedists().getDists());
+            assertEquals(builder.toString(), collectSegments(results[0].getRootnode()), collectSegments(results[1].getRootnode()));
+        }
+    }
+
+    // test that an order with dimensions and a number of rooms of its own gets exactly that maze
+    @Test
+    public final void testCustomDimensionsAndRooms() {
+        StubOrder order = new StubOrder();
+        order.setSkillLevel(2);
+        order.setWidth(37);
+        order.setHeight(11);
+        order.setRooms(3);
+        order.start(Order.Builder.Kruskal);
+        MazeConfiguration maze = order.getMazeConfig();
+        assertEquals(37, maze.getWidth());
+        assertEquals(11, maze.getHeight());
+        assertEquals(3, countRooms(maze));
+        int[] exit = maze.getMazedists().getExitPosition();
+        assertEquals(1, maze.getMazedists().getDistance(exit[0], exit[1]));
+
+        order.setRooms(0);
+        order.start(Order.Builder.Kruskal);
+        assertEquals(0, countRooms(order.getMazeConfig()));
+    }
+
+    // test that an order that does not fit into its memory budget is rejected before anything is built
+    @Test
+    public final void testOrderOverBudgetIsRejected() {
+        StubOrder order = new StubOrder();
+        order.setSkillLevel(5);
+        order.setMemoryBudget(MazeBuilder.estimateBytes(Constants.SKILL_X[5], Constants.SKILL_Y[5]) - 1);
+        assertNull(new MazeFactory().submit(order));
+        order.setMemoryBudget(MazeBuilder.estimateBytes(Constants.SKILL_X[5], Constants.SKILL_Y[5]));
+        assertNotNull(MazeFactory.await(new MazeFactory().submit(order)));
+    }
+
+    // test that an order that accepts a smaller maze gets one that fits into the budget and keeps its proportions
+    @Test
+    public final void testOrderOverBudgetIsScaledDown() {
+        StubOrder order = new StubOrder();
+        order.setSkillLevel(3);
+        order.setWidth(400);
+        order.setHeight(100);
+        order.setMemoryBudget(MazeBuilder.estimateBytes(100, 25));
+        order.setAcceptsSmallerMaze(true);
+        MazeConfiguration maze = MazeFactory.await(new MazeFactory().submit(order));
+        assertNotNull(maze);
+        assertTrue(MazeBuilder.estimateBytes(maze.getWidth(), maze.getHeight()) <= order.getMemoryBudget());
+        assertTrue(maze.getWidth() >= 99 && maze.getWidth() <= 100);
+        assertTrue(maze.getHeight() >= 24 && maze.getHeight() <= 25);
+    }
+
+    // test that builders that reuse buffers and recycled mazes deliver the same mazes as builders that allocate everything
+    @Test
+    public final void testArenaModeDeliversSameMazes() {
+        MazeFactory factory = new MazeFactory();
+        factory.setArenaMode(true);
+        for (Order.Builder builder : Order.Builder.values()) {
+            MazeConfiguration previous = null;
+            for (int skill : new int[] { 6, 6, 3, 6 }) {
+                StubOrder order = new StubOrder();
+                order.setSkillLevel(skill);
+                order.setSeed(4711 + skill);
+                order.setBuilder(builder);
+                MazeConfiguration expected = MazeFactory.await(new MazeFactory().submit(order));
+                MazeConfiguration maze = MazeFactory.await(factory.submit(order));
+                assertEquals(builder.toString(), expected.getMazecells(), maze.getMazecells());
+                assertArrayEquals(expected.getStartingPosition(), maze.getStartingPosition());
+                assertArrayEquals(expected.getMazedists().getDists(), maze.getMazedists().getDists());
+                assertEquals(builder.toString(), collectSegments(expected.getRootnode()), collectSegments(maze.getRootnode()));
+                if (null != previous && previous.getWidth() == maze.getWidth())
+                    assertSame("recycled cells are reused", previous.getMazecells(), maze.getMazecells());
+                factory.recycle(maze);
+                previous = maze;
+            }
+        }
+    }
+
+    // test that building the BSP tree on several workers gives the same tree as building it on a single thread
+    @Test
+    public final void testParallelBSPIsSameTree() throws InterruptedException {
+        StubOrder order = new StubOrder();
+        order.setSkillLevel(9);
+        order.setSeed(4711);
+        MazeBuilder builder = new MazeBuilder();
+        builder.buildOrder(order);
+        builder.cells.initialize();
+        builder.generateRooms();
+        builder.generate();
+        BSPBuilder sequential = new BSPBuilder(null, builder.dists, builder.cells, builder.width, builder.height, 0);
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        BSPNode expected = sequential.generateBSPNodes();
+        final List<Integer> values = new ArrayList<Integer>();
+        StubOrder progress = new StubOrder() {
+            @Override
+            public void updateProgress(int percentage) {
+                values.add(percentage);
+            }
+        };
+        BSPBuilder parallel = new BSPBuilder(progress, builder.dists, builder.cells, builder.width, builder.height, 0);
+        parallel.setParallelThreshold(64);
+        BSPNode actual = parallel.generateBSPNodes();
+        assertSameTree(expected, actual);
+        assertEquals(sequential.getSplitCount(), parallel.getSplitCount());
+        // leaves of both trees take consecutive rows of a single table in the same order
+        assertEquals(getLeafSegments(expected).size(), assertLeavesCoverTable(expected, getLeafSegments(expected), 0));
+        assertEquals(getLeafSegments(actual).size(), assertLeavesCoverTable(actual, getLeafSegments(actual), 0));
+        for (int i = 1; i < values.size(); i++)
+            assertTrue(values.get(i-1) < values.get(i));
+    }
+
+    // test that a node is only a leaf once all of its segments have been partitions, also if some partition 
+    // has all segments on one side, otherwise a leaf can hold a far wall that gets drawn over a nearer one
+    @Test
+    public final void testLeavesHoldPartitionsOnly() throws InterruptedException {
+        for (int skill : new int[] { 3, 9, 12 }) {
+            StubOrder order = new StubOrder();
+            order.setSkillLevel(skill);
+            order.setSeed(4711);
+            MazeBuilder builder = new MazeBuilder();
+            builder.buildOrder(order);
+            builder.cells.initialize();
+            builder.generateRooms();
+            builder.generate();
+            BSPBuilder bsp = new BSPBuilder(null, builder.dists, builder.cells, builder.width, builder.height, 42);
+            assertLeavesHoldPartitionsOnly(bsp.generateBSPNodes());
+        }
+    }
+
+    // test that joining adjacent runs before the tree is built gives walls of the same colors in fewer segments
+    @Test
+    public final void testCoalescedTreeHasSameWalls() throws InterruptedException {
+        for (int skill : new int[] { 3, 9 }) {
+            StubOrder order = new StubOrder();
+            order.setSkillLevel(skill);
+            order.setSeed(4711);
+            MazeBuilder builder = new MazeBuilder();
+            builder.buildOrder(order);
+            builder.cells.initialize();
+            builder.generateRooms();
+            builder.generate();
+            BSPNode[] trees = new BSPNode[2];
+            BSPBuilder[] bsps = new BSPBuilder[2];
+            for (int i = 0; i < trees.length; i++) {
+                bsps[i] = new BSPBuilder(null, builder.dists, builder.cells, builder.width, builder.height, 42);
+                bsps[i].setCoalescing(1 == i);
+                trees[i] = bsps[i].generateBSPNodes();
+                assertLeavesHoldPartitionsOnly(trees[i]);
+            }
+            assertEquals(0, bsps[0].getCoalescedCount());
+            assertTrue(bsps[1].getCoalescedCount() > 0);
+            assertEquals(collectWallColors(trees[0]), collectWallColors(trees[1]));
+            assertNoSegmentsToJoin(trees[1]);
+        }
+    }
+
+    /**
+     * Checks that all segments of all leaves have been used as a partition.
+     */
+    private void assertLeavesHoldPartitionsOnly(BSPNode node) {
+        if (node.isIsleaf()) {
+            BSPLeaf leaf = (BSPLeaf)node;
+            for (int i = leaf.getFrom(); i < leaf.getTo(); i++)
+                assertTrue(leaf.getSegments().isPartition(i));
+            return;
+        }
+        assertLeavesHoldPartitionsOnly(((BSPBranch)node).getLeftBranch());
+        assertLeavesHoldPartitionsOnly(((BSPBranch)node).getRightBranch());
+    }
+
+    /**
+     * Cuts all segments of the tree into pieces of length MAP_UNIT.
+     * @return the color of each piece by its starting position and direction
+     */
+    private Map<List<Integer>, Integer> collectWallColors(BSPNode node) {
+        Map<List<Integer>, Integer> result = new HashMap<List<Integer>, Integer>();
+        for (BSPLeaf leaf : collectLeaves(node, new ArrayList<BSPLeaf>())) {
+            SegmentTable segments = leaf.getSegments();
+            for (int i = leaf.getFrom(); i < leaf.getTo(); i++) {
+                int dx = Integer.signum(segments.getExtensionX(i)) * Constants.MAP_UNIT;
+                int dy = Integer.signum(segments.getExtensionY(i)) * Constants.MAP_UNIT;
+                int length = Math.abs(segments.getExtensionX(i) + segments.getExtensionY(i)) / Constants.MAP_UNIT;
+                for (int k = 0; k < length; k++) {
+                    List<Integer> piece = Arrays.asList(segments.getStartPositionX(i) + k*dx, segments.getStartPositionY(i) + k*dy, dx, dy);
+                    assertNull("walls do not overlap", result.put(piece, segments.getColor(i)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks that no leaf holds two segments of the same color where one continues the other.
+     */
+    private void assertNoSegmentsToJoin(BSPNode node) {
+        for (BSPLeaf leaf : collectLeaves(node, new ArrayList<BSPLeaf>())) {
+            SegmentTable segments = leaf.getSegments();
+            for (int i = leaf.getFrom(); i < leaf.getTo(); i++) {
+                for (int j = leaf.getFrom(); j < leaf.getTo(); j++) {
+                    assertFalse(segments.getEndPositionX(i) == segments.getStartPositionX(j) && segments.getEndPositionY(i) == segments.getStartPositionY(j)
+                            && segments.getDir(i) == segments.getDir(j) && segments.getColor(i) == segments.getColor(j));
+                }
+            }
+        }
+    }
+
+    private List<BSPLeaf> collectLeaves(BSPNode node, List<BSPLeaf> result) {
+        if (node.isIsleaf())
+            result.add((BSPLeaf)node);
+        else {
+            collectLeaves(((BSPBranch)node).getLeftBranch(), result);
+            collectLeaves(((BSPBranch)node).getRightBranch(), result);
+        }
+        return result;
+    }
+
+    private void assertSameTree(BSPNode expected, BSPNode actual) {
+        assertEquals(expected.isIsleaf(), actual.isIsleaf());
+        if (expected.isIsleaf()) {
+            assertEquals(collectSegments(expected), collectSegments(actual));
+            return;
+        }
+        BSPBranch e = (BSPBranch)expected;
+        BSPBranch a = (BSPBranch)actual;
+        assertArrayEquals(new int[] { e.getX(), e.getY(), e.getDx(), e.getDy() }, new int[] { a.getX(), a.getY(), a.getDx(), a.getDy() });
+        assertSameTree(e.getLeftBranch(), a.getLeftBranch());
+        assertSameTree(e.getRightBranch(), a.getRightBranch());
+    }
+
+    private SegmentTable getLeafSegments(BSPNode node) {
+        while (!node.isIsleaf())
+            node = ((BSPBranch)node).getLeftBranch();
+        return ((BSPLeaf)node).getSegments();
+    }
+
+    /**
+     * Checks that the leaves of the given tree, from left to right, refer to the given table
+     * and each one starts where the previous one ends.
+     * @return the row after the last leaf
+     */
+    private int assertLeavesCoverTable(BSPNode node, SegmentTable segments, int from) {
+        if (node.isIsleaf()) {
+            BSPLeaf leaf = (BSPLeaf)node;
+            assertSame(segments, leaf.getSegments());
+            assertEquals(from, leaf.getFrom());
+            return leaf.getTo();
+        }
+        from = assertLeavesCoverTable(((BSPBranch)node).getLeftBranch(), segments, from);
+        return assertLeavesCoverTable(((BSPBranch)node).getRightBranch(), segments, from);
+    }
+
+    private int countRooms(MazeConfiguration maze) {
+        int result = 0;
+        Cells cells = maze.getMazecells();
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                if (cells.isInRoom(x, y) && !cells.isInRoom(x - 1, y) && !cells.isInRoom(x, y - 1)) result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists all attributes of all segments of the given tree, leaf by leaf.
+     */
+    private List<Integer> collectSegments(BSPNode node) {
+        List<Integer> result = new ArrayList<Integer>();
+        if (node.isIsleaf()) {
+            BSPLeaf leaf = (BSPLeaf)node;
+            SegmentTable segments = leaf.getSegments();
+            for (int i = leaf.getFrom(); i < leaf.getTo(); i++) {
+                result.addAll(Arrays.asList(segments.getStartPositionX(i), segments.getStartPositionY(i),
+                        segments.getExtensionX(i), segments.getExtensionY(i), segments.getDistance(i), segments.getColor(i),
+                        segments.isPartition(i) ? 1 : 0, segments.isSeen(i) ? 1 : 0));
+            }
+        }
+        else {
+            result.addAll(collectSegments(((BSPBranch)node).getLeftBranch()));
+            result.addAll(collectSegments(((BSPBranch)node).getRightBranch()));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,143 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the MazePool class.
+ * Refills run on a single thread such that a task submitted after them
+ * tells when all refills so far are done.
+ *
+ */
+public class MazePoolTest {
+
+	private ExecutorService refillExecutor ;
+
+	@Before
+	public void setUp() {
+		refillExecutor = Executors.newSingleThreadExecutor() ;
+	}
+
+	@After
+	public void tearDown() {
+		refillExecutor.shutdownNow() ;
+	}
+
+	/**
+	 * Test case: the first order misses, the next order of the same kind is served from the pool
+	 * <p>
+	 * Method under test: submit(Order order), getHits(), getMisses(), getRefills()
+	 * <p>
+	 * Correct behavior: the first order is delivered by the factory and the pool is filled up to its depth,
+	 * the second order is delivered from the pool and the pool is filled up again.
+	 */
+	@Test
+	public final void testMissThenHit() throws Exception {
+		MazePool pool = new MazePool(new MazeFactory(), refillExecutor, 2, Long.MAX_VALUE) ;
+		StubOrder first = createOrder(1, Order.Builder.DFS) ;
+		assertNotNull(MazeFactory.await(pool.submit(first))) ;
+		waitForRefills() ;
+		assertEquals(0, pool.getHits()) ;
+		assertEquals(1, pool.getMisses()) ;
+		assertEquals(2, pool.size(1, Order.Builder.DFS, false)) ;
+
+		StubOrder second = createOrder(1, Order.Builder.DFS) ;
+		MazeConfiguration maze = MazeFactory.await(pool.submit(second)) ;
+		assertSame(maze, second.getMazeConfig()) ;
+		assertEquals(falstad.Constants.SKILL_X[1], maze.getWidth()) ;
+		assertEquals(1, pool.getHits()) ;
+		assertEquals(1, pool.getMisses()) ;
+		waitForRefills() ;
+		assertEquals(3, pool.getRefills()) ;
+		assertTrue(pool.getAverageRefillMillis() > 0) ;
+		assertEquals(2, pool.size(1, Order.Builder.DFS, false)) ;
+		// a different kind of maze is not served from the pool
+		MazeFactory.await(pool.submit(createOrder(1, Order.Builder.Prim))) ;
+		assertEquals(2, pool.getMisses()) ;
+		pool.shutdown() ;
+	}
+
+	/**
+	 * Test case: mazes of the least recently ordered kind are dropped to meet the memory limit
+	 * <p>
+	 * Method under test: prefill(int skill, Order.Builder builder, boolean perfect), getEvictions()
+	 * <p>
+	 * Correct behavior: with room for two mazes, prefilling a second kind drops the mazes of the first kind
+	 * and the estimated memory never exceeds the limit.
+	 */
+	@Test
+	public final void testMemoryLimitEvictsLeastRecentlyOrdered() throws Exception {
+		long limit = 2L * MazePool.BYTES_PER_CELL * falstad.Constants.SKILL_X[0] * falstad.Constants.SKILL_Y[0] ;
+		MazePool pool = new MazePool(new MazeFactory(), refillExecutor, 2, limit) ;
+		pool.prefill(0, Order.Builder.DFS, false) ;
+		waitForRefills() ;
+		assertEquals(2, pool.size(0, Order.Builder.DFS, false)) ;
+		pool.prefill(0, Order.Builder.Kruskal, false) ;
+		waitForRefills() ;
+		assertEquals(0, pool.size(0, Order.Builder.DFS, false)) ;
+		assertEquals(2, pool.size(0, Order.Builder.Kruskal, false)) ;
+		assertEquals(2, pool.getEvictions()) ;
+		assertTrue(pool.getBytes() <= limit) ;
+		pool.shutdown() ;
+	}
+
+	/**
+	 * Test case: a pool with its own refill thread is shut down while it refills
+	 * <p>
+	 * Method under test: shutdown(), awaitTermination(long timeout, TimeUnit unit)
+	 * <p>
+	 * Correct behavior: all threads of the pool stop.
+	 */
+	@Test
+	public final void testShutdownStopsOwnThreads() throws Exception {
+		MazePool pool = new MazePool(2, Long.MAX_VALUE) ;
+		pool.prefill(5, Order.Builder.DFS, false) ;
+		pool.shutdown() ;
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS)) ;
+	}
+
+	/**
+	 * Test case: a pool with a refill executor of its owner is shut down
+	 * <p>
+	 * Method under test: shutdown(), prefill(int skill, Order.Builder builder, boolean perfect)
+	 * <p>
+	 * Correct behavior: the refill executor keeps running but the pool starts no more refills on it.
+	 */
+	@Test
+	public final void testShutdownLeavesGivenExecutor() throws Exception {
+		MazePool pool = new MazePool(new MazeFactory(), refillExecutor, 2, Long.MAX_VALUE) ;
+		pool.shutdown() ;
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS)) ;
+		assertFalse(refillExecutor.isShutdown()) ;
+		pool.prefill(0, Order.Builder.DFS, false) ;
+		waitForRefills() ;
+		assertEquals(0, pool.size(0, Order.Builder.DFS, false)) ;
+		assertEquals(0, pool.getRefills()) ;
+	}
+
+	private StubOrder createOrder(int skill, Order.Builder builder) {
+		StubOrder order = new StubOrder() ;
+		order.setSkillLevel(skill);
+		order.setBuilder(builder);
+		return order ;
+	}
+
+	/**
+	 * Waits until all refills that have been started so far are done.
+	 */
+	private void waitForRefills() throws Exception {
+		refillExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				// nothing to do
+			}
+		}).get() ;
+	}
+}
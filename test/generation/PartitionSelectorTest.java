@@ -0,0 +1,109 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the PartitionSelector class.
+ *
+ */
+public class PartitionSelectorTest {
+
+	/**
+	 * Test case: grades from sorted coordinates match a comparison of each segment with the partition
+	 * <p>
+	 * Method under test: prepare(SegmentTable segments, int[] rows, int count), grade(SegmentTable segments, int pe)
+	 * <p>
+	 * Correct behavior: for random segments on a small grid, many of them on the same lines,
+	 * the grade of each segment is the same as when all segments are classified one by one
+	 * with the dot products of BSPBuilder.genNodes.
+	 */
+	@Test
+	public final void testGradeMatchesDotProducts() {
+		RandomStream random = new RandomStream(42) ;
+		PartitionSelector selector = new PartitionSelector() ;
+		for (int round = 0; round < 20; round++) {
+			SegmentTable sl = createSegments(random, 5 + 10*round) ;
+			selector.prepare(sl, getAllRows(sl), sl.size()) ;
+			for (int pe = 0; pe < sl.size(); pe++)
+				assertEquals(grade(sl, pe), selector.grade(sl, pe)) ;
+		}
+	}
+	/**
+	 * Test case: the selected segment has the lowest grade and has not been a partition before
+	 * <p>
+	 * Method under test: select(SegmentTable segments, int[] rows, int count)
+	 * <p>
+	 * Correct behavior: no other segment that is not a partition has a lower grade,
+	 * -1 is returned if all segments are partitions.
+	 */
+	@Test
+	public final void testSelectTakesLowestGrade() {
+		RandomStream random = new RandomStream(4711) ;
+		PartitionSelector selector = new PartitionSelector() ;
+		SegmentTable sl = createSegments(random, 200) ;
+		for (int i = 0; i < sl.size(); i += 2)
+			sl.setPartition(i, true) ;
+		int best = selector.select(sl, getAllRows(sl), sl.size()) ;
+		assertTrue(best >= 0) ;
+		assertFalse(sl.isPartition(best)) ;
+		for (int se = 0; se < sl.size(); se++) {
+			if (!sl.isPartition(se))
+				assertTrue(grade(sl, best) <= grade(sl, se)) ;
+		}
+		for (int se = 0; se < sl.size(); se++)
+			sl.setPartition(se, true) ;
+		assertEquals(-1, selector.select(sl, getAllRows(sl), sl.size())) ;
+	}
+
+	/**
+	 * Creates axis-aligned segments with coordinates on a 10x10 grid.
+	 */
+	private SegmentTable createSegments(RandomStream random, int count) {
+		SegmentTable result = new SegmentTable(count) ;
+		while (result.size() < count) {
+			int x = random.nextIntWithinInterval(0, 10) ;
+			int y = random.nextIntWithinInterval(0, 10) ;
+			int length = random.nextIntWithinInterval(-4, 4) ;
+			if (0 == length)
+				continue ;
+			if (random.nextIntWithinInterval(0, 1) == 0)
+				result.add(x, y, length, 0, 0, 0) ;
+			else
+				result.add(x, y, 0, length, 0, 0) ;
+		}
+		return result ;
+	}
+	/**
+	 * Grades a partition by classifying each segment the same way as BSPBuilder.genNodes splits a node.
+	 */
+	private int grade(SegmentTable sl, int pe) {
+		int lcount = 0, rcount = 0, splits = 0 ;
+		final int nx = sl.getExtensionY(pe) ;
+		final int ny = -sl.getExtensionX(pe) ;
+		for (int se = 0; se < sl.size(); se++) {
+			int dot1 = (sl.getStartPositionX(se)-sl.getStartPositionX(pe))*nx + (sl.getStartPositionY(se)-sl.getStartPositionY(pe))*ny ;
+			int dot2 = (sl.getEndPositionX(se)-sl.getStartPositionX(pe))*nx + (sl.getEndPositionY(se)-sl.getStartPositionY(pe))*ny ;
+			if (BSPBuilder.getSign(dot1) != BSPBuilder.getSign(dot2)) {
+				if (dot1 == 0)
+					dot1 = dot2 ;
+				else if (dot2 != 0) {
+					splits++ ;
+					continue ;
+				}
+			}
+			if (dot1 > 0 || (dot1 == 0 && sl.getDir(se) == sl.getDir(pe)))
+				rcount++ ;
+			else
+				lcount++ ;
+		}
+		return Math.abs(lcount-rcount) + PartitionSelector.SPLIT_WEIGHT * splits ;
+	}
+	private int[] getAllRows(SegmentTable sl) {
+		int[] result = new int[sl.size()] ;
+		for (int i = 0; i < result.length; i++)
+			result[i] = i ;
+		return result ;
+	}
+}
@@ -0,0 +1,63 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the ProgressChannel class.
+ *
+ */
+public class ProgressChannelTest {
+
+	/**
+	 * Test case: published values are sampled once and never go backwards
+	 * <p>
+	 * Method under test: publish(int value), sample(), sampleIfChanged(), reset()
+	 * <p>
+	 * Correct behavior: smaller values than the current one are ignored, 
+	 * a value is given by sampleIfChanged only once, reset starts over.
+	 */
+	@Test
+	public final void testLatestValueWins() {
+		ProgressChannel channel = new ProgressChannel() ;
+		assertEquals(-1, channel.sample()) ;
+		assertEquals(-1, channel.sampleIfChanged()) ;
+		channel.publish(10) ;
+		channel.publish(30) ;
+		channel.publish(20) ;
+		assertEquals(30, channel.sampleIfChanged()) ;
+		assertEquals(-1, channel.sampleIfChanged()) ;
+		assertEquals(30, channel.sample()) ;
+		channel.reset() ;
+		channel.publish(5) ;
+		assertEquals(5, channel.sampleIfChanged()) ;
+	}
+
+	/**
+	 * Test case: many threads publish at the same time
+	 * <p>
+	 * Method under test: publish(int value)
+	 * <p>
+	 * Correct behavior: the highest value published by any thread is kept.
+	 */
+	@Test
+	public final void testConcurrentPublish() throws InterruptedException {
+		final ProgressChannel channel = new ProgressChannel() ;
+		Thread[] threads = new Thread[4] ;
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t ;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100000; i++)
+						channel.publish((i * 7 + offset) % 1000) ;
+				}
+			}) ;
+			threads[t].start() ;
+		}
+		for (Thread thread : threads)
+			thread.join() ;
+		assertEquals(999, channel.sample()) ;
+	}
+}
@@ -0,0 +1,97 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import falstad.Constants;
+
+/**
+ * Tests the RoomIndex class.
+ *
+ */
+public class RoomIndexTest {
+
+	/**
+	 * Test case: the index answers overlap queries like the cells object
+	 * <p>
+	 * Method under test: overlaps(int rx, int ry, int rxl, int ryl), add(int rx, int ry, int rxl, int ryl)
+	 * <p>
+	 * Correct behavior: for rooms of all sizes at all positions the index gives the same answer 
+	 * as Cells.areaOverlapsWithRoom, also for a maze wider than 64 cells.
+	 */
+	@Test
+	public final void testSameAsCells() {
+		final int width = 150 ;
+		final int height = 40 ;
+		Cells cells = new Cells(width, height) ;
+		cells.initialize() ;
+		RoomIndex index = new RoomIndex(width, height) ;
+		RandomStream random = new RandomStream(42) ;
+		for (int room = 0; room < 30; room++) {
+			int[] pos = index.findPosition(5, 4, random) ;
+			assertNotNull(pos) ;
+			assertFalse(cells.areaOverlapsWithRoom(pos[0], pos[1], pos[0]+4, pos[1]+3)) ;
+			cells.markAreaAsRoom(5, 4, pos[0], pos[1], pos[0]+4, pos[1]+3, random) ;
+			index.add(pos[0], pos[1], pos[0]+4, pos[1]+3) ;
+		}
+		for (int rw = 1; rw <= 8; rw++) {
+			for (int rh = 1; rh <= 8; rh++) {
+				for (int x = 0; x+rw <= width; x++) {
+					for (int y = 0; y+rh <= height; y++) {
+						assertEquals(cells.areaOverlapsWithRoom(x, y, x+rw-1, y+rh-1), 
+								index.overlaps(x, y, x+rw-1, y+rh-1)) ;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test case: rooms are placed until there is no space left
+	 * <p>
+	 * Method under test: findPosition(int rw, int rh, RandomStream random)
+	 * <p>
+	 * Correct behavior: a position is found as long as one is feasible, 
+	 * null is returned only if there is no feasible position at all.
+	 */
+	@Test
+	public final void testFindsLastFeasiblePosition() {
+		final int width = 30 ;
+		final int height = 20 ;
+		RoomIndex index = new RoomIndex(width, height) ;
+		RandomStream random = new RandomStream(7) ;
+		int[] pos ;
+		while (null != (pos = index.findPosition(3, 3, random))) {
+			assertFalse(index.overlaps(pos[0], pos[1], pos[0]+2, pos[1]+2)) ;
+			index.add(pos[0], pos[1], pos[0]+2, pos[1]+2) ;
+		}
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				assertTrue(index.overlaps(x, y, x+2, y+2)) ;
+		// too large for the maze
+		assertNull(new RoomIndex(10, 10).findPosition(9, 3, random)) ;
+	}
+
+	/**
+	 * Test case: the builder places the requested number of rooms
+	 * <p>
+	 * Method under test: MazeBuilder.generateRooms()
+	 * <p>
+	 * Correct behavior: all skill levels with rooms get as many rooms as requested, 
+	 * which is one more than the skill level asks for, see MazeFactoryTest.testRooms. 
+	 * Skill level 1 is left out, a single large room can fill up its small maze.
+	 */
+	@Test
+	public final void testBuilderPlacesAllRooms() {
+		for (int skill = 2; skill < Constants.SKILL_ROOMS.length; skill++) {
+			StubOrder order = new StubOrder() ;
+			order.setSkillLevel(skill) ;
+			order.setSeed(skill) ;
+			MazeBuilder builder = new MazeBuilder() ;
+			builder.buildOrder(order) ;
+			builder.cells.initialize() ;
+			assertEquals("skill " + skill, Constants.SKILL_ROOMS[skill] + 1, builder.generateRooms()) ;
+		}
+	}
+}
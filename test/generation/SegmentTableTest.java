@@ -0,0 +1,105 @@
+package generation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import falstad.MazePanel;
+
+/**
+ * Tests the SegmentTable class.
+ *
+ */
+public class SegmentTableTest {
+
+	/**
+	 * Test case: colors are computed without color objects
+	 * <p>
+	 * Method under test: getColor(int pdx, int distance, int cc)
+	 * <p>
+	 * Correct behavior: the RGB value is the same as for a java.awt.Color with the same
+	 * components as determined by MazePanel.findRGB, for horizontal and vertical segments,
+	 * all color changes and distances that cover all colors.
+	 */
+	@Test
+	public final void testColorMatchesAwtColor() {
+		for (int cc = 0; cc < 256; cc++) {
+			for (int distance = 0; distance < 400; distance++) {
+				assertEquals(getAwtColor(1, distance, cc), SegmentTable.getColor(1, distance, cc)) ;
+				assertEquals(getAwtColor(0, distance, cc), SegmentTable.getColor(0, distance, cc)) ;
+			}
+		}
+	}
+	/**
+	 * Test case: flags of a row are independent of each other and of other rows
+	 * <p>
+	 * Method under test: setPartition(int i, boolean partition), setSeen(int i, boolean seen)
+	 * <p>
+	 * Correct behavior: setting or clearing one flag leaves the other flag and other rows unchanged.
+	 */
+	@Test
+	public final void testFlags() {
+		SegmentTable segments = new SegmentTable(1) ;
+		assertEquals(0, segments.add(0, 0, 10, 0, 5, 3)) ;
+		assertEquals(1, segments.add(10, 0, 0, -10, 5, 3)) ;
+		assertEquals(2, segments.size()) ;
+		segments.setPartition(0, true) ;
+		assertTrue(segments.isPartition(0)) ;
+		assertFalse(segments.isSeen(0)) ;
+		assertFalse(segments.isPartition(1)) ;
+		segments.setSeen(0, true) ;
+		segments.setPartition(0, false) ;
+		assertFalse(segments.isPartition(0)) ;
+		assertTrue(segments.isSeen(0)) ;
+		assertFalse(segments.isSeen(1)) ;
+	}
+	/**
+	 * Test case: rows keep their content when the table grows and when they are copied
+	 * <p>
+	 * Method under test: add, append(SegmentTable source, int i), trimToSize()
+	 * <p>
+	 * Correct behavior: a copy of a row is the same segment in all attributes,
+	 * start, end and direction are as given.
+	 */
+	@Test
+	public final void testAppendAndGrow() {
+		SegmentTable segments = new SegmentTable(0) ;
+		for (int i = 0; i < 100; i++)
+			segments.add(i, 2*i, (i % 2 == 0) ? -i-1 : 0, (i % 2 == 0) ? 0 : i+1, i, i, i % 3 == 0, i % 5 == 0) ;
+		SegmentTable copy = new SegmentTable(0) ;
+		for (int i = 99; i >= 0; i--)
+			copy.append(segments, i) ;
+		copy.trimToSize() ;
+		assertEquals(100, copy.size()) ;
+		for (int i = 0; i < 100; i++) {
+			assertTrue(segments.sameSegment(i, copy, 99-i)) ;
+			assertEquals(i, segments.getStartPositionX(i)) ;
+			assertEquals(2*i, segments.getStartPositionY(i)) ;
+			assertEquals((i % 2 == 0) ? -1 : i+1+2*i, (i % 2 == 0) ? segments.getEndPositionX(i) : segments.getEndPositionY(i)) ;
+			assertEquals((i % 2 == 0) ? 1 : -2, segments.getDir(i)) ;
+			assertEquals(i % 3 == 0, copy.isPartition(99-i)) ;
+			assertEquals(i % 5 == 0, copy.isSeen(99-i)) ;
+		}
+		assertFalse(segments.sameSegment(0, segments, 1)) ;
+	}
+
+	/**
+	 * Color as determined by the former Seg class with the help of java.awt.Color.
+	 */
+	private int getAwtColor(int pdx, int distance, int cc) {
+		int add = (pdx != 0) ? 1 : 0;
+		distance /= 4;
+		int part1 = distance & 7;
+		int part2 = ((distance >> 3) ^ cc) % 6;
+		int rgbValue = ((part1 + 2 + add) * 70)/8 + 80;
+		switch (part2) {
+			case 0: return MazePanel.findRGB(new int[] {rgbValue, 20, 20});
+			case 1: return MazePanel.findRGB(new int[] {20, rgbValue, 20});
+			case 2: return MazePanel.findRGB(new int[] {20, 20, rgbValue});
+			case 3: return MazePanel.findRGB(new int[] {rgbValue, rgbValue, 20});
+			case 4: return MazePanel.findRGB(new int[] {20, rgbValue, rgbValue});
+			case 5: return MazePanel.findRGB(new int[] {rgbValue, 20, rgbValue});
+			default: return MazePanel.findRGB(new int[] {20, 20, 20});
+		}
+	}
+}